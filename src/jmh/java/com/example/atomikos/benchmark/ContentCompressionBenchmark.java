@@ -0,0 +1,76 @@
+package com.example.atomikos.benchmark;
+
+import com.example.atomikos.service.ContentCompressor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of compressing message content against the bytes it saves in {@code MESSAGE_DATA}.
+ * {@code plain} encodes the content as stored without compression, {@code deflate} as stored
+ * with {@code app.payload.compression.enabled}. The {@code storedBytes} counter is the rate of
+ * bytes written; divided by the operation rate it gives the stored size of one payload.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContentCompressionBenchmark {
+
+    @Param({"1024", "4000", "65536"})
+    public int chars;
+
+    @Param({"1", "6"})
+    public int level;
+
+    private String content;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class StoredBytes {
+        public long storedBytes;
+    }
+
+    @Setup
+    public void setUp() {
+        content = samplePayload(chars);
+    }
+
+    @Benchmark
+    public byte[] plain(StoredBytes stored) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        stored.storedBytes += bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] deflate(StoredBytes stored) throws IOException {
+        byte[] bytes = ContentCompressor.compress(new StringReader(content), level);
+        stored.storedBytes += bytes.length;
+        return bytes;
+    }
+
+    // Order-like JSON records with varying values, as a stand-in for production payloads
+    private static String samplePayload(int chars) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder(chars + 256).append("{\"orders\":[");
+        while (json.length() < chars) {
+            json.append("{\"orderId\":\"ORD-").append(100000 + random.nextInt(900000))
+                .append("\",\"customer\":\"CUST-").append(random.nextInt(5000))
+                .append("\",\"amount\":").append(random.nextInt(100000) / 100.0)
+                .append(",\"currency\":\"").append(random.nextBoolean() ? "EUR" : "USD")
+                .append("\",\"status\":\"").append(random.nextInt(4) == 0 ? "PENDING" : "CONFIRMED")
+                .append("\",\"createdAt\":\"2025-11-0").append(1 + random.nextInt(9))
+                .append("T").append(10 + random.nextInt(14)).append(":").append(10 + random.nextInt(50))
+                .append(":00Z\"},");
+        }
+        json.setLength(chars - 2);
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.atomikos.benchmark;
+
+import com.example.atomikos.service.MessageJsonCodec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Field extraction from input messages: the streaming {@link MessageJsonCodec} against the
+ * previous {@code readTree} based approach.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonExtractionBenchmark {
+
+    @Param({"small", "unknownFields"})
+    public String shape;
+
+    private ObjectMapper objectMapper;
+    private MessageJsonCodec codec;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        codec = new MessageJsonCodec(objectMapper);
+        json = switch (shape) {
+            case "small" -> "{\"messageId\":\"MSG-001\",\"content\":\"Test message content\",\"status\":\"NEW\"}";
+            case "unknownFields" -> "{\"header\":{\"source\":\"partner\",\"tags\":[\"a\",\"b\",\"c\"]},"
+                    + "\"messageId\":\"MSG-001\",\"content\":\"Test message content\",\"status\":\"NEW\","
+                    + "\"trailer\":{\"checksum\":\"0123456789abcdef\",\"items\":[1,2,3,4,5,6,7,8]}}";
+            default -> throw new IllegalArgumentException(shape);
+        };
+    }
+
+    @Benchmark
+    public void streamingExtract(Blackhole blackhole) throws IOException {
+        blackhole.consume(codec.extract(json));
+    }
+
+    @Benchmark
+    public void treeExtract(Blackhole blackhole) throws IOException {
+        JsonNode jsonNode = objectMapper.readTree(json);
+        blackhole.consume(jsonNode.has("messageId") ? jsonNode.get("messageId").asText() : "UNKNOWN");
+        blackhole.consume(jsonNode.has("content") ? jsonNode.get("content").asText() : json);
+        blackhole.consume(jsonNode.has("status") ? jsonNode.get("status").asText() : "RECEIVED");
+    }
+}
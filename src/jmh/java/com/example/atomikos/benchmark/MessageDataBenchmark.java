@@ -0,0 +1,36 @@
+package com.example.atomikos.benchmark;
+
+import com.example.atomikos.entity.MessageData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity construction and the {@code toString} used when logging saved messages.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageDataBenchmark {
+
+    private MessageData messageData;
+
+    @Setup
+    public void setUp() {
+        messageData = new MessageData("MSG-001", "Test message content", "NEW");
+        messageData.setId(1L);
+    }
+
+    @Benchmark
+    public MessageData construct() {
+        return new MessageData("MSG-001", "Test message content", "NEW");
+    }
+
+    @Benchmark
+    public String toStringMessageData() {
+        return messageData.toString();
+    }
+}
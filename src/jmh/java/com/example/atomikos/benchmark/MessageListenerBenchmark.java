@@ -0,0 +1,55 @@
+package com.example.atomikos.benchmark;
+
+import com.example.atomikos.listener.CapacityScheduler;
+import com.example.atomikos.listener.MessageListener;
+import com.example.atomikos.listener.PoisonMessageHandler;
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.service.MessageProcessingService;
+import com.example.atomikos.service.Route;
+import com.example.atomikos.service.RouteTable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.jms.TextMessage;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listener dispatch overhead for a single message, with the processing service stubbed out.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageListenerBenchmark {
+
+    private MessageListener listener;
+    private Route route;
+    private StubTextMessage message;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        PipelineMetrics pipelineMetrics = new PipelineMetrics();
+        MessageProcessingService service = new MessageProcessingService(null, null, null, null, null, pipelineMetrics, null, 4000) {
+            @Override
+            public void processMessage(Route route, TextMessage message) {
+                blackhole.consume(message);
+            }
+        };
+        PoisonMessageHandler poisonMessageHandler = new PoisonMessageHandler(null, pipelineMetrics, 5, "DEV.DEAD.LETTER.QUEUE");
+        route = new Route("default", "DEV.QUEUE.1", null, List.of("DEV.QUEUE.2"),
+                          Route.parseStages("extract,persist,publish"), 1, 1, 0, 1, 0, Set.of());
+        CapacityScheduler capacityScheduler = new CapacityScheduler(new RouteTable(List.of(route)), 1, 1000, pipelineMetrics);
+        listener = new MessageListener(service, pipelineMetrics, poisonMessageHandler, capacityScheduler);
+        message = new StubTextMessage("ID:414d5120514d31", 
+                "{\"messageId\":\"MSG-001\",\"content\":\"Test message content\",\"status\":\"NEW\"}");
+    }
+
+    @Benchmark
+    public void receiveMessage() {
+        listener.receiveMessage(route, message, null);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.atomikos.benchmark;
+
+import com.example.atomikos.service.MessageJsonCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of the output confirmation message: pooled generators against the previous
+ * {@code String.format} approach.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutputMessageBenchmark {
+
+    private MessageJsonCodec codec;
+    private LocalDateTime timestamp;
+
+    @Setup
+    public void setUp() {
+        codec = new MessageJsonCodec(new ObjectMapper());
+        timestamp = LocalDateTime.now();
+    }
+
+    @Benchmark
+    public String generatorOutput() throws IOException {
+        return codec.writeOutput("MSG-001", "PROCESSED", timestamp);
+    }
+
+    @Benchmark
+    public String formatOutput() {
+        return String.format("{\"messageId\":\"%s\",\"status\":\"PROCESSED\",\"timestamp\":\"%s\"}",
+                "MSG-001", timestamp);
+    }
+}
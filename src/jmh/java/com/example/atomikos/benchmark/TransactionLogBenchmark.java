@@ -0,0 +1,295 @@
+package com.example.atomikos.benchmark;
+
+import com.atomikos.datasource.RecoverableResource;
+import com.atomikos.datasource.xa.XATransactionalResource;
+import com.atomikos.datasource.xa.XID;
+import com.atomikos.icatch.config.UserTransactionServiceImp;
+import com.atomikos.icatch.jta.UserTransactionManager;
+import com.atomikos.recovery.PendingTransactionRecord;
+import com.atomikos.recovery.TxState;
+import com.example.atomikos.config.GroupCommitRepository;
+import com.example.atomikos.config.ParallelRecovery;
+import com.example.atomikos.config.TransactionLogFactory;
+import com.example.atomikos.metrics.PipelineMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import javax.transaction.Transaction;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Cost of the transaction log per {@code app.transaction.log.store}, with two simulated XA
+ * resources standing in for Oracle and MQ whose prepare, commit and recovery scan each take
+ * {@code resourceLatencyMicros}.
+ * <ul>
+ *   <li>{@code commit}: latency of a two-phase commit; run with {@code -t} to see concurrent
+ *       commits share a forced write with {@code group-commit}</li>
+ *   <li>{@code recover}: time from starting Atomikos to the end of a {@link ParallelRecovery}
+ *       pass over {@code inDoubt} transactions logged as committing and prepared in both
+ *       resources. The {@code memory} store loses them in a crash, so it measures
+ *       starting Atomikos and scanning the resources only.</li>
+ * </ul>
+ * The log is written to a temporary directory, so run on the disk the log will live on
+ * ({@code -Djava.io.tmpdir}).
+ */
+@Fork(1)
+public class TransactionLogBenchmark {
+
+    private static final String TM_NAME = "benchmark";
+
+    /**
+     * Atomikos on the log store under test, with a fresh log directory per trial.
+     */
+    public abstract static class LogState {
+
+        @Param({"file", "group-commit", "memory"})
+        public String store;
+
+        @Param({"100"})
+        public int resourceLatencyMicros;
+
+        Path logDir;
+        List<SimulatedResource> resources;
+        private UserTransactionServiceImp transactionService;
+
+        void createLogDir() throws IOException {
+            logDir = Files.createTempDirectory("tmlog-benchmark");
+        }
+
+        void deleteLogDir() throws IOException {
+            try (Stream<Path> files = Files.walk(logDir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+
+        // Atomikos closes its resources on shutdown, so every start gets new ones
+        void startTransactionService() {
+            if (resources == null) {
+                createResources();
+            }
+            Properties properties = new Properties();
+            properties.setProperty("com.atomikos.icatch.tm_unique_name", TM_NAME);
+            properties.setProperty("com.atomikos.icatch.log_base_dir", logDir + "/");
+            properties.setProperty("com.atomikos.icatch.max_actives", "-1");
+            // Only the measured pass recovers
+            properties.setProperty("com.atomikos.icatch.recovery_delay", String.valueOf(TimeUnit.HOURS.toMillis(1)));
+            properties.setProperty(TransactionLogFactory.STORE_PROPERTY, store);
+            transactionService = new UserTransactionServiceImp(properties);
+            transactionService.setInitialRecoverableResources(List.<RecoverableResource>copyOf(resources));
+            transactionService.init();
+        }
+
+        void createResources() {
+            resources = List.of(new SimulatedResource("db", resourceLatencyMicros),
+                                new SimulatedResource("mq", resourceLatencyMicros));
+        }
+
+        void stopTransactionService() {
+            transactionService.shutdownWait();
+            resources = null;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CommitState extends LogState {
+
+        UserTransactionManager transactionManager;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            createLogDir();
+            startTransactionService();
+            transactionManager = new UserTransactionManager();
+            transactionManager.setStartupTransactionService(false);
+            transactionManager.init();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            transactionManager.close();
+            stopTransactionService();
+            deleteLogDir();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RecoveryState extends LogState {
+
+        @Param({"100", "1000"})
+        public int inDoubt;
+
+        @Param({"true", "false"})
+        public boolean parallel;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            createLogDir();
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteLog() throws IOException {
+            deleteLogDir();
+        }
+
+        // As left by a crash after the commit decision was logged and before the resources committed
+        @Setup(Level.Iteration)
+        public void logInDoubtTransactions() throws Exception {
+            GroupCommitRepository log = new GroupCommitRepository(logDir + "/", "tmlog", Long.MAX_VALUE,
+                                                                  Long.MAX_VALUE, new PipelineMetrics());
+            log.init();
+            createResources();
+            long expired = System.currentTimeMillis() - 1;
+            // Nothing survives a crash without a log
+            int transactions = TransactionLogFactory.MEMORY.equals(store) ? 0 : inDoubt;
+            for (int i = 0; i < transactions; i++) {
+                String tid = TM_NAME + "-" + i;
+                log.put(tid, new PendingTransactionRecord(tid, TxState.COMMITTING, expired, TM_NAME, null));
+                for (SimulatedResource resource : resources) {
+                    resource.prepared.add(new XID(tid, TM_NAME, resource.getName()));
+                }
+            }
+            log.close();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            stopTransactionService();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    public void commit(CommitState state) throws Exception {
+        state.transactionManager.begin();
+        Transaction transaction = state.transactionManager.getTransaction();
+        for (SimulatedResource resource : state.resources) {
+            transaction.enlistResource(resource.getXAResource());
+        }
+        state.transactionManager.commit();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public ParallelRecovery.Result recover(RecoveryState state) {
+        state.startTransactionService();
+        List<ParallelRecovery.Resource> recoverable = new ArrayList<>();
+        for (SimulatedResource resource : state.resources) {
+            // Registered when the transaction service starts
+            recoverable.add(new ParallelRecovery.Resource(resource.getName(), () -> { }));
+        }
+        ParallelRecovery.Result result = new ParallelRecovery(recoverable, new PipelineMetrics(), state.parallel,
+                                                              TimeUnit.MINUTES.toMillis(10)).recover();
+        if (result.recovered() != recoverable.size()
+            || state.resources.stream().anyMatch(resource -> !resource.prepared.isEmpty())) {
+            throw new IllegalStateException("Recovery incomplete: " + result);
+        }
+        return result;
+    }
+
+    /**
+     * XA resource whose calls take a fixed time and which reports the branches it holds as
+     * prepared to recovery.
+     */
+    static final class SimulatedResource extends XATransactionalResource {
+
+        final Set<Xid> prepared = ConcurrentHashMap.newKeySet();
+        private final long latencyNanos;
+        private final XAResource xaResource = new SimulatedXAResource();
+
+        SimulatedResource(String name, int latencyMicros) {
+            super(name);
+            this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        }
+
+        @Override
+        protected XAResource refreshXAConnection() {
+            return xaResource;
+        }
+
+        private void roundTrip() {
+            if (latencyNanos > 0) {
+                LockSupport.parkNanos(latencyNanos);
+            }
+        }
+
+        private final class SimulatedXAResource implements XAResource {
+
+            @Override
+            public int prepare(Xid xid) {
+                roundTrip();
+                prepared.add(new XID(xid));
+                return XA_OK;
+            }
+
+            @Override
+            public void commit(Xid xid, boolean onePhase) {
+                roundTrip();
+                prepared.remove(new XID(xid));
+            }
+
+            @Override
+            public void rollback(Xid xid) {
+                roundTrip();
+                prepared.remove(new XID(xid));
+            }
+
+            @Override
+            public Xid[] recover(int flag) {
+                if ((flag & TMSTARTRSCAN) == 0) {
+                    return new Xid[0];
+                }
+                roundTrip();
+                return prepared.toArray(new Xid[0]);
+            }
+
+            @Override
+            public void forget(Xid xid) {
+                prepared.remove(new XID(xid));
+            }
+
+            @Override
+            public void start(Xid xid, int flags) {
+            }
+
+            @Override
+            public void end(Xid xid, int flags) {
+            }
+
+            @Override
+            public boolean isSameRM(XAResource other) throws XAException {
+                return other == this;
+            }
+
+            @Override
+            public int getTransactionTimeout() {
+                return 0;
+            }
+
+            @Override
+            public boolean setTransactionTimeout(int seconds) {
+                return false;
+            }
+        }
+    }
+}
@@ -1,27 +1,48 @@
 package com.example.atomikos.config;
 
+import com.atomikos.icatch.config.UserTransactionServiceImp;
 import com.atomikos.icatch.jta.UserTransactionImp;
 import com.atomikos.icatch.jta.UserTransactionManager;
 import com.atomikos.jdbc.AtomikosDataSourceBean;
+import com.atomikos.jms.AtomikosConnectionFactoryBean;
+import com.example.atomikos.listener.CapacityScheduler;
+import com.example.atomikos.listener.MessageListener;
+import com.example.atomikos.listener.PoolResizer;
+import com.example.atomikos.listener.RouteListenerContainerFactory;
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.service.Route;
+import com.example.atomikos.service.RouteTable;
 import com.ibm.mq.jms.MQXAConnectionFactory;
-import com.ibm.msg.client.wmq.common.CommonConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.jms.annotation.JmsListenerConfigurer;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.orm.jpa.JpaVendorAdapter;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.jta.JtaTransactionManager;
+import org.springframework.util.ClassUtils;
 
+import javax.jms.ConnectionFactory;
+import javax.jms.XAConnectionFactory;
 import javax.sql.DataSource;
+import javax.sql.XADataSource;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 @Configuration
+@ConditionalOnProperty(name = "app.processing.mode", havingValue = "xa", matchIfMissing = true)
 public class AtomikosConfig {
     
     private static final Logger logger = LoggerFactory.getLogger(AtomikosConfig.class);
@@ -35,6 +56,18 @@ public class AtomikosConfig {
     @Value("${spring.datasource.password}")
     private String dbPassword;
 
+    @Value("${app.datasource.xa-data-source-class-name:oracle.jdbc.xa.client.OracleXADataSource}")
+    private String xaDataSourceClassName;
+
+    @Value("${app.datasource.test-query:SELECT 1 FROM DUAL}")
+    private String testQuery;
+
+    @Value("${app.datasource.max-pool-size:50}")
+    private int maxDbPoolSize;
+
+    @Value("${app.jpa.dialect:org.hibernate.dialect.Oracle12cDialect}")
+    private String dialect;
+
     @Value("${ibm.mq.queueManager}")
     private String queueManager;
 
@@ -50,18 +83,111 @@ public class AtomikosConfig {
     @Value("${ibm.mq.password:#{null}}")
     private String mqPassword;
 
+    @Value("${ibm.mq.ccdt-url:}")
+    private String ccdtUrl;
+
+    @Value("${ibm.mq.additional-queue-managers:}")
+    private String additionalQueueManagers;
+
+    @Value("${app.jms.provider:ibmmq}")
+    private String jmsProvider;
+
+    @Value("${app.listener.concurrency.min:1}")
+    private int listenerConcurrency;
+
+    @Value("${app.listener.concurrency.max:10}")
+    private int listenerMaxConcurrency;
+
+    @Value("${app.listener.virtual-threads:false}")
+    private boolean listenerVirtualThreads;
+
+    @Value("${app.listener.batch.window-ms:50}")
+    private long batchWindowMillis;
+
+    @Value("${app.listener.capacity.max-wait-ms:1000}")
+    private long capacityMaxWaitMillis;
+
+    @Value("${app.listener.striping.enabled:false}")
+    private boolean stripingEnabled;
+
+    @Value("${app.jpa.batch-size:50}")
+    private int jdbcBatchSize;
+
+    @Value("${app.jpa.show-sql:false}")
+    private boolean showSql;
+
+    @Value("${app.jpa.ddl-auto:update}")
+    private String ddlAuto;
+
+    @Value("${app.jpa.lookup-jdbc-metadata:true}")
+    private boolean lookupJdbcMetadata;
+
+    @Value("${app.transaction.timeout-seconds:300}")
+    private int transactionTimeoutSeconds;
+
+    @Value("${app.transaction.log.dir:./}")
+    private String transactionLogDir;
+
+    @Value("${app.transaction.log.name:tmlog}")
+    private String transactionLogName;
+
+    @Value("${app.transaction.log.store:file}")
+    private String transactionLogStore;
+
+    @Value("${app.transaction.log.checkpoint-interval:500}")
+    private long checkpointInterval;
+
+    @Value("${app.transaction.recovery.delay-ms:10000}")
+    private long recoveryDelayMillis;
+
+    @Value("${app.transaction.recovery.forget-orphaned-log-entries-delay-ms:86400000}")
+    private long forgetOrphanedLogEntriesDelayMillis;
+
+    private final PipelineMetrics pipelineMetrics;
+
+    public AtomikosConfig(PipelineMetrics pipelineMetrics) {
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    /**
+     * Starts Atomikos with the transaction log and recovery settings of {@code app.transaction.*}.
+     * The transaction timeout is applied as the Atomikos default, so it holds on every thread;
+     * a timeout set on the user transaction only holds for the thread that sets it. System
+     * properties starting with {@code com.atomikos} still take precedence.
+     */
+    @Bean(initMethod = "init", destroyMethod = "shutdownWait")
+    public UserTransactionServiceImp userTransactionService() {
+        TransactionLogFactory.pipelineMetrics = pipelineMetrics;
+        Properties properties = new Properties();
+        properties.setProperty("com.atomikos.icatch.log_base_dir", transactionLogDir);
+        properties.setProperty("com.atomikos.icatch.log_base_name", transactionLogName);
+        properties.setProperty("com.atomikos.icatch.checkpoint_interval", String.valueOf(checkpointInterval));
+        properties.setProperty("com.atomikos.icatch.default_jta_timeout", String.valueOf(transactionTimeoutSeconds * 1000L));
+        properties.setProperty("com.atomikos.icatch.max_timeout", String.valueOf(transactionTimeoutSeconds * 1000L));
+        properties.setProperty("com.atomikos.icatch.recovery_delay", String.valueOf(recoveryDelayMillis));
+        properties.setProperty("com.atomikos.icatch.forget_orphaned_log_entries_delay",
+                               String.valueOf(forgetOrphanedLogEntriesDelayMillis));
+        properties.setProperty(TransactionLogFactory.STORE_PROPERTY, transactionLogStore);
+        pipelineMetrics.registerPendingTransactions(ParallelRecovery::pendingTransactions);
+        return new UserTransactionServiceImp(properties);
+    }
+
     @Bean(initMethod = "init", destroyMethod = "close")
+    @DependsOn("userTransactionService")
     public UserTransactionManager atomikosTransactionManager() {
         UserTransactionManager userTransactionManager = new UserTransactionManager();
         userTransactionManager.setForceShutdown(false);
+        // Started by userTransactionService with the configured properties
+        userTransactionManager.setStartupTransactionService(false);
         AtomikosJtaPlatform.transactionManager = userTransactionManager;
         return userTransactionManager;
     }
 
     @Bean
+    @DependsOn("atomikosTransactionManager")
     public UserTransactionImp atomikosUserTransaction() throws Exception {
         UserTransactionImp userTransactionImp = new UserTransactionImp();
-        userTransactionImp.setTransactionTimeout(300);
+        userTransactionImp.setTransactionTimeout(transactionTimeoutSeconds);
         AtomikosJtaPlatform.transaction = userTransactionImp;
         return userTransactionImp;
     }
@@ -76,24 +202,29 @@ public class AtomikosConfig {
         jtaTransactionManager.setTransactionManager(utm);
         jtaTransactionManager.setUserTransaction(uti);
         jtaTransactionManager.setAllowCustomIsolationLevels(true);
-        return jtaTransactionManager;
+        jtaTransactionManager.afterPropertiesSet();
+        return pipelineMetrics.instrument(jtaTransactionManager);
     }
 
     @Bean(initMethod = "init", destroyMethod = "close")
     public DataSource dataSource() {
         AtomikosDataSourceBean dataSource = new AtomikosDataSourceBean();
         dataSource.setUniqueResourceName("oracleDataSource");
-        dataSource.setXaDataSourceClassName("oracle.jdbc.xa.client.OracleXADataSource");
         
-        Properties properties = new Properties();
-        properties.setProperty("URL", dbUrl);
-        properties.setProperty("user", dbUsername);
-        properties.setProperty("password", dbPassword);
+        // Created here rather than by Atomikos so its XA resources can be instrumented
+        XADataSource xaDataSource = BeanUtils.instantiateClass(
+                ClassUtils.resolveClassName(xaDataSourceClassName, null), XADataSource.class);
+        BeanWrapper properties = PropertyAccessorFactory.forBeanPropertyAccess(xaDataSource);
+        properties.setPropertyValue("URL", dbUrl);
+        properties.setPropertyValue("user", dbUsername);
+        properties.setPropertyValue("password", dbPassword);
         
-        dataSource.setXaProperties(properties);
+        dataSource.setXaDataSource(pipelineMetrics.instrument("oracleDataSource", xaDataSource));
         dataSource.setMinPoolSize(1);
         dataSource.setMaxPoolSize(5);
-        dataSource.setTestQuery("SELECT 1 FROM DUAL");
+        dataSource.setTestQuery(testQuery);
+        pipelineMetrics.registerPool("oracleDataSource", dataSource::poolAvailableSize,
+                                     dataSource::poolTotalSize, dataSource::getMaxPoolSize);
         
         return dataSource;
     }
@@ -102,83 +233,273 @@ public class AtomikosConfig {
     @DependsOn({"atomikosTransactionManager", "atomikosUserTransaction"})
     public LocalContainerEntityManagerFactoryBean entityManagerFactory() {
         LocalContainerEntityManagerFactoryBean emf = new LocalContainerEntityManagerFactoryBean();
-        emf.setDataSource(dataSource());
+        emf.setDataSource(pipelineMetrics.leaseTimed("oracleDataSource", dataSource()));
         emf.setPackagesToScan("com.example.atomikos.entity");
         
         JpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
         emf.setJpaVendorAdapter(vendorAdapter);
         
+        emf.setJpaProperties(jpaProperties());
+        
+        return emf;
+    }
+
+    Properties jpaProperties() {
         Properties jpaProperties = new Properties();
-        jpaProperties.setProperty("hibernate.hbm2ddl.auto", "update");
-        jpaProperties.setProperty("hibernate.dialect", "org.hibernate.dialect.Oracle12cDialect");
+        jpaProperties.setProperty("hibernate.hbm2ddl.auto", ddlAuto);
+        // Without the lookup no connection is opened while the persistence unit is built
+        jpaProperties.setProperty("hibernate.temp.use_jdbc_metadata_defaults", String.valueOf(lookupJdbcMetadata));
+        jpaProperties.setProperty("hibernate.dialect", dialect);
         jpaProperties.setProperty("hibernate.transaction.jta.platform", 
                                   "com.example.atomikos.config.AtomikosJtaPlatform");
         jpaProperties.setProperty("javax.persistence.transactionType", "JTA");
         jpaProperties.setProperty("hibernate.current_session_context_class", "jta");
-        jpaProperties.setProperty("hibernate.show_sql", "true");
-        
-        emf.setJpaProperties(jpaProperties);
-        
-        return emf;
+        jpaProperties.setProperty("hibernate.show_sql", String.valueOf(showSql));
+        jpaProperties.setProperty("hibernate.jdbc.batch_size", String.valueOf(jdbcBatchSize));
+        jpaProperties.setProperty("hibernate.order_inserts", "true");
+        jpaProperties.setProperty("hibernate.order_updates", "true");
+        jpaProperties.setProperty("hibernate.id.optimizer.pooled.preferred", "pooled-lo");
+        return jpaProperties;
     }
 
     @Bean
+    @ConditionalOnProperty(name = "app.jms.provider", havingValue = "ibmmq", matchIfMissing = true)
     public MQXAConnectionFactory mqXAConnectionFactory() throws Exception {
         MQXAConnectionFactory factory = new MQXAConnectionFactory();
-        
-        // Parse connection string in format: host(port)
-        String host = connName;
-        int port = 1414; // Default IBM MQ port
-        
-        if (connName.contains("(") && connName.contains(")")) {
-            int parenIndex = connName.indexOf("(");
-            host = connName.substring(0, parenIndex);
-            String portStr = connName.substring(parenIndex + 1, connName.indexOf(")"));
-            try {
-                port = Integer.parseInt(portStr);
-            } catch (NumberFormatException e) {
-                logger.warn("Invalid port in connection string: {}, using default port 1414", connName);
-            }
-        }
-        
-        factory.setHostName(host);
-        factory.setPort(port);
-        factory.setQueueManager(queueManager);
-        factory.setChannel(channel);
-        factory.setTransportType(CommonConstants.WMQ_CM_CLIENT);
-        
-        if (mqUser != null && !mqUser.isEmpty()) {
-            factory.setStringProperty("XMSC_USERID", mqUser);
-            factory.setStringProperty("XMSC_PASSWORD", mqPassword);
-        }
-        
+        MqConnectionSupport.configure(factory, connName, queueManager, channel, mqUser, mqPassword, ccdtUrl);
         return factory;
     }
 
     @Bean
-    public com.atomikos.jms.AtomikosConnectionFactoryBean atomikosConnectionFactory() throws Exception {
-        com.atomikos.jms.AtomikosConnectionFactoryBean bean = new com.atomikos.jms.AtomikosConnectionFactoryBean();
-        bean.setUniqueResourceName("ibmMqXA");
-        bean.setXaConnectionFactory(mqXAConnectionFactory());
+    public AtomikosConnectionFactoryBean atomikosConnectionFactory(XAConnectionFactory xaConnectionFactory) {
+        return xaConnectionFactory("ibmMqXA", xaConnectionFactory);
+    }
+
+    private AtomikosConnectionFactoryBean xaConnectionFactory(String resourceName, XAConnectionFactory xaConnectionFactory) {
+        AtomikosConnectionFactoryBean bean = new AtomikosConnectionFactoryBean();
+        bean.setUniqueResourceName(resourceName);
+        bean.setXaConnectionFactory(pipelineMetrics.instrument(resourceName, xaConnectionFactory));
         bean.setMinPoolSize(1);
         bean.setMaxPoolSize(5);
+        pipelineMetrics.registerPool(resourceName, bean::poolAvailableSize, bean::poolTotalSize, bean::getMaxPoolSize);
         return bean;
     }
 
+    /**
+     * The primary queue manager and those of {@code ibm.mq.additional-queue-managers}. Each
+     * additional queue manager is a separate XA resource named {@code ibmMqXA.<name>}, so
+     * Atomikos recovers its in-doubt transactions from that queue manager.
+     */
     @Bean
-    public JmsTemplate jmsTemplate() throws Exception {
+    public QueueManagers queueManagers(AtomikosConnectionFactoryBean atomikosConnectionFactory,
+                                       XAConnectionFactory xaConnectionFactory) throws Exception {
+        List<QueueManagers.Member> members = new ArrayList<>();
+        members.add(new QueueManagers.Member(queueManager, "ibmMqXA", atomikosConnectionFactory,
+                                             pipelineMetrics.leaseTimed("ibmMqXA", atomikosConnectionFactory),
+                                             plainConnectionFactory(queueManager, xaConnectionFactory)));
+        List<MqConnectionSupport.QueueManager> additional = MqConnectionSupport.parseQueueManagers(additionalQueueManagers);
+        if (!additional.isEmpty() && !"ibmmq".equals(jmsProvider)) {
+            throw new IllegalStateException("ibm.mq.additional-queue-managers requires app.jms.provider=ibmmq");
+        }
+        if (!additional.isEmpty() && stripingEnabled) {
+            // The dispatcher browses and its lanes receive by message ID without regard to the queue manager
+            throw new IllegalStateException("app.listener.striping.enabled does not support ibm.mq.additional-queue-managers");
+        }
+        for (MqConnectionSupport.QueueManager member : additional) {
+            if (member.connName() == null && ccdtUrl.isBlank()) {
+                throw new IllegalArgumentException("Queue manager " + member.name() + " needs NAME@host(port) or ibm.mq.ccdt-url");
+            }
+            MQXAConnectionFactory factory = new MQXAConnectionFactory();
+            // An explicit address takes precedence over the CCDT
+            MqConnectionSupport.configure(factory, member.connName(), member.name(), channel, mqUser, mqPassword,
+                                          member.connName() == null ? ccdtUrl : null);
+            String resourceName = "ibmMqXA." + member.name();
+            AtomikosConnectionFactoryBean connectionFactory = xaConnectionFactory(resourceName, factory);
+            members.add(new QueueManagers.Member(member.name(), resourceName, connectionFactory,
+                                                 pipelineMetrics.leaseTimed(resourceName, connectionFactory), factory));
+        }
+        if (members.size() > 1) {
+            logger.info("Consuming from queue managers {}",
+                        members.stream().map(QueueManagers.Member::queueManager).toList());
+        }
+        return new QueueManagers(members);
+    }
+
+    private static ConnectionFactory plainConnectionFactory(String queueManager, XAConnectionFactory xaConnectionFactory) {
+        if (xaConnectionFactory instanceof ConnectionFactory plain) {
+            return plain;
+        }
+        throw new IllegalStateException("XA connection factory of queue manager " + queueManager
+                                        + " cannot create plain connections");
+    }
+
+    @Bean
+    public PoolResizer poolResizer(QueueManagers queueManagers) {
+        AtomikosDataSourceBean dataSource = (AtomikosDataSourceBean) dataSource();
+        int queueManagerCount = queueManagers.members().size();
+        return consumers -> {
+            // A consumer holds one database connection and two MQ sessions, one receiving and
+            // one publishing, during its transaction; one spare of each is kept for other work.
+            // Every queue manager has its own consumers and pool.
+            dataSource.setMaxPoolSize(consumers * queueManagerCount + 1);
+            for (QueueManagers.Member member : queueManagers.members()) {
+                member.connectionFactory().setMaxPoolSize(2 * consumers + 1);
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.startup.warm-pools", havingValue = "true")
+    public PoolWarmup poolWarmup(QueueManagers queueManagers, RouteTable routeTable,
+                                 @Value("${app.startup.warm-up-timeout-ms:30000}") long timeoutMillis) {
+        AtomikosDataSourceBean dataSource = (AtomikosDataSourceBean) dataSource();
+        // What the initial consumers hold during their transactions, kept open once warm
+        int dbConnections = Math.min(routeTable.consumers() * queueManagers.members().size(), dataSource.getMaxPoolSize());
+        dataSource.setMinPoolSize(dbConnections);
+        List<PoolWarmup.Pool> pools = new ArrayList<>();
+        pools.add(new PoolWarmup.Pool("oracleDataSource", dbConnections, dataSource::getConnection));
+        for (QueueManagers.Member member : queueManagers.members()) {
+            AtomikosConnectionFactoryBean connectionFactory = member.connectionFactory();
+            int mqConnections = Math.min(2 * routeTable.consumers(), connectionFactory.getMaxPoolSize());
+            connectionFactory.setMinPoolSize(mqConnections);
+            pools.add(new PoolWarmup.Pool(member.resourceName(), mqConnections, connectionFactory::createConnection));
+        }
+        return new PoolWarmup(pools, timeoutMillis);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.transaction.recovery.on-startup", havingValue = "true", matchIfMissing = true)
+    public ParallelRecovery parallelRecovery(QueueManagers queueManagers,
+                                             @Value("${app.transaction.recovery.parallel:true}") boolean parallel,
+                                             @Value("${app.transaction.recovery.timeout-ms:60000}") long timeoutMillis) {
+        AtomikosDataSourceBean dataSource = (AtomikosDataSourceBean) dataSource();
+        List<ParallelRecovery.Resource> resources = new ArrayList<>();
+        resources.add(new ParallelRecovery.Resource("oracleDataSource", dataSource::init));
+        for (QueueManagers.Member member : queueManagers.members()) {
+            // Connection factories register with Atomikos on first use otherwise
+            resources.add(new ParallelRecovery.Resource(member.resourceName(), member.connectionFactory()::init));
+        }
+        return new ParallelRecovery(resources, pipelineMetrics, parallel, timeoutMillis);
+    }
+
+    @Bean
+    public JmsTemplate jmsTemplate(QueueManagers queueManagers) {
         JmsTemplate template = new JmsTemplate();
-        template.setConnectionFactory(atomikosConnectionFactory());
+        template.setConnectionFactory(queueManagers.connectionFactory());
         template.setSessionTransacted(true);
         return template;
     }
 
     @Bean
-    public org.springframework.jms.config.JmsListenerContainerFactory<?> jmsListenerContainerFactory() throws Exception {
-        org.springframework.jms.config.DefaultJmsListenerContainerFactory factory = new org.springframework.jms.config.DefaultJmsListenerContainerFactory();
-        factory.setConnectionFactory(atomikosConnectionFactory());
+    public CapacityScheduler capacityScheduler(QueueManagers queueManagers, RouteTable routeTable) {
+        return new CapacityScheduler(routeTable, queueManagers.members().size(), capacityMaxWaitMillis,
+                                     pipelineMetrics);
+    }
+
+    /**
+     * The listener container factory of the primary route on the primary queue manager, and the
+     * default for any other {@code @JmsListener}.
+     */
+    @Bean
+    public org.springframework.jms.config.JmsListenerContainerFactory<?> jmsListenerContainerFactory(
+            QueueManagers queueManagers, RouteTable routeTable, PoolResizer poolResizer) throws Exception {
+        return listenerContainerFactory(queueManagers, queueManagers.members().get(0), routeTable, routeTable.primary(),
+                                        poolResizer);
+    }
+
+    /**
+     * Registers the listener containers of every route on every queue manager. The containers
+     * reconnect on their own, so the others keep consuming while a queue manager is down, and
+     * all of them share the Oracle pool and the MQ pool of their queue manager.
+     */
+    @Bean
+    public JmsListenerConfigurer routeListeners(QueueManagers queueManagers, RouteTable routeTable,
+                                                MessageListener messageListener, PoolResizer poolResizer) {
+        if (routeTable.maxConsumers() > listenerConcurrency) {
+            poolResizer.resize(routeTable.maxConsumers());
+        }
+        return registrar -> {
+            for (Route route : routeTable.routes()) {
+                for (QueueManagers.Member member : queueManagers.members()) {
+                    String queueManager = member == queueManagers.members().get(0) ? null : member.queueManager();
+                    try {
+                        registrar.registerEndpoint(
+                                messageListener.endpoint(route, MessageListener.listenerId(route, queueManager)),
+                                listenerContainerFactory(queueManagers, member, routeTable, route, poolResizer));
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Cannot create listener for route " + route.name()
+                                                        + " on queue manager " + member.queueManager(), e);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Maximum consumers of the primary route per queue manager on virtual threads: the requested
+     * maximum, capped so that every consumer of every route on every queue manager still gets one
+     * connection of an Oracle pool of at most {@code maxDbPoolSize}, the spare included. A consumer
+     * beyond that would wait for a connection inside its XA transaction. Never below the route's
+     * reserved {@code concurrency}.
+     */
+    static int virtualThreadConsumers(int requested, int concurrency, int secondaryConsumers, int queueManagers,
+                                      int maxDbPoolSize) {
+        int poolConsumers = (maxDbPoolSize - 1) / queueManagers - secondaryConsumers;
+        int consumers = Math.max(concurrency, Math.min(requested, poolConsumers));
+        if (consumers < requested) {
+            logger.warn("Virtual-thread consumers capped at {} by app.datasource.max-pool-size={}",
+                        consumers, maxDbPoolSize);
+        }
+        return consumers;
+    }
+
+    private org.springframework.jms.config.DefaultJmsListenerContainerFactory listenerContainerFactory(
+            QueueManagers queueManagers, QueueManagers.Member member, RouteTable routeTable, Route route,
+            PoolResizer poolResizer) throws Exception {
+        org.springframework.jms.config.DefaultJmsListenerContainerFactory factory = new RouteListenerContainerFactory(
+                route, batchWindowMillis, capacityScheduler(queueManagers, routeTable));
+        boolean primary = route == routeTable.primary();
+        factory.setConnectionFactory(member.leaseTimed());
         factory.setSessionTransacted(true);
-        factory.setConcurrency("1-1");
+        factory.setConcurrency(route.concurrency() + "-" + routeTable.maxConcurrency(route));
+        // Striped mode consumes the primary input queue through StripedMessageDispatcher instead
+        factory.setAutoStartup(!(stripingEnabled && primary));
+        SimpleAsyncTaskExecutor taskExecutor = null;
+        if (listenerVirtualThreads) {
+            taskExecutor = VirtualThreads.taskExecutor("jms-listener-");
+            if (taskExecutor != null) {
+                // Consumers spend most of their time blocked on Oracle, MQ and 2PC round-trips and no
+                // longer cost a platform thread each, so the XA pools become the concurrency limit
+                if (primary) {
+                    int maxConcurrency = virtualThreadConsumers(
+                            Math.max(listenerMaxConcurrency, routeTable.maxConcurrency(route)), route.concurrency(),
+                            routeTable.secondaryConsumers(), queueManagers.members().size(), maxDbPoolSize);
+                    factory.setConcurrency(route.concurrency() + "-" + maxConcurrency);
+                    poolResizer.resize(maxConcurrency + routeTable.secondaryConsumers());
+                    logger.info("Listener consumers run on virtual threads, up to {} consumers", maxConcurrency);
+                }
+            } else {
+                logger.warn("Virtual threads are not available on this JDK, listener consumers use platform threads");
+            }
+        }
+        if (queueManagers.routing() != null) {
+            // Consumer threads publish on the queue manager they consume from
+            if (taskExecutor == null) {
+                taskExecutor = new SimpleAsyncTaskExecutor("jms-" + member.queueManager() + "-");
+            }
+            taskExecutor.setTaskDecorator(queueManagers.routing().bindTo(member.queueManager()));
+        }
+        if (taskExecutor != null) {
+            factory.setTaskExecutor(taskExecutor);
+        }
+        if (route.batchSize() > 1 || route.transactionTimeoutSeconds() > 0) {
+            // In batch mode the container starts the JTA transaction before the first receive,
+            // so every message received into the batch is enlisted in the same XA transaction
+            factory.setTransactionManager(transactionManager());
+            if (route.batchSize() > 1) {
+                logger.info("Listener batch mode enabled on route {} with batch size {}", route.name(), route.batchSize());
+            }
+        }
         return factory;
     }
 }
@@ -0,0 +1,310 @@
+package com.example.atomikos.config;
+
+import com.atomikos.persistence.imp.LogFileLock;
+import com.atomikos.recovery.LogException;
+import com.atomikos.recovery.LogReadException;
+import com.atomikos.recovery.LogWriteException;
+import com.atomikos.recovery.PendingTransactionRecord;
+import com.atomikos.recovery.TxState;
+import com.atomikos.recovery.fs.FileSystemRepository;
+import com.atomikos.recovery.fs.Repository;
+import com.atomikos.util.VersionedFile;
+import com.example.atomikos.metrics.PipelineMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transaction log that forces the records of concurrent transactions to disk together. The
+ * Atomikos file log writes and forces every record under a lock, so parallel commits queue up
+ * behind each other's fsync. Here a record joins the group that is waiting to be written, and
+ * the first writer to find the log idle writes and forces the whole group at once while the next
+ * group collects. {@link #put} still returns only once its record is on disk.
+ * <p>
+ * Records are kept in memory for recovery and the file is rewritten with the pending records
+ * every {@code checkpointInterval} writes, as Atomikos does, or when a checkpoint is requested
+ * through {@link #writeCheckpoint(Collection)}. The file names and record format
+ * are those of the Atomikos file log, so an existing log can be taken over by either store.
+ */
+public class GroupCommitRepository implements Repository {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitRepository.class);
+
+    private final VersionedFile file;
+    private final LogFileLock fileLock;
+    private final long checkpointInterval;
+    private final long forgetOrphanedLogEntriesDelay;
+    private final PipelineMetrics pipelineMetrics;
+    private final Map<String, PendingTransactionRecord> records = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition groupWritten = lock.newCondition();
+    private Group collecting = new Group();
+    private boolean writing;
+    private boolean checkpointNeeded;
+    private long writesSinceCheckpoint;
+    // Only used by the writer of a group, or by init before any group is written
+    private FileChannel channel;
+
+    private static final class Group {
+        final List<PendingTransactionRecord> records = new ArrayList<>();
+        boolean written;
+        LogWriteException failure;
+    }
+
+    /**
+     * @param forgetOrphanedLogEntriesDelay milliseconds after its expiry that a non-heuristic
+     *                                      record is dropped at the next checkpoint
+     */
+    public GroupCommitRepository(String baseDir, String baseName, long checkpointInterval,
+                                 long forgetOrphanedLogEntriesDelay, PipelineMetrics pipelineMetrics) {
+        this.file = new VersionedFile(baseDir, baseName, ".log");
+        this.fileLock = new LogFileLock(baseDir, baseName);
+        this.checkpointInterval = checkpointInterval;
+        this.forgetOrphanedLogEntriesDelay = forgetOrphanedLogEntriesDelay;
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    @Override
+    public void init() throws LogException {
+        fileLock.acquireLock();
+        Collection<PendingTransactionRecord> existing;
+        try (FileInputStream in = file.openLastValidVersionForReading()) {
+            existing = FileSystemRepository.readFromInputStream(in);
+        } catch (FileNotFoundException e) {
+            existing = List.of();
+        } catch (IOException e) {
+            throw new LogReadException(e);
+        }
+        for (PendingTransactionRecord record : existing) {
+            apply(records, record);
+        }
+        checkpoint(List.of());
+    }
+
+    @Override
+    public void put(String id, PendingTransactionRecord record) throws LogWriteException {
+        lock.lock();
+        try {
+            Group group = collecting;
+            group.records.add(record);
+            while (!group.written) {
+                if (writing) {
+                    groupWritten.awaitUninterruptibly();
+                } else {
+                    // Our group is still collecting, so it is the one written next
+                    writeCollectingGroup();
+                }
+            }
+            if (group.failure != null) {
+                throw group.failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held; releases it while writing
+    private void writeCollectingGroup() {
+        Group group = collecting;
+        collecting = new Group();
+        writing = true;
+        boolean checkpoint = checkpointNeeded || writesSinceCheckpoint + group.records.size() >= checkpointInterval;
+        lock.unlock();
+        LogWriteException failure = null;
+        try {
+            if (checkpoint) {
+                checkpoint(group.records);
+            } else {
+                append(group.records);
+            }
+        } catch (LogWriteException e) {
+            failure = e;
+        } finally {
+            lock.lock();
+        }
+        writing = false;
+        if (failure == null) {
+            writesSinceCheckpoint = checkpoint ? 0 : writesSinceCheckpoint + group.records.size();
+            checkpointNeeded = false;
+        } else {
+            // The file may end in a partial record, so the next group rewrites it
+            checkpointNeeded = true;
+        }
+        group.failure = failure;
+        group.written = true;
+        groupWritten.signalAll();
+    }
+
+    private void append(List<PendingTransactionRecord> group) throws LogWriteException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(group.size() * 128);
+        for (PendingTransactionRecord record : group) {
+            bytes.writeBytes(record.toRecord().getBytes());
+        }
+        long start = System.nanoTime();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new LogWriteException(e);
+        }
+        pipelineMetrics.recordLogForce(group.size(), System.nanoTime() - start);
+        for (PendingTransactionRecord record : group) {
+            apply(records, record);
+        }
+    }
+
+    /**
+     * Writes a new version of the file with the pending records, including {@code group}, and
+     * drops the records left over from transactions that expired long ago.
+     */
+    private void checkpoint(List<PendingTransactionRecord> group) throws LogWriteException {
+        Map<String, PendingTransactionRecord> pending = new LinkedHashMap<>(records);
+        for (PendingTransactionRecord record : group) {
+            apply(pending, record);
+        }
+        writeVersion(pending);
+    }
+
+    private void writeVersion(Map<String, PendingTransactionRecord> pending) throws LogWriteException {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        pending.values().removeIf(record -> canBeForgotten(now, record));
+        try {
+            file.close();
+            channel = file.openNewVersionForNioWriting();
+            for (PendingTransactionRecord record : pending.values()) {
+                ByteBuffer buffer = ByteBuffer.wrap(record.toRecord().getBytes());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(false);
+            file.discardBackupVersion();
+        } catch (IOException e) {
+            logger.warn("Failed to write transaction log checkpoint, retrying with the next write", e);
+            throw new LogWriteException(e);
+        }
+        records.keySet().retainAll(pending.keySet());
+        records.putAll(pending);
+        pipelineMetrics.recordLogCheckpoint(pending.size(), System.nanoTime() - start);
+    }
+
+    private static void apply(Map<String, PendingTransactionRecord> target, PendingTransactionRecord record) {
+        if (record.state.isFinalState()) {
+            target.remove(record.id);
+        } else {
+            target.put(record.id, record);
+        }
+    }
+
+    private boolean canBeForgotten(long now, PendingTransactionRecord record) {
+        if (now - record.expires > forgetOrphanedLogEntriesDelay && !record.state.isHeuristic()) {
+            logger.warn("Purging orphaned entry from transaction log: {}", record);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public PendingTransactionRecord get(String id) {
+        return records.get(id);
+    }
+
+    @Override
+    public Collection<PendingTransactionRecord> findAllCommittingCoordinatorLogEntries() {
+        List<PendingTransactionRecord> committing = new ArrayList<>();
+        for (PendingTransactionRecord record : records.values()) {
+            if (record.state == TxState.COMMITTING
+                || record.state == TxState.IN_DOUBT && hasCommittingSuperior(record)) {
+                committing.add(record);
+            }
+        }
+        return committing;
+    }
+
+    private boolean hasCommittingSuperior(PendingTransactionRecord record) {
+        PendingTransactionRecord superior = record.superiorId != null ? records.get(record.superiorId) : null;
+        if (superior == null) {
+            return false;
+        }
+        return superior.state == TxState.COMMITTING || hasCommittingSuperior(superior);
+    }
+
+    @Override
+    public Collection<PendingTransactionRecord> getAllCoordinatorLogEntries() {
+        return List.copyOf(records.values());
+    }
+
+    /**
+     * Replaces the log with {@code checkpointContent}, once the group being written is on disk.
+     * Groups that collect meanwhile are written after the checkpoint, on top of it.
+     */
+    @Override
+    public void writeCheckpoint(Collection<PendingTransactionRecord> checkpointContent) throws LogWriteException {
+        Map<String, PendingTransactionRecord> pending = new LinkedHashMap<>();
+        for (PendingTransactionRecord record : checkpointContent) {
+            apply(pending, record);
+        }
+        lock.lock();
+        try {
+            while (writing) {
+                groupWritten.awaitUninterruptibly();
+            }
+            writing = true;
+        } finally {
+            lock.unlock();
+        }
+        boolean written = false;
+        try {
+            writeVersion(pending);
+            written = true;
+        } finally {
+            lock.lock();
+            try {
+                writing = false;
+                if (written) {
+                    writesSinceCheckpoint = 0;
+                }
+                // A failed checkpoint may leave a partial file, so the next group rewrites it
+                checkpointNeeded = !written;
+                groupWritten.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            while (writing || !collecting.records.isEmpty()) {
+                groupWritten.awaitUninterruptibly();
+            }
+            file.close();
+        } catch (IOException e) {
+            logger.warn("Error closing transaction log - ignoring", e);
+        } finally {
+            lock.unlock();
+            fileLock.releaseLock();
+        }
+    }
+}
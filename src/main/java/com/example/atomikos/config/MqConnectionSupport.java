@@ -0,0 +1,108 @@
+package com.example.atomikos.config;
+
+import com.ibm.mq.jms.MQConnectionFactory;
+import com.ibm.msg.client.wmq.common.CommonConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared client connection settings for the XA and non-XA IBM MQ connection factories.
+ */
+final class MqConnectionSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqConnectionSupport.class);
+
+    private MqConnectionSupport() {
+    }
+
+    /**
+     * A queue manager given as {@code NAME@host(port)}, or as {@code NAME} alone when its
+     * address is looked up in the CCDT; {@code connName} is then {@code null}.
+     */
+    record QueueManager(String name, String connName) {
+    }
+
+    /**
+     * Parses a comma-separated list of queue managers, see {@link QueueManager}.
+     */
+    static List<QueueManager> parseQueueManagers(String list) {
+        List<QueueManager> queueManagers = new ArrayList<>();
+        if (list == null) {
+            return queueManagers;
+        }
+        for (String entry : list.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int at = entry.indexOf('@');
+            String name = at < 0 ? entry : entry.substring(0, at).trim();
+            String connName = at < 0 ? null : entry.substring(at + 1).trim();
+            if (name.isEmpty() || (connName != null && connName.isEmpty())) {
+                throw new IllegalArgumentException("Invalid queue manager, expected NAME or NAME@host(port): " + entry);
+            }
+            queueManagers.add(new QueueManager(name, connName));
+        }
+        return queueManagers;
+    }
+
+    /**
+     * Configures a client connection to {@code queueManager}. With a CCDT URL the channel and
+     * address are taken from the channel definition table, otherwise from {@code connName}
+     * and {@code channel}.
+     */
+    static void configure(MQConnectionFactory factory, String connName, String queueManager, String channel,
+                          String mqUser, String mqPassword, String ccdtUrl) throws JMSException {
+        if (ccdtUrl == null || ccdtUrl.isBlank()) {
+            configure(factory, connName, queueManager, channel, mqUser, mqPassword);
+            return;
+        }
+        try {
+            factory.setCCDTURL(new URL(ccdtUrl));
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid ibm.mq.ccdt-url: " + ccdtUrl, e);
+        }
+        factory.setQueueManager(queueManager);
+        factory.setTransportType(CommonConstants.WMQ_CM_CLIENT);
+        setCredentials(factory, mqUser, mqPassword);
+    }
+
+    static void configure(MQConnectionFactory factory, String connName, String queueManager, String channel,
+                          String mqUser, String mqPassword) throws JMSException {
+        // Parse connection string in format: host(port)
+        String host = connName;
+        int port = 1414; // Default IBM MQ port
+        
+        if (connName.contains("(") && connName.contains(")")) {
+            int parenIndex = connName.indexOf("(");
+            host = connName.substring(0, parenIndex);
+            String portStr = connName.substring(parenIndex + 1, connName.indexOf(")"));
+            try {
+                port = Integer.parseInt(portStr);
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid port in connection string: {}, using default port 1414", connName);
+            }
+        }
+        
+        factory.setHostName(host);
+        factory.setPort(port);
+        factory.setQueueManager(queueManager);
+        factory.setChannel(channel);
+        factory.setTransportType(CommonConstants.WMQ_CM_CLIENT);
+        setCredentials(factory, mqUser, mqPassword);
+    }
+
+    private static void setCredentials(MQConnectionFactory factory, String mqUser, String mqPassword)
+            throws JMSException {
+        if (mqUser != null && !mqUser.isEmpty()) {
+            factory.setStringProperty("XMSC_USERID", mqUser);
+            factory.setStringProperty("XMSC_PASSWORD", mqPassword);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.atomikos.config;
+
+import com.example.atomikos.listener.CapacityScheduler;
+import com.example.atomikos.listener.MessageListener;
+import com.example.atomikos.listener.PoolResizer;
+import com.example.atomikos.listener.RouteListenerContainerFactory;
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.service.Route;
+import com.example.atomikos.service.RouteTable;
+import com.ibm.mq.jms.MQConnectionFactory;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jms.annotation.JmsListenerConfigurer;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.config.JmsListenerContainerFactory;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.JpaVendorAdapter;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.Properties;
+
+/**
+ * Non-XA alternative to {@link AtomikosConfig}, enabled with {@code app.processing.mode=outbox}.
+ * Each input message is consumed in a local JMS transaction and processed in one local Oracle
+ * transaction that writes {@code MESSAGE_DATA} together with an outbox row; the outbox relay
+ * publishes the output messages afterwards.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "app.processing.mode", havingValue = "outbox")
+public class OutboxConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxConfig.class);
+
+    @Value("${spring.datasource.url}")
+    private String dbUrl;
+
+    @Value("${spring.datasource.username}")
+    private String dbUsername;
+
+    @Value("${spring.datasource.password}")
+    private String dbPassword;
+
+    @Value("${app.jpa.dialect:org.hibernate.dialect.Oracle12cDialect}")
+    private String dialect;
+
+    @Value("${ibm.mq.queueManager}")
+    private String queueManager;
+
+    @Value("${ibm.mq.channel}")
+    private String channel;
+
+    @Value("${ibm.mq.connName}")
+    private String connName;
+
+    @Value("${ibm.mq.user:#{null}}")
+    private String mqUser;
+
+    @Value("${ibm.mq.password:#{null}}")
+    private String mqPassword;
+
+    @Value("${ibm.mq.ccdt-url:}")
+    private String ccdtUrl;
+
+    @Value("${app.listener.concurrency.min:1}")
+    private int listenerConcurrency;
+
+    @Value("${app.listener.batch.window-ms:50}")
+    private long batchWindowMillis;
+
+    @Value("${app.listener.capacity.max-wait-ms:1000}")
+    private long capacityMaxWaitMillis;
+
+    @Value("${app.listener.striping.enabled:false}")
+    private boolean stripingEnabled;
+
+    @Value("${app.jpa.batch-size:50}")
+    private int jdbcBatchSize;
+
+    @Value("${app.jpa.show-sql:false}")
+    private boolean showSql;
+
+    @Value("${app.jpa.ddl-auto:update}")
+    private String ddlAuto;
+
+    @Value("${app.jpa.lookup-jdbc-metadata:true}")
+    private boolean lookupJdbcMetadata;
+
+    private final PipelineMetrics pipelineMetrics;
+
+    public OutboxConfig(PipelineMetrics pipelineMetrics) {
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    @Bean(destroyMethod = "close")
+    public DataSource dataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("oracleDataSource");
+        dataSource.setJdbcUrl(dbUrl);
+        dataSource.setUsername(dbUsername);
+        dataSource.setPassword(dbPassword);
+        dataSource.setAutoCommit(false);
+        dataSource.setMinimumIdle(1);
+        dataSource.setMaximumPoolSize(5);
+        return dataSource;
+    }
+
+    @Bean
+    public PoolResizer poolResizer() {
+        HikariDataSource dataSource = (HikariDataSource) dataSource();
+        // One connection per consumer plus one for the outbox relay
+        return consumers -> dataSource.setMaximumPoolSize(consumers + 1);
+    }
+
+    @Bean
+    public LocalContainerEntityManagerFactoryBean entityManagerFactory() {
+        LocalContainerEntityManagerFactoryBean emf = new LocalContainerEntityManagerFactoryBean();
+        emf.setDataSource(dataSource());
+        emf.setPackagesToScan("com.example.atomikos.entity");
+        
+        JpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+        emf.setJpaVendorAdapter(vendorAdapter);
+        
+        emf.setJpaProperties(jpaProperties());
+        
+        return emf;
+    }
+
+    Properties jpaProperties() {
+        Properties jpaProperties = new Properties();
+        jpaProperties.setProperty("hibernate.hbm2ddl.auto", ddlAuto);
+        // Without the lookup no connection is opened while the persistence unit is built
+        jpaProperties.setProperty("hibernate.temp.use_jdbc_metadata_defaults", String.valueOf(lookupJdbcMetadata));
+        jpaProperties.setProperty("hibernate.dialect", dialect);
+        jpaProperties.setProperty("hibernate.connection.provider_disables_autocommit", "true");
+        jpaProperties.setProperty("hibernate.show_sql", String.valueOf(showSql));
+        jpaProperties.setProperty("hibernate.jdbc.batch_size", String.valueOf(jdbcBatchSize));
+        jpaProperties.setProperty("hibernate.order_inserts", "true");
+        jpaProperties.setProperty("hibernate.order_updates", "true");
+        jpaProperties.setProperty("hibernate.id.optimizer.pooled.preferred", "pooled-lo");
+        return jpaProperties;
+    }
+
+    @Bean
+    public PlatformTransactionManager transactionManager() {
+        return pipelineMetrics.instrument(new JpaTransactionManager(entityManagerFactory().getObject()));
+    }
+
+    @Bean
+    public MQConnectionFactory mqConnectionFactory() throws Exception {
+        MQConnectionFactory factory = new MQConnectionFactory();
+        MqConnectionSupport.configure(factory, connName, queueManager, channel, mqUser, mqPassword, ccdtUrl);
+        return factory;
+    }
+
+    @Bean
+    public CachingConnectionFactory cachingConnectionFactory() throws Exception {
+        CachingConnectionFactory factory = new CachingConnectionFactory(mqConnectionFactory());
+        factory.setSessionCacheSize(5);
+        return factory;
+    }
+
+    @Bean
+    public JmsTemplate jmsTemplate() throws Exception {
+        JmsTemplate template = new JmsTemplate();
+        template.setConnectionFactory(cachingConnectionFactory());
+        template.setSessionTransacted(true);
+        return template;
+    }
+
+    @Bean
+    public CapacityScheduler capacityScheduler(RouteTable routeTable) {
+        return new CapacityScheduler(routeTable, 1, capacityMaxWaitMillis, pipelineMetrics);
+    }
+
+    @Bean
+    public JmsListenerContainerFactory<?> jmsListenerContainerFactory(RouteTable routeTable) throws Exception {
+        logger.info("Outbox processing mode enabled, XA transactions are not used");
+        return listenerContainerFactory(routeTable, routeTable.primary());
+    }
+
+    /**
+     * Registers a listener container for every route. In this mode a route's transaction
+     * timeout does not apply, the local transactions have none.
+     */
+    @Bean
+    public JmsListenerConfigurer routeListeners(RouteTable routeTable, MessageListener messageListener,
+                                                PoolResizer poolResizer) {
+        if (routeTable.maxConsumers() > listenerConcurrency) {
+            poolResizer.resize(routeTable.maxConsumers());
+        }
+        return registrar -> {
+            for (Route route : routeTable.routes()) {
+                try {
+                    registrar.registerEndpoint(messageListener.endpoint(route, MessageListener.listenerId(route, null)),
+                                               listenerContainerFactory(routeTable, route));
+                } catch (Exception e) {
+                    throw new IllegalStateException("Cannot create listener for route " + route.name(), e);
+                }
+            }
+        };
+    }
+
+    private DefaultJmsListenerContainerFactory listenerContainerFactory(RouteTable routeTable, Route route)
+            throws Exception {
+        DefaultJmsListenerContainerFactory factory =
+                new RouteListenerContainerFactory(route, batchWindowMillis, capacityScheduler(routeTable));
+        // The listener container creates its own long-lived consumer session, so it uses the
+        // plain connection factory. The local JMS transaction commits after the database commit.
+        factory.setConnectionFactory(mqConnectionFactory());
+        factory.setSessionTransacted(true);
+        factory.setConcurrency(route.concurrency() + "-" + routeTable.maxConcurrency(route));
+        // Striped mode consumes the primary input queue through StripedMessageDispatcher instead
+        factory.setAutoStartup(!(stripingEnabled && route == routeTable.primary()));
+        return factory;
+    }
+}
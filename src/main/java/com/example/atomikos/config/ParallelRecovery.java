@@ -0,0 +1,270 @@
+package com.example.atomikos.config;
+
+import com.atomikos.datasource.RecoverableResource;
+import com.atomikos.icatch.config.Configuration;
+import com.atomikos.icatch.imp.TransactionServiceImp;
+import com.atomikos.recovery.LogException;
+import com.atomikos.recovery.PendingTransactionRecord;
+import com.atomikos.recovery.RecoveryLog;
+import com.example.atomikos.metrics.PipelineMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recovers the in-doubt transactions of all XA resources before the listener containers start,
+ * one thread per resource. Atomikos recovers its resources one after the other on a timer, the
+ * first time {@code app.transaction.recovery.delay-ms} after startup, so after a crash Oracle
+ * and every queue manager would otherwise be recovered in turn while consumers already run
+ * into the locks of in-doubt transactions.
+ * <p>
+ * A pass commits the prepared branches of transactions logged as committing and rolls back
+ * the others, exactly as the Atomikos pass does, and forgets the committing log records once
+ * every resource has been recovered. It holds the lock the Atomikos passes run under, so a
+ * background pass that falls due meanwhile waits for it to finish rather than recovering the
+ * same transactions at the same time; if the lock is not available the pass is left to
+ * Atomikos. Progress is logged while the pass runs and recorded in {@code app.xa.recovery}.
+ * Whatever is left, e.g. on a resource that is down, is recovered by the periodic Atomikos passes.
+ */
+public class ParallelRecovery implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelRecovery.class);
+
+    /**
+     * Lifecycle phase: first of the startup steps, so the pool warm-up and the listener
+     * containers only start once the in-doubt transactions are resolved.
+     */
+    public static final int PHASE = Integer.MIN_VALUE + 100;
+
+    private static final long PROGRESS_INTERVAL_MILLIS = 5000;
+
+    private final List<Resource> resources;
+    private final PipelineMetrics pipelineMetrics;
+    private final boolean parallel;
+    private final long timeoutMillis;
+    private volatile boolean running;
+
+    /**
+     * Initializes a resource, which registers it with Atomikos.
+     */
+    @FunctionalInterface
+    public interface ResourceInitializer {
+        void init() throws Exception;
+    }
+
+    /**
+     * @param name unique resource name the resource is registered with in Atomikos
+     */
+    public record Resource(String name, ResourceInitializer initializer) {
+    }
+
+    /**
+     * Outcome of a recovery pass.
+     *
+     * @param recovered resources recovered completely
+     * @param pending   log records still pending afterwards
+     */
+    public record Result(int recovered, int pending, long millis) {
+    }
+
+    /**
+     * @param parallel      recover the resources in parallel rather than one after the other
+     * @param timeoutMillis time to wait for the pass before the listeners start regardless
+     */
+    public ParallelRecovery(List<Resource> resources, PipelineMetrics pipelineMetrics, boolean parallel,
+                            long timeoutMillis) {
+        this.resources = List.copyOf(resources);
+        this.pipelineMetrics = pipelineMetrics;
+        this.parallel = parallel;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void start() {
+        recover();
+        running = true;
+    }
+
+    /**
+     * Runs one recovery pass over all resources. After the timeout the pass completes in the
+     * background and the result only counts the resources recovered so far.
+     */
+    public Result recover() {
+        RecoveryLog recoveryLog = Configuration.getRecoveryLog();
+        if (recoveryLog == null) {
+            logger.warn("Atomikos is not running, skipping recovery");
+            return new Result(0, 0, 0);
+        }
+        Object atomikosRecovery = atomikosRecoveryLock();
+        if (atomikosRecovery == null) {
+            logger.warn("Cannot hold off the Atomikos background recovery, leaving recovery to Atomikos");
+            return new Result(0, -1, 0);
+        }
+        long start = System.currentTimeMillis();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger recovered = new AtomicInteger();
+        FutureTask<Result> pass = new FutureTask<>(() -> {
+            synchronized (atomikosRecovery) {
+                return recover(recoveryLog, start, done, recovered);
+            }
+        });
+        daemonThreads("xa-recovery-pass-").newThread(pass).start();
+        return await(pass, start, done, recovered);
+    }
+
+    private Result recover(RecoveryLog recoveryLog, long start, AtomicInteger done, AtomicInteger recovered)
+            throws InterruptedException {
+        String recoveryDomain = Configuration.getConfigProperties().getTmUniqueName();
+        Collection<PendingTransactionRecord> expiredCommitting;
+        Collection<PendingTransactionRecord> foreignInDoubt;
+        int pending;
+        try {
+            pending = recoveryLog.getPendingTransactionRecords().size();
+            expiredCommitting = recoveryLog.getExpiredPendingCommittingTransactionRecordsAt(start);
+            foreignInDoubt = PendingTransactionRecord.collectLineages(
+                    record -> record.isForeignInDomain(recoveryDomain), recoveryLog.getIndoubtTransactionRecords());
+        } catch (LogException e) {
+            logger.warn("Cannot read the transaction log, leaving recovery to Atomikos", e);
+            return new Result(0, -1, 0);
+        }
+        logger.info("Recovering {} resources {}, {} pending transactions in the log, {} to commit",
+                    resources.size(), parallel ? "in parallel" : "one after the other", pending,
+                    expiredCommitting.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallel ? resources.size() : 1,
+                                                                daemonThreads("xa-recovery-"));
+        for (Resource resource : resources) {
+            executor.execute(() -> {
+                if (recover(resource, start, expiredCommitting, foreignInDoubt)) {
+                    recovered.incrementAndGet();
+                }
+                done.incrementAndGet();
+            });
+        }
+        executor.shutdown();
+        // Without a timeout: the Atomikos passes wait for this one as long as it holds their lock
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+        if (recovered.get() == resources.size()) {
+            recoveryLog.forgetTransactionRecords(expiredCommitting);
+        }
+        pending = pendingTransactions();
+        long millis = System.currentTimeMillis() - start;
+        logger.info("Recovered {} of {} resources in {} ms, {} pending transactions left to the background recovery",
+                    recovered.get(), resources.size(), millis, pending);
+        return new Result(recovered.get(), pending, millis);
+    }
+
+    /**
+     * The lock of the Atomikos recovery domain, which every Atomikos recovery pass holds. Atomikos
+     * does not expose it, so it is read from its transaction service; {@code null} if that fails.
+     */
+    private static Object atomikosRecoveryLock() {
+        if (!(Configuration.getRecoveryService() instanceof TransactionServiceImp transactionService)) {
+            return null;
+        }
+        try {
+            Field recoveryDomainService = TransactionServiceImp.class.getDeclaredField("recoveryDomainService");
+            recoveryDomainService.setAccessible(true);
+            return recoveryDomainService.get(transactionService);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("Atomikos recovery domain not accessible", e);
+            return null;
+        }
+    }
+
+    /**
+     * Transactions pending in the Atomikos transaction log, or -1 when it cannot be read.
+     */
+    public static int pendingTransactions() {
+        RecoveryLog recoveryLog = Configuration.getRecoveryLog();
+        try {
+            return recoveryLog != null ? recoveryLog.getPendingTransactionRecords().size() : 0;
+        } catch (LogException e) {
+            return -1;
+        }
+    }
+
+    private Result await(Future<Result> pass, long start, AtomicInteger done, AtomicInteger recovered) {
+        try {
+            while (true) {
+                long remaining = start + timeoutMillis - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    logger.warn("Recovery did not finish within {} ms, {} resources still recovering in the background",
+                                timeoutMillis, resources.size() - done.get());
+                    break;
+                }
+                try {
+                    return pass.get(Math.min(remaining, PROGRESS_INTERVAL_MILLIS), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    logger.info("Recovery in progress for {} ms, {} of {} resources done",
+                                System.currentTimeMillis() - start, done.get(), resources.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // recover(...) handles the failures of the resources
+            throw new IllegalStateException(e.getCause());
+        }
+        return new Result(recovered.get(), pendingTransactions(), System.currentTimeMillis() - start);
+    }
+
+    private boolean recover(Resource resource, long start, Collection<PendingTransactionRecord> expiredCommitting,
+                            Collection<PendingTransactionRecord> foreignInDoubt) {
+        long startNanos = System.nanoTime();
+        String outcome = "failed";
+        try {
+            resource.initializer().init();
+            RecoverableResource recoverable = Configuration.getResource(resource.name());
+            if (recoverable == null) {
+                logger.warn("Resource {} is not registered with Atomikos", resource.name());
+                return false;
+            }
+            boolean complete = recoverable.recover(start, expiredCommitting, foreignInDoubt);
+            outcome = complete ? "recovered" : "incomplete";
+            return complete;
+        } catch (Exception e) {
+            logger.warn("Recovery of {} failed: {}", resource.name(), e.toString());
+            return false;
+        } finally {
+            long nanos = System.nanoTime() - startNanos;
+            pipelineMetrics.recordRecovery(resource.name(), outcome, nanos);
+            logger.info("Recovery of {} {} in {} ms", resource.name(), outcome, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
+    private static CustomizableThreadFactory daemonThreads(String prefix) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.atomikos.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens the connections of several pools in parallel before the listener containers start, so
+ * the first messages after a cold start do not wait for connections to be established one at a
+ * time. Each connection is opened on its own thread and all of them are held until every pool
+ * is warm, so a pool cannot hand out the same connection twice. A pool that fails to warm up is
+ * logged and left to grow on demand.
+ */
+public class PoolWarmup implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(PoolWarmup.class);
+
+    /**
+     * Lifecycle phase: after the startup recovery, which initializes the same resources, and
+     * before the listener containers, which start in the default phase.
+     */
+    public static final int PHASE = ParallelRecovery.PHASE + 100;
+
+    private final List<Pool> pools;
+    private final long timeoutMillis;
+    private volatile boolean running;
+
+    /**
+     * Opens one connection of a pool; closing it returns the connection to the pool.
+     */
+    @FunctionalInterface
+    public interface ConnectionOpener {
+        AutoCloseable open() throws Exception;
+    }
+
+    /**
+     * @param connections number of connections to open
+     */
+    public record Pool(String name, int connections, ConnectionOpener opener) {
+    }
+
+    public PoolWarmup(List<Pool> pools, long timeoutMillis) {
+        this.pools = pools;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void start() {
+        int threads = pools.stream().mapToInt(Pool::connections).sum();
+        if (threads > 0) {
+            warmUp(threads);
+        }
+        running = true;
+    }
+
+    private void warmUp(int threads) {
+        long start = System.nanoTime();
+        CountDownLatch opened = new CountDownLatch(threads);
+        CountDownLatch release = new CountDownLatch(1);
+        List<AtomicInteger> warmed = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("pool-warmup-"));
+        try {
+            for (Pool pool : pools) {
+                AtomicInteger poolWarmed = new AtomicInteger();
+                warmed.add(poolWarmed);
+                for (int i = 0; i < pool.connections(); i++) {
+                    executor.execute(() -> hold(pool, poolWarmed, opened, release));
+                }
+            }
+            if (!opened.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.warn("Pool warm-up did not finish within {} ms", timeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        for (int i = 0; i < pools.size(); i++) {
+            logger.info("Opened {} of {} connections of {}", warmed.get(i).get(), pools.get(i).connections(),
+                        pools.get(i).name());
+        }
+        logger.info("Warmed up {} connection pools in {} ms", pools.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // Holds the connection until all are open, then returns it to the pool
+    private void hold(Pool pool, AtomicInteger warmed, CountDownLatch opened, CountDownLatch release) {
+        boolean counted = false;
+        try (AutoCloseable connection = pool.opener().open()) {
+            warmed.incrementAndGet();
+            opened.countDown();
+            counted = true;
+            release.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Warm-up connection of {} failed: {}", pool.name(), e.toString());
+        } finally {
+            if (!counted) {
+                opened.countDown();
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
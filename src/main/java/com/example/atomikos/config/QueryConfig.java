@@ -0,0 +1,56 @@
+package com.example.atomikos.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Read-only, non-XA connection pool for the query API. Keeping queries off the ingest pools
+ * means a slow or large query cannot take connections from the listener, and the queries run
+ * without enlisting in a JTA transaction.
+ */
+@Configuration
+public class QueryConfig {
+
+    @Value("${spring.datasource.url}")
+    private String dbUrl;
+
+    @Value("${spring.datasource.username}")
+    private String dbUsername;
+
+    @Value("${spring.datasource.password}")
+    private String dbPassword;
+
+    @Value("${app.query.pool-size:2}")
+    private int poolSize;
+
+    @Value("${app.query.fetch-size:100}")
+    private int fetchSize;
+
+    @Value("${app.query.timeout-seconds:30}")
+    private int queryTimeoutSeconds;
+
+    // Not an autowire candidate, so the processing modes' DataSource stays the only one injected by type
+    @Bean(destroyMethod = "close", autowireCandidate = false)
+    public HikariDataSource queryDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("queryDataSource");
+        dataSource.setJdbcUrl(dbUrl);
+        dataSource.setUsername(dbUsername);
+        dataSource.setPassword(dbPassword);
+        dataSource.setReadOnly(true);
+        dataSource.setMinimumIdle(0);
+        dataSource.setMaximumPoolSize(poolSize);
+        return dataSource;
+    }
+
+    @Bean
+    public JdbcTemplate queryJdbcTemplate() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(queryDataSource());
+        jdbcTemplate.setFetchSize(fetchSize);
+        jdbcTemplate.setQueryTimeout(queryTimeoutSeconds);
+        return jdbcTemplate;
+    }
+}
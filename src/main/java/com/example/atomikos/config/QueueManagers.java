@@ -0,0 +1,71 @@
+package com.example.atomikos.config;
+
+import com.atomikos.jms.AtomikosConnectionFactoryBean;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.jms.ConnectionFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The queue managers the application consumes from, each with its own Atomikos XA resource and
+ * connection pool. The first is the primary queue manager of {@code ibm.mq.queueManager}; the
+ * others come from {@code ibm.mq.additional-queue-managers} and are closed with this bean.
+ */
+public class QueueManagers implements DisposableBean {
+
+    /**
+     * @param connectionFactory pooled XA connection factory, registered with Atomikos as {@code resourceName}
+     * @param leaseTimed        the same factory with its connection leases timed, for the JMS clients
+     * @param plain             the underlying XA connection factory used as a plain one, for browsing
+     *                          outside any transaction, which a session of the pool does not allow
+     */
+    public record Member(String queueManager, String resourceName, AtomikosConnectionFactoryBean connectionFactory,
+                         ConnectionFactory leaseTimed, ConnectionFactory plain) {
+    }
+
+    private final List<Member> members;
+    private final RoutingConnectionFactory routingConnectionFactory;
+
+    public QueueManagers(List<Member> members) {
+        this.members = List.copyOf(members);
+        if (this.members.size() > 1) {
+            Map<String, ConnectionFactory> connectionFactories = new LinkedHashMap<>();
+            for (Member member : this.members) {
+                if (connectionFactories.put(member.queueManager(), member.leaseTimed()) != null) {
+                    throw new IllegalArgumentException("Queue manager " + member.queueManager() + " is listed twice");
+                }
+            }
+            this.routingConnectionFactory = new RoutingConnectionFactory(connectionFactories);
+        } else {
+            this.routingConnectionFactory = null;
+        }
+    }
+
+    public List<Member> members() {
+        return members;
+    }
+
+    /**
+     * Returns the routing factory over all queue managers, or {@code null} with a single queue manager.
+     */
+    public RoutingConnectionFactory routing() {
+        return routingConnectionFactory;
+    }
+
+    /**
+     * Returns the connection factory for JMS clients that are not bound to a queue manager.
+     */
+    public ConnectionFactory connectionFactory() {
+        return routingConnectionFactory != null ? routingConnectionFactory : members.get(0).leaseTimed();
+    }
+
+    @Override
+    public void destroy() {
+        // The primary factory is a bean of its own and closed by the container
+        for (Member member : members.subList(1, members.size())) {
+            member.connectionFactory().close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.atomikos.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Single-connection, non-XA pool for the retention job, enabled with
+ * {@code app.retention.enabled=true}. Purges never take a connection from the ingest pools and
+ * run in short local transactions outside the transaction manager.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.retention.enabled", havingValue = "true")
+public class RetentionConfig {
+
+    @Value("${spring.datasource.url}")
+    private String dbUrl;
+
+    @Value("${spring.datasource.username}")
+    private String dbUsername;
+
+    @Value("${spring.datasource.password}")
+    private String dbPassword;
+
+    @Value("${app.retention.statement-timeout-seconds:60}")
+    private int statementTimeoutSeconds;
+
+    // Not an autowire candidate, so the processing modes' DataSource stays the only one injected by type
+    @Bean(destroyMethod = "close", autowireCandidate = false)
+    public HikariDataSource retentionDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("retentionDataSource");
+        dataSource.setJdbcUrl(dbUrl);
+        dataSource.setUsername(dbUsername);
+        dataSource.setPassword(dbPassword);
+        dataSource.setMinimumIdle(0);
+        dataSource.setMaximumPoolSize(1);
+        return dataSource;
+    }
+
+    @Bean
+    public JdbcTemplate retentionJdbcTemplate() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(retentionDataSource());
+        jdbcTemplate.setQueryTimeout(statementTimeoutSeconds);
+        return jdbcTemplate;
+    }
+}
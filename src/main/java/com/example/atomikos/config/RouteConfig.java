@@ -0,0 +1,84 @@
+package com.example.atomikos.config;
+
+import com.example.atomikos.service.Route;
+import com.example.atomikos.service.RouteTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the route table from {@code app.routes}, a comma separated list of route names, and
+ * the {@code app.route.<name>.*} properties of each route. Without routes the application
+ * serves the single route {@code default} from {@code DEV.QUEUE.1} to {@code DEV.QUEUE.2}
+ * with the {@code app.listener.*} settings.
+ */
+@Configuration
+public class RouteConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(RouteConfig.class);
+
+    static final String DEFAULT_INPUT_QUEUE = "DEV.QUEUE.1";
+    static final String DEFAULT_OUTPUT_QUEUE = "DEV.QUEUE.2";
+    static final String DEFAULT_STAGES = "extract,persist,publish";
+
+    @Bean
+    public RouteTable routeTable(Environment environment,
+                                 @Value("${app.routes:}") String routeNames,
+                                 @Value("${app.listener.concurrency.min:1}") int listenerConcurrency,
+                                 @Value("${app.listener.batch.size:1}") int batchSize) {
+        List<Route> routes = new ArrayList<>();
+        for (String name : routeNames.split(",")) {
+            if (!name.isBlank()) {
+                routes.add(route(environment, name.trim(), listenerConcurrency, batchSize));
+            }
+        }
+        boolean configured = !routes.isEmpty();
+        if (!configured) {
+            routes.add(new Route("default", DEFAULT_INPUT_QUEUE, null, List.of(DEFAULT_OUTPUT_QUEUE),
+                                 Route.parseStages(DEFAULT_STAGES), listenerConcurrency, listenerConcurrency, 0,
+                                 batchSize, 0, Set.of()));
+        }
+        RouteTable routeTable = new RouteTable(routes);
+        if (configured) {
+            for (Route route : routes) {
+                logger.info("Route {}: {}{} -> {} {} with {}-{} consumers at priority {}", route.name(),
+                            route.inputQueue(), route.selector() != null ? " [" + route.selector() + "]" : "",
+                            route.stages(), route.outputQueues(), route.concurrency(),
+                            routeTable.maxConcurrency(route), route.priority());
+            }
+        }
+        return routeTable;
+    }
+
+    private static Route route(Environment environment, String name, int listenerConcurrency, int batchSize) {
+        String prefix = "app.route." + name + ".";
+        int concurrency = environment.getProperty(prefix + "concurrency", Integer.class, listenerConcurrency);
+        return new Route(name,
+                         environment.getProperty(prefix + "input"),
+                         environment.getProperty(prefix + "selector"),
+                         list(environment.getProperty(prefix + "outputs", "")),
+                         Route.parseStages(environment.getProperty(prefix + "stages", DEFAULT_STAGES)),
+                         concurrency,
+                         environment.getProperty(prefix + "max-concurrency", Integer.class, concurrency),
+                         environment.getProperty(prefix + "priority", Integer.class, 0),
+                         environment.getProperty(prefix + "batch-size", Integer.class, batchSize),
+                         environment.getProperty(prefix + "transaction-timeout-seconds", Integer.class, 0),
+                         Set.copyOf(list(environment.getProperty(prefix + "allowed-statuses", ""))));
+    }
+
+    private static List<String> list(String values) {
+        return Arrays.stream(values.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .collect(Collectors.toList());
+    }
+}
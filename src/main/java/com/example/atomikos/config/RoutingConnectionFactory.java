@@ -0,0 +1,128 @@
+package com.example.atomikos.config;
+
+import org.springframework.core.task.TaskDecorator;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads connections over the connection factories of several queue managers. A listener
+ * thread is bound to the queue manager it consumes from, so the outputs of a message are
+ * published on the queue manager that delivered it and its transaction enlists a single MQ
+ * resource. Connections requested by unbound threads, e.g. by a replay or the striped dispatcher, go
+ * round-robin to the queue managers and fail over to the next one while a queue manager is down.
+ * <p>
+ * Spring binds the transactional JMS session to this factory, so all sends and receives of one
+ * transaction use the queue manager chosen by its first connection.
+ */
+public class RoutingConnectionFactory implements ConnectionFactory {
+
+    private static final ThreadLocal<ConnectionFactory> BOUND = new ThreadLocal<>();
+
+    private final Map<String, ConnectionFactory> connectionFactories;
+    private final List<ConnectionFactory> members;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param connectionFactories connection factory per queue manager name
+     */
+    public RoutingConnectionFactory(Map<String, ConnectionFactory> connectionFactories) {
+        if (connectionFactories.isEmpty()) {
+            throw new IllegalArgumentException("No connection factories");
+        }
+        this.connectionFactories = new LinkedHashMap<>(connectionFactories);
+        this.members = List.copyOf(connectionFactories.values());
+    }
+
+    /**
+     * Returns a decorator that binds the threads running its tasks to the named queue manager.
+     */
+    public TaskDecorator bindTo(String queueManager) {
+        ConnectionFactory connectionFactory = connectionFactories.get(queueManager);
+        if (connectionFactory == null) {
+            throw new IllegalArgumentException("Unknown queue manager " + queueManager);
+        }
+        return task -> () -> {
+            ConnectionFactory previous = BOUND.get();
+            BOUND.set(connectionFactory);
+            try {
+                task.run();
+            } finally {
+                if (previous != null) {
+                    BOUND.set(previous);
+                } else {
+                    BOUND.remove();
+                }
+            }
+        };
+    }
+
+    @Override
+    public Connection createConnection() throws JMSException {
+        return connect(ConnectionFactory::createConnection);
+    }
+
+    @Override
+    public Connection createConnection(String userName, String password) throws JMSException {
+        return connect(connectionFactory -> connectionFactory.createConnection(userName, password));
+    }
+
+    // JMS 2.0 contexts are not used by the application, so they are routed without failover
+    @Override
+    public JMSContext createContext() {
+        return target().createContext();
+    }
+
+    @Override
+    public JMSContext createContext(String userName, String password) {
+        return target().createContext(userName, password);
+    }
+
+    @Override
+    public JMSContext createContext(String userName, String password, int sessionMode) {
+        return target().createContext(userName, password, sessionMode);
+    }
+
+    @Override
+    public JMSContext createContext(int sessionMode) {
+        return target().createContext(sessionMode);
+    }
+
+    @FunctionalInterface
+    private interface Connector {
+        Connection connect(ConnectionFactory connectionFactory) throws JMSException;
+    }
+
+    private Connection connect(Connector connector) throws JMSException {
+        ConnectionFactory bound = BOUND.get();
+        if (bound != null) {
+            // The listener container reconnects to its own queue manager
+            return connector.connect(bound);
+        }
+        int start = Math.floorMod(next.getAndIncrement(), members.size());
+        JMSException failure = null;
+        for (int i = 0; i < members.size(); i++) {
+            try {
+                return connector.connect(members.get((start + i) % members.size()));
+            } catch (JMSException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        throw failure;
+    }
+
+    private ConnectionFactory target() {
+        ConnectionFactory bound = BOUND.get();
+        return bound != null ? bound : members.get(Math.floorMod(next.getAndIncrement(), members.size()));
+    }
+}
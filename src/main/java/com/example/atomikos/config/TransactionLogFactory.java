@@ -0,0 +1,165 @@
+package com.example.atomikos.config;
+
+import com.atomikos.icatch.SysException;
+import com.atomikos.icatch.config.Configuration;
+import com.atomikos.icatch.provider.ConfigProperties;
+import com.atomikos.recovery.LogException;
+import com.atomikos.recovery.LogReadException;
+import com.atomikos.recovery.LogWriteException;
+import com.atomikos.recovery.OltpLog;
+import com.atomikos.recovery.OltpLogFactory;
+import com.atomikos.recovery.PendingTransactionRecord;
+import com.atomikos.recovery.RecoveryLog;
+import com.atomikos.recovery.fs.InMemoryRepository;
+import com.atomikos.recovery.fs.OltpLogImp;
+import com.atomikos.recovery.fs.RecoveryLogImp;
+import com.atomikos.recovery.fs.Repository;
+import com.example.atomikos.metrics.PipelineMetrics;
+
+import java.util.Collection;
+
+/**
+ * Creates the Atomikos transaction log from the store named by {@code app.transaction.log.store}
+ * in the Atomikos properties. Atomikos finds this factory through
+ * {@code META-INF/services/com.atomikos.recovery.OltpLogFactory}, but the factory only provides a
+ * log for the stores of this application:
+ * <ul>
+ *   <li>{@code file} or no store: none, so Atomikos assembles its own file log, forcing every
+ *       record on its own</li>
+ *   <li>{@code group-commit}: the same file, forcing the records of concurrent transactions together
+ *       (see {@link GroupCommitRepository})</li>
+ *   <li>{@code memory}: no log file, so in-doubt transactions cannot be recovered after a crash;
+ *       for benchmarks only</li>
+ * </ul>
+ * The logs of this factory time their writes, so the cost of forcing the log shows up in the metrics.
+ */
+public class TransactionLogFactory implements OltpLogFactory {
+
+    public static final String STORE_PROPERTY = "app.transaction.log.store";
+    public static final String FILE = "file";
+    public static final String GROUP_COMMIT = "group-commit";
+    public static final String MEMORY = "memory";
+
+    // Set before Atomikos starts; the factory is instantiated by Atomikos, not by Spring
+    static volatile PipelineMetrics pipelineMetrics;
+
+    @Override
+    public OltpLog createOltpLog() {
+        ConfigProperties properties = Configuration.getConfigProperties();
+        String store = properties.getCompletedProperties().getProperty(STORE_PROPERTY, FILE);
+        if (FILE.equals(store)) {
+            // Atomikos falls back to its default log when the factory provides none
+            return null;
+        }
+        PipelineMetrics metrics = pipelineMetrics != null ? pipelineMetrics : new PipelineMetrics();
+        try {
+            return new TimedLog(createRepository(store, properties, metrics), store, metrics);
+        } catch (LogException e) {
+            throw new SysException("Error in init: " + e.getMessage(), e);
+        }
+    }
+
+    private static Repository createRepository(String store, ConfigProperties properties, PipelineMetrics metrics)
+            throws LogException {
+        switch (store) {
+            case GROUP_COMMIT -> {
+                GroupCommitRepository repository = new GroupCommitRepository(
+                        properties.getLogBaseDir(), properties.getLogBaseName(), properties.getCheckpointInterval(),
+                        properties.getForgetOrphanedLogEntriesDelay(), metrics);
+                repository.init();
+                return repository;
+            }
+            case MEMORY -> {
+                InMemoryRepository repository = new InMemoryRepository();
+                repository.init();
+                return repository;
+            }
+            default -> throw new IllegalArgumentException(
+                    STORE_PROPERTY + " must be file, group-commit or memory: " + store);
+        }
+    }
+
+    /**
+     * The Atomikos log over a repository, timing the write of every record.
+     */
+    private static final class TimedLog implements OltpLog, RecoveryLog {
+
+        private final OltpLogImp oltpLog = new OltpLogImp();
+        private final RecoveryLogImp recoveryLog = new RecoveryLogImp();
+        private final String store;
+        private final PipelineMetrics metrics;
+
+        TimedLog(Repository repository, String store, PipelineMetrics metrics) {
+            oltpLog.setRepository(repository);
+            recoveryLog.setRepository(repository);
+            this.store = store;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void write(PendingTransactionRecord record) throws LogWriteException {
+            long start = System.nanoTime();
+            try {
+                oltpLog.write(record);
+            } finally {
+                metrics.recordLogWrite(store, record.state.name(), System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void close() {
+            oltpLog.close();
+        }
+
+        @Override
+        public boolean isActive() {
+            return recoveryLog.isActive();
+        }
+
+        @Override
+        public void closing() {
+            recoveryLog.closing();
+        }
+
+        @Override
+        public Collection<PendingTransactionRecord> getIndoubtTransactionRecords() throws LogReadException {
+            return recoveryLog.getIndoubtTransactionRecords();
+        }
+
+        @Override
+        public Collection<PendingTransactionRecord> getExpiredPendingCommittingTransactionRecordsAt(long time)
+                throws LogReadException {
+            return recoveryLog.getExpiredPendingCommittingTransactionRecordsAt(time);
+        }
+
+        @Override
+        public void forgetTransactionRecords(Collection<PendingTransactionRecord> records) {
+            recoveryLog.forgetTransactionRecords(records);
+        }
+
+        @Override
+        public void recordAsCommitting(String coordinatorId) throws LogException {
+            recoveryLog.recordAsCommitting(coordinatorId);
+        }
+
+        @Override
+        public void forget(String coordinatorId) {
+            recoveryLog.forget(coordinatorId);
+        }
+
+        @Override
+        public PendingTransactionRecord get(String coordinatorId) throws LogReadException {
+            return recoveryLog.get(coordinatorId);
+        }
+
+        @Override
+        public Collection<PendingTransactionRecord> getPendingTransactionRecords() throws LogReadException {
+            return recoveryLog.getPendingTransactionRecords();
+        }
+
+        @Override
+        public void closed() {
+            recoveryLog.closed();
+        }
+    }
+}
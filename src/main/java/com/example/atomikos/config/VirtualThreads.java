@@ -0,0 +1,34 @@
+package com.example.atomikos.config;
+
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual-thread task executors for the listener containers. The application is compiled for
+ * Java 17, so the Java 21 {@code Thread.ofVirtual()} API is looked up reflectively.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns an executor that starts every task on a new virtual thread, or {@code null} when
+     * the running JDK does not provide virtual threads.
+     */
+    static SimpleAsyncTaskExecutor taskExecutor(String threadNamePrefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method name = builderType.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, threadNamePrefix, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return new SimpleAsyncTaskExecutor(threadFactory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Older JDK, or virtual threads still a preview feature that is not enabled
+            return null;
+        }
+    }
+}
@@ -1,23 +1,63 @@
 package com.example.atomikos.entity;
 
+import org.hibernate.engine.jdbc.BlobProxy;
+import org.hibernate.engine.jdbc.ClobProxy;
+
 import javax.persistence.*;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.zip.InflaterInputStream;
 
 @Entity
-@Table(name = "MESSAGE_DATA")
+@Table(name = "MESSAGE_DATA",
+       indexes = {
+               @Index(name = "UX_MESSAGE_DATA_MESSAGE_ID", columnList = "MESSAGE_ID", unique = true),
+               // Keyset pagination of the query API, by status and by creation time
+               @Index(name = "IX_MESSAGE_DATA_STATUS_CREATED", columnList = "STATUS, CREATED_AT, ID"),
+               @Index(name = "IX_MESSAGE_DATA_CREATED", columnList = "CREATED_AT, ID")
+       })
 public class MessageData {
 
+    /**
+     * {@code CONTENT_ENCODING} of content deflated as UTF-8 into {@code MESSAGE_CONTENT_COMPRESSED}.
+     */
+    public static final String DEFLATE = "deflate";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "messageDataSeq")
+    @SequenceGenerator(name = "messageDataSeq", sequenceName = "MESSAGE_DATA_SEQ", allocationSize = 50)
     @Column(name = "ID")
     private Long id;
 
     @Column(name = "MESSAGE_ID", nullable = false, length = 255)
     private String messageId;
 
-    @Column(name = "MESSAGE_CONTENT", nullable = false, length = 4000)
+    // Inline content, null when the content is stored in MESSAGE_CONTENT_LOB or compressed
+    @Column(name = "MESSAGE_CONTENT", length = 4000)
     private String messageContent;
 
+    // Only the LOB locator is read with the entity, the content is streamed on request
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "MESSAGE_CONTENT_LOB")
+    private Clob largeContent;
+
+    // Null for plain content, otherwise the encoding of MESSAGE_CONTENT_COMPRESSED
+    @Column(name = "CONTENT_ENCODING", length = 16)
+    private String contentEncoding;
+
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "MESSAGE_CONTENT_COMPRESSED")
+    private Blob compressedContent;
+
     @Column(name = "CREATED_AT", nullable = false)
     private LocalDateTime createdAt;
 
@@ -59,6 +99,69 @@ public class MessageData {
         this.messageContent = messageContent;
     }
 
+    public Clob getLargeContent() {
+        return largeContent;
+    }
+
+    public void setLargeContent(Clob largeContent) {
+        this.largeContent = largeContent;
+    }
+
+    /**
+     * Stores the content in the LOB column. The reader is consumed when the entity is inserted.
+     */
+    public void setLargeContent(Reader content, long length) {
+        this.messageContent = null;
+        this.largeContent = ClobProxy.generateProxy(content, length);
+    }
+
+    public boolean hasLargeContent() {
+        return largeContent != null;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public Blob getCompressedContent() {
+        return compressedContent;
+    }
+
+    /**
+     * Stores the content compressed, replacing the plain content.
+     */
+    public void setCompressedContent(String contentEncoding, byte[] compressed) {
+        this.messageContent = null;
+        this.largeContent = null;
+        this.contentEncoding = contentEncoding;
+        this.compressedContent = BlobProxy.generateProxy(compressed);
+    }
+
+    public boolean isCompressed() {
+        return contentEncoding != null;
+    }
+
+    /**
+     * Opens the content, inline, from the LOB or decompressed as it is read. Reading a LOB
+     * requires the transaction that loaded the entity to be active.
+     */
+    public Reader openContent() throws SQLException {
+        if (contentEncoding != null) {
+            return decompress(contentEncoding, compressedContent.getBinaryStream());
+        }
+        return largeContent != null ? largeContent.getCharacterStream() : new StringReader(messageContent);
+    }
+
+    /**
+     * Returns a reader that decompresses content stored with the given encoding as it is read.
+     */
+    public static Reader decompress(String contentEncoding, InputStream compressed) {
+        if (!DEFLATE.equals(contentEncoding)) {
+            throw new IllegalArgumentException("Unknown content encoding " + contentEncoding);
+        }
+        return new InputStreamReader(new InflaterInputStream(compressed), StandardCharsets.UTF_8);
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -81,6 +184,8 @@ public class MessageData {
                 "id=" + id +
                 ", messageId='" + messageId + '\'' +
                 ", messageContent='" + messageContent + '\'' +
+                ", largeContent=" + hasLargeContent() +
+                ", contentEncoding=" + contentEncoding +
                 ", createdAt=" + createdAt +
                 ", status='" + status + '\'' +
                 '}';
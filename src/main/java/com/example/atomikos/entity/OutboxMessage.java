@@ -0,0 +1,75 @@
+package com.example.atomikos.entity;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "OUTBOX_MESSAGE")
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outboxMessageSeq")
+    @SequenceGenerator(name = "outboxMessageSeq", sequenceName = "OUTBOX_MESSAGE_SEQ", allocationSize = 50)
+    @Column(name = "ID")
+    private Long id;
+
+    @Column(name = "DESTINATION", nullable = false, length = 255)
+    private String destination;
+
+    @Column(name = "PAYLOAD", nullable = false, length = 4000)
+    private String payload;
+
+    @Column(name = "CREATED_AT", nullable = false)
+    private LocalDateTime createdAt;
+
+    public OutboxMessage() {
+    }
+
+    public OutboxMessage(String destination, String payload) {
+        this.destination = destination;
+        this.payload = payload;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxMessage{" +
+                "id=" + id +
+                ", destination='" + destination + '\'' +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
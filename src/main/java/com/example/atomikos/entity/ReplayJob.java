@@ -0,0 +1,152 @@
+package com.example.atomikos.entity;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A replay of stored messages to an output queue. {@code afterCreatedAt} and {@code afterId}
+ * are the checkpoint: the key of the last message of the last page that was published
+ * completely, from which a resumed replay continues.
+ */
+@Entity
+@Table(name = "REPLAY_JOB")
+public class ReplayJob {
+
+    public enum State { RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    @Id
+    @Column(name = "JOB_ID", length = 36)
+    private String jobId;
+
+    @Column(name = "STATUS_FILTER", length = 50)
+    private String statusFilter;
+
+    @Column(name = "FROM_CREATED_AT")
+    private LocalDateTime fromCreatedAt;
+
+    @Column(name = "TO_CREATED_AT")
+    private LocalDateTime toCreatedAt;
+
+    @Column(name = "TARGET_QUEUE", nullable = false, length = 255)
+    private String targetQueue;
+
+    @Column(name = "AFTER_CREATED_AT")
+    private LocalDateTime afterCreatedAt;
+
+    @Column(name = "AFTER_ID")
+    private Long afterId;
+
+    @Column(name = "PUBLISHED", nullable = false)
+    private long published;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "STATE", nullable = false, length = 20)
+    private State state;
+
+    @Column(name = "ERROR", length = 1000)
+    private String error;
+
+    @Column(name = "CREATED_AT", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "UPDATED_AT", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public ReplayJob() {
+    }
+
+    public ReplayJob(String jobId, String statusFilter, LocalDateTime fromCreatedAt, LocalDateTime toCreatedAt,
+                     String targetQueue) {
+        this.jobId = jobId;
+        this.statusFilter = statusFilter;
+        this.fromCreatedAt = fromCreatedAt;
+        this.toCreatedAt = toCreatedAt;
+        this.targetQueue = targetQueue;
+        this.state = State.RUNNING;
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = createdAt;
+    }
+
+    // Getters and Setters
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getStatusFilter() {
+        return statusFilter;
+    }
+
+    public LocalDateTime getFromCreatedAt() {
+        return fromCreatedAt;
+    }
+
+    public LocalDateTime getToCreatedAt() {
+        return toCreatedAt;
+    }
+
+    public String getTargetQueue() {
+        return targetQueue;
+    }
+
+    public LocalDateTime getAfterCreatedAt() {
+        return afterCreatedAt;
+    }
+
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Records that all messages up to and including the given key have been published.
+     */
+    public void checkpoint(LocalDateTime afterCreatedAt, long afterId, long publishedMessages) {
+        this.afterCreatedAt = afterCreatedAt;
+        this.afterId = afterId;
+        this.published += publishedMessages;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayJob{" +
+                "jobId='" + jobId + '\'' +
+                ", statusFilter='" + statusFilter + '\'' +
+                ", fromCreatedAt=" + fromCreatedAt +
+                ", toCreatedAt=" + toCreatedAt +
+                ", targetQueue='" + targetQueue + '\'' +
+                ", afterCreatedAt=" + afterCreatedAt +
+                ", afterId=" + afterId +
+                ", published=" + published +
+                ", state=" + state +
+                '}';
+    }
+}
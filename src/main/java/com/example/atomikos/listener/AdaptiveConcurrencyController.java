@@ -0,0 +1,175 @@
+package com.example.atomikos.listener;
+
+import com.example.atomikos.config.QueueManagers;
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.service.Route;
+import com.example.atomikos.service.RouteTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.jms.ConnectionFactory;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Scales the consumers of the primary route between {@code app.listener.concurrency.min} and
+ * {@code app.listener.concurrency.max} with an {@link AimdConcurrencyPolicy}. Each interval it
+ * samples the queue backlog with a browser and the mean transaction and connection lease times
+ * from {@link PipelineMetrics}, and resizes the connection pools together with the consumers.
+ * With several queue managers the backlog is the sum over all of them and every listener
+ * container gets the same number of consumers. Browsing needs no transaction, so in XA mode it
+ * uses plain connections of the XA connection factories. The other routes keep their configured
+ * consumers, which the pools always include.
+ */
+@Component
+@ConditionalOnProperty(name = "app.listener.concurrency.adaptive", havingValue = "true")
+public class AdaptiveConcurrencyController implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyController.class);
+
+    private final JmsListenerEndpointRegistry endpointRegistry;
+    // One per queue manager, each keeping its browse connection open between probes
+    private final List<CachingConnectionFactory> browseConnectionFactories = new ArrayList<>();
+    private final List<JmsTemplate> browseTemplates = new ArrayList<>();
+    private final PipelineMetrics pipelineMetrics;
+    private final PoolResizer poolResizer;
+    private final Route route;
+    private final int secondaryConsumers;
+    private final AimdConcurrencyPolicy policy;
+    private final int backlogProbeLimit;
+
+    private PipelineMetrics.Totals lastTotals;
+    private int pooledConsumers;
+
+    public AdaptiveConcurrencyController(JmsListenerEndpointRegistry endpointRegistry,
+                                         JmsTemplate jmsTemplate,
+                                         ObjectProvider<QueueManagers> queueManagers,
+                                         PipelineMetrics pipelineMetrics,
+                                         PoolResizer poolResizer,
+                                         RouteTable routeTable,
+                                         @Value("${app.listener.concurrency.min:1}") int minConsumers,
+                                         @Value("${app.listener.concurrency.max:10}") int maxConsumers,
+                                         @Value("${app.listener.concurrency.backlog-per-consumer:20}") int backlogPerConsumer,
+                                         @Value("${app.listener.concurrency.max-transaction-ms:500}") double maxTransactionMillis,
+                                         @Value("${app.listener.concurrency.max-lease-ms:50}") double maxLeaseMillis) {
+        this.endpointRegistry = endpointRegistry;
+        QueueManagers members = queueManagers.getIfAvailable();
+        if (members != null) {
+            for (QueueManagers.Member member : members.members()) {
+                addBrowseConnections(member.plain());
+            }
+        } else {
+            // Outside XA mode the template's connection factory is not XA in the first place
+            addBrowseConnections(jmsTemplate.getConnectionFactory());
+        }
+        this.pipelineMetrics = pipelineMetrics;
+        this.poolResizer = poolResizer;
+        this.route = routeTable.primary();
+        this.secondaryConsumers = routeTable.secondaryConsumers();
+        this.policy = new AimdConcurrencyPolicy(minConsumers, maxConsumers, backlogPerConsumer,
+                                                maxTransactionMillis, maxLeaseMillis);
+        // Browsing beyond the point where every consumer would be added tells us nothing more
+        this.backlogProbeLimit = (maxConsumers + 1) * backlogPerConsumer;
+        this.lastTotals = pipelineMetrics.totals();
+    }
+
+    private void addBrowseConnections(ConnectionFactory connectionFactory) {
+        CachingConnectionFactory browseConnectionFactory = new CachingConnectionFactory(connectionFactory);
+        browseConnectionFactories.add(browseConnectionFactory);
+        browseTemplates.add(new JmsTemplate(browseConnectionFactory));
+    }
+
+    @Scheduled(fixedDelayString = "${app.listener.concurrency.adjust-interval-ms:5000}")
+    public void adjust() {
+        List<DefaultMessageListenerContainer> containers = listenerContainers();
+        if (containers.isEmpty()) {
+            return;
+        }
+
+        PipelineMetrics.Totals totals = pipelineMetrics.totals();
+        PipelineMetrics.Totals interval = totals.since(lastTotals);
+        lastTotals = totals;
+        int backlog = backlog();
+
+        int consumers = containers.get(0).getConcurrentConsumers();
+        int next = policy.next(consumers, backlog, interval.meanTransactionMillis(), interval.meanLeaseMillis());
+        if (next != consumers) {
+            logger.info("Changing listener consumers from {} to {} (backlog {}, transaction {} ms, lease {} ms)",
+                        consumers, next, backlog, Math.round(interval.meanTransactionMillis()),
+                        Math.round(interval.meanLeaseMillis()));
+        }
+
+        // Grow the pools before the consumers that need them and shrink them afterwards
+        if (next > pooledConsumers) {
+            resizePools(next);
+        }
+        for (DefaultMessageListenerContainer container : containers) {
+            container.setConcurrentConsumers(next);
+            container.setMaxConcurrentConsumers(next);
+        }
+        if (next < pooledConsumers) {
+            resizePools(next);
+        }
+    }
+
+    // The containers of the primary route on every queue manager
+    private List<DefaultMessageListenerContainer> listenerContainers() {
+        String listenerId = MessageListener.listenerId(route, null);
+        List<DefaultMessageListenerContainer> containers = new ArrayList<>();
+        for (String id : endpointRegistry.getListenerContainerIds()) {
+            if ((id.equals(listenerId) || id.startsWith(listenerId + "@"))
+                    && endpointRegistry.getListenerContainer(id) instanceof DefaultMessageListenerContainer container
+                    && container.isRunning()) {
+                containers.add(container);
+            }
+        }
+        return containers;
+    }
+
+    private void resizePools(int consumers) {
+        poolResizer.resize(consumers + secondaryConsumers);
+        pooledConsumers = consumers;
+    }
+
+    /**
+     * Counts the messages waiting on the input queue of every queue manager, up to the probe limit.
+     */
+    int backlog() {
+        int backlog = 0;
+        for (JmsTemplate browseTemplate : browseTemplates) {
+            int limit = backlogProbeLimit - backlog;
+            if (limit <= 0) {
+                break;
+            }
+            Integer count = browseTemplate.browseSelected(route.inputQueue(), route.selector(), (session, browser) -> {
+                int browsed = 0;
+                Enumeration<?> messages = browser.getEnumeration();
+                while (browsed < limit && messages.hasMoreElements()) {
+                    messages.nextElement();
+                    browsed++;
+                }
+                return browsed;
+            });
+            backlog += count != null ? count : 0;
+        }
+        return backlog;
+    }
+
+    @Override
+    public void destroy() {
+        for (CachingConnectionFactory browseConnectionFactory : browseConnectionFactories) {
+            browseConnectionFactory.destroy();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.atomikos.listener;
+
+/**
+ * Additive-increase, multiplicative-decrease policy for the number of listener consumers.
+ * Consumers are added one at a time while the backlog grows faster than they drain it and
+ * halved as soon as the downstream resources show congestion, i.e. transactions get slow or
+ * connections have to be waited for. An empty queue releases one consumer per step, so
+ * sessions are returned gradually after a burst.
+ */
+class AimdConcurrencyPolicy {
+
+    private final int minConsumers;
+    private final int maxConsumers;
+    private final int backlogPerConsumer;
+    private final double maxTransactionMillis;
+    private final double maxLeaseMillis;
+
+    AimdConcurrencyPolicy(int minConsumers, int maxConsumers, int backlogPerConsumer,
+                          double maxTransactionMillis, double maxLeaseMillis) {
+        if (minConsumers < 1 || maxConsumers < minConsumers) {
+            throw new IllegalArgumentException(
+                    "Invalid consumer range " + minConsumers + "-" + maxConsumers);
+        }
+        this.minConsumers = minConsumers;
+        this.maxConsumers = maxConsumers;
+        this.backlogPerConsumer = backlogPerConsumer;
+        this.maxTransactionMillis = maxTransactionMillis;
+        this.maxLeaseMillis = maxLeaseMillis;
+    }
+
+    int minConsumers() {
+        return minConsumers;
+    }
+
+    int maxConsumers() {
+        return maxConsumers;
+    }
+
+    /**
+     * Returns the consumer count for the next interval.
+     *
+     * @param consumers         current consumer count
+     * @param backlog           messages waiting on the input queue
+     * @param transactionMillis mean transaction time during the last interval
+     * @param leaseMillis       mean connection lease time during the last interval
+     */
+    int next(int consumers, int backlog, double transactionMillis, double leaseMillis) {
+        int next;
+        if (transactionMillis > maxTransactionMillis || leaseMillis > maxLeaseMillis) {
+            next = consumers / 2;
+        } else if (backlog > consumers * backlogPerConsumer) {
+            next = consumers + 1;
+        } else if (backlog == 0) {
+            next = consumers - 1;
+        } else {
+            next = consumers;
+        }
+        return Math.max(minConsumers, Math.min(maxConsumers, next));
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.atomikos.listener;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.util.List;
+
+/**
+ * Receives the messages a {@link BatchMessageListenerContainer} collected for one transaction,
+ * together with the session they were received on.
+ */
+@FunctionalInterface
+public interface BatchMessageListener {
+
+    void onMessages(List<Message> messages, Session session) throws JMSException;
+}
@@ -0,0 +1,113 @@
+package com.example.atomikos.listener;
+
+import com.example.atomikos.service.Route;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Listener container that receives up to {@code batchSize} messages per transaction on its own
+ * consumer. The first message is awaited for the receive timeout as usual; further messages are
+ * received until the batch is full or {@code batchWindowMillis} have passed, so messages the
+ * consumer has already prefetched join the batch at once. The batch is passed to a
+ * {@link BatchMessageListener} within the container's transaction and commits or rolls back as a
+ * whole.
+ * <p>
+ * A redelivered message may come from a rolled back batch. When it arrives first it is passed
+ * on its own to the regular listener, so a single bad message cannot fail the others again.
+ * Arriving later it closes the batch before it: a received message cannot be handed back to the
+ * queue, so it stays in the transaction, but it is passed on its own to the regular listener
+ * ahead of the batch. If it fails again, the transaction rolls back before any of the fresh
+ * messages has been processed.
+ * <p>
+ * With a {@link CapacityScheduler} the consumer only receives once a slot for its route is
+ * available, so a message is not held in a transaction that has to wait for capacity.
+ */
+public class BatchMessageListenerContainer extends DefaultMessageListenerContainer {
+
+    // Consumers run on several threads; each passes its batch from receive to invoke on its own
+    private final ThreadLocal<List<Message>> batches = new ThreadLocal<>();
+    private final ThreadLocal<Message> redelivered = new ThreadLocal<>();
+    private int batchSize = 1;
+    private long batchWindowMillis;
+    private CapacityScheduler capacityScheduler;
+    private Route route;
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setBatchWindowMillis(long batchWindowMillis) {
+        this.batchWindowMillis = batchWindowMillis;
+    }
+
+    public void setCapacityScheduler(CapacityScheduler capacityScheduler, Route route) {
+        this.capacityScheduler = capacityScheduler;
+        this.route = route;
+    }
+
+    @Override
+    protected boolean receiveAndExecute(Object invoker, Session session, MessageConsumer consumer)
+            throws JMSException {
+        try {
+            if (capacityScheduler != null && !capacityScheduler.awaitAvailable(route)) {
+                // Counts as an idle receive; the consumer asks again on its next iteration
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return super.receiveAndExecute(invoker, session, consumer);
+    }
+
+    @Override
+    protected Message receiveMessage(MessageConsumer consumer) throws JMSException {
+        batches.remove();
+        redelivered.remove();
+        Message first = super.receiveMessage(consumer);
+        if (first == null || batchSize <= 1 || first.getJMSRedelivered()
+            || !(getMessageListener() instanceof BatchMessageListener)) {
+            return first;
+        }
+        List<Message> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        long deadline = System.currentTimeMillis() + batchWindowMillis;
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.currentTimeMillis();
+            Message next = remaining > 0 ? receiveFromConsumer(consumer, remaining) : consumer.receiveNoWait();
+            if (next == null) {
+                break;
+            }
+            if (next.getJMSRedelivered()) {
+                redelivered.set(next);
+                break;
+            }
+            batch.add(next);
+        }
+        batches.set(batch);
+        return first;
+    }
+
+    @Override
+    protected void invokeListener(Session session, Message message) throws JMSException {
+        List<Message> batch = batches.get();
+        if (batch == null) {
+            super.invokeListener(session, message);
+            return;
+        }
+        batches.remove();
+        Message redeliveredMessage = redelivered.get();
+        if (redeliveredMessage != null) {
+            redelivered.remove();
+            // It was on the queue before the fresh messages
+            super.invokeListener(session, redeliveredMessage);
+        }
+        ((BatchMessageListener) getMessageListener()).onMessages(batch, session);
+    }
+}
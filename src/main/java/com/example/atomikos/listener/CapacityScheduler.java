@@ -0,0 +1,160 @@
+package com.example.atomikos.listener;
+
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.service.Route;
+import com.example.atomikos.service.RouteTable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the XA capacity of the instance, one Oracle connection and two MQ sessions per
+ * transaction, among the routes by priority. Every route has {@code concurrency} slots per
+ * queue manager reserved for it. A route may run more transactions, up to its
+ * {@code maxConcurrency} consumers, on slots that routes of lower priority reserved but are
+ * not using; a route never takes slots reserved for a route of the same or a higher priority.
+ * A bulk route can therefore never delay an urgent one by more than the transactions already
+ * running on the urgent route's slots, while the urgent route uses the bulk capacity whenever
+ * the bulk route is idle. Borrowed slots return to their route as the transactions on them
+ * complete; nothing is preempted.
+ * A released slot that a waiting transaction of its own route needs is not lent again.
+ * <p>
+ * A consumer waits for a slot to become available before it receives, without holding one while
+ * the queue is empty, and the transaction takes its slot after the receive and before any Oracle
+ * connection is leased. Both waits are bounded by {@code maxWaitMillis}: the consumer then
+ * receives nothing, and a transaction that found no slot rolls back rather than holding its
+ * message and XA transaction open. Without routes that can borrow capacity every route only ever
+ * uses its own consumers, and slots are not tracked.
+ */
+public class CapacityScheduler {
+
+    private final boolean enabled;
+    private final PipelineMetrics pipelineMetrics;
+    private final Map<String, Lane> lanes = new HashMap<>();
+    private final int capacity;
+    private final long maxWaitMillis;
+    private int used;
+
+    private static final class Lane {
+        final int priority;
+        final int reserved;
+        int used;
+        int waiting;
+
+        Lane(int priority, int reserved) {
+            this.priority = priority;
+            this.reserved = reserved;
+        }
+
+        int unused() {
+            return Math.max(0, reserved - used);
+        }
+
+        int wanted() {
+            return Math.min(waiting, unused());
+        }
+    }
+
+    /**
+     * @param queueManagers queue managers every route consumes from with its own consumers
+     * @param maxWaitMillis longest a consumer or transaction waits for a slot
+     */
+    public CapacityScheduler(RouteTable routeTable, int queueManagers, long maxWaitMillis,
+                             PipelineMetrics pipelineMetrics) {
+        this.enabled = routeTable.prioritized();
+        this.maxWaitMillis = maxWaitMillis;
+        this.pipelineMetrics = pipelineMetrics;
+        int capacity = 0;
+        for (Route route : routeTable.routes()) {
+            int reserved = route.concurrency() * queueManagers;
+            lanes.put(route.name(), new Lane(route.priority(), reserved));
+            capacity += reserved;
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Waits until a slot for a transaction of {@code route} is available, without taking it.
+     *
+     * @return {@code false} if no slot became available within {@code maxWaitMillis}
+     */
+    public boolean awaitAvailable(Route route) throws InterruptedException {
+        return !enabled || await(route, false);
+    }
+
+    /**
+     * Waits for a slot for a transaction of {@code route}.
+     *
+     * @return {@code false} if no slot became available within {@code maxWaitMillis}, the
+     *         transaction must then roll back
+     */
+    public boolean acquire(Route route) throws InterruptedException {
+        return !enabled || await(route, true);
+    }
+
+    private synchronized boolean await(Route route, boolean take) throws InterruptedException {
+        if (available(route, take)) {
+            return true;
+        }
+        Lane lane = lanes.get(route.name());
+        long waitStart = System.nanoTime();
+        long deadline = waitStart + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        lane.waiting++;
+        try {
+            do {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } while (!available(route, take));
+        } finally {
+            lane.waiting--;
+            pipelineMetrics.recordCapacityWait(route.name(), System.nanoTime() - waitStart);
+        }
+        return true;
+    }
+
+    private boolean available(Route route, boolean take) {
+        return take ? tryAcquire(route) : canAcquire(lanes.get(route.name()));
+    }
+
+    synchronized boolean tryAcquire(Route route) {
+        Lane lane = lanes.get(route.name());
+        if (!canAcquire(lane)) {
+            return false;
+        }
+        lane.used++;
+        used++;
+        return true;
+    }
+
+    private boolean canAcquire(Lane lane) {
+        boolean borrowing = lane.used >= lane.reserved;
+        // Leave enough free slots for every route of a higher priority, and when borrowing also
+        // for those of the same priority, to take all of its reserved slots. A slot of its own
+        // that was lent to a route of a higher priority only comes back once that route releases
+        // one; it is not lent again while its route is waiting for it.
+        int protectedSlots = 0;
+        for (Lane other : lanes.values()) {
+            if (other != lane && (other.priority > lane.priority || borrowing && other.priority == lane.priority)) {
+                protectedSlots += other.unused();
+            } else if (other != lane && borrowing) {
+                protectedSlots += other.wanted();
+            }
+        }
+        return capacity - used - 1 >= protectedSlots;
+    }
+
+    public void release(Route route) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            lanes.get(route.name()).used--;
+            used--;
+            notifyAll();
+        }
+    }
+}
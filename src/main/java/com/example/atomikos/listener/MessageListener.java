@@ -1,39 +1,181 @@
 package com.example.atomikos.listener;
 
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.service.MessageProcessingException;
 import com.example.atomikos.service.MessageProcessingService;
+import com.example.atomikos.service.Route;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.config.SimpleJmsListenerEndpoint;
+import org.springframework.jms.listener.SessionAwareMessageListener;
 import org.springframework.stereotype.Component;
 
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.Message;
+import javax.jms.Session;
 import javax.jms.TextMessage;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Consumes the input queues of all routes. Every listener container is bound to its route when
+ * it is registered, so a message goes straight to the stages of its route. On routes with a
+ * batch size above 1 the container passes the messages of a transaction as a batch (see
+ * {@link BatchMessageListenerContainer}).
+ */
 @Component
 public class MessageListener {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageListener.class);
+    public static final String LISTENER_ID = "messageListener";
 
     private final MessageProcessingService messageProcessingService;
+    private final PipelineMetrics pipelineMetrics;
+    private final PoisonMessageHandler poisonMessageHandler;
+    private final CapacityScheduler capacityScheduler;
 
-    public MessageListener(MessageProcessingService messageProcessingService) {
+    public MessageListener(MessageProcessingService messageProcessingService,
+                           PipelineMetrics pipelineMetrics,
+                           PoisonMessageHandler poisonMessageHandler,
+                           CapacityScheduler capacityScheduler) {
         this.messageProcessingService = messageProcessingService;
+        this.pipelineMetrics = pipelineMetrics;
+        this.poisonMessageHandler = poisonMessageHandler;
+        this.capacityScheduler = capacityScheduler;
     }
 
-    @JmsListener(destination = "DEV.QUEUE.1", containerFactory = "jmsListenerContainerFactory")
-    public void receiveMessage(Message message) {
-        logger.info("Received message from queue");
-        
+    /**
+     * The id of the listener container of {@code route}, suffixed with {@code @<queueManager>}
+     * on any queue manager but the primary one.
+     */
+    public static String listenerId(Route route, String queueManager) {
+        String id = LISTENER_ID + "." + route.name();
+        return queueManager != null ? id + "@" + queueManager : id;
+    }
+
+    public SimpleJmsListenerEndpoint endpoint(Route route, String id) {
+        SimpleJmsListenerEndpoint endpoint = new SimpleJmsListenerEndpoint();
+        endpoint.setId(id);
+        endpoint.setDestination(route.inputQueue());
+        endpoint.setSelector(route.selector());
+        endpoint.setMessageListener(new RouteListener(route));
+        return endpoint;
+    }
+
+    // The container passes its session to a SessionAwareMessageListener; the endpoint only accepts a plain one
+    private final class RouteListener
+            implements SessionAwareMessageListener<Message>, javax.jms.MessageListener, BatchMessageListener {
+
+        private final Route route;
+
+        RouteListener(Route route) {
+            this.route = route;
+        }
+
+        @Override
+        public void onMessage(Message message, Session session) {
+            receiveMessage(route, message, session);
+        }
+
+        @Override
+        public void onMessage(Message message) {
+            receiveMessage(route, message, null);
+        }
+
+        @Override
+        public void onMessages(List<Message> messages, Session session) {
+            receiveBatch(route, messages, session);
+        }
+    }
+
+    public void receiveMessage(Route route, Message message, Session session) {
+        logger.debug("Received message from {}", route.inputQueue());
+
+        try {
+            if (message.getJMSRedelivered()) {
+                pipelineMetrics.recordRedelivery(message.getJMSMessageID());
+            }
+
+            if (poisonMessageHandler.deadLetterIfExhausted(session, message, route.inputQueue())) {
+                return;
+            }
+            acquireCapacity(route);
+            try {
+                process(route, message, session);
+            } finally {
+                capacityScheduler.release(route);
+            }
+        } catch (JMSException e) {
+            logger.error("Error receiving message", e);
+            throw new RuntimeException("Failed to receive message", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for capacity", e);
+        }
+    }
+
+    private void process(Route route, Message message, Session session) throws JMSException {
         try {
             if (message instanceof TextMessage textMessage) {
-                messageProcessingService.processMessage(textMessage);
+                messageProcessingService.processMessage(route, textMessage);
+            } else if (message instanceof BytesMessage bytesMessage) {
+                messageProcessingService.processMessage(route, bytesMessage);
             } else {
                 logger.warn("Received non-text message: {}", message.getClass().getName());
             }
+        } catch (MessageProcessingException e) {
+            poisonMessageHandler.handleFailure(session, message, route.inputQueue(), e);
+        }
+    }
+
+    /**
+     * Processes the messages the container received in one transaction together.
+     */
+    public void receiveBatch(Route route, List<Message> messages, Session session) {
+        logger.debug("Received batch of {} messages from {}", messages.size(), route.inputQueue());
+
+        try {
+            List<Message> batch = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                if (message.getJMSRedelivered()) {
+                    pipelineMetrics.recordRedelivery(message.getJMSMessageID());
+                    if (poisonMessageHandler.deadLetterIfExhausted(session, message, route.inputQueue())) {
+                        continue;
+                    }
+                }
+                addToBatch(batch, message);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            acquireCapacity(route);
+            try {
+                messageProcessingService.processBatch(route, batch);
+            } finally {
+                capacityScheduler.release(route);
+            }
         } catch (JMSException e) {
-            logger.error("Error receiving message", e);
-            throw new RuntimeException("Failed to receive message", e);
+            logger.error("Error receiving batch", e);
+            throw new RuntimeException("Failed to receive batch", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for capacity", e);
+        }
+    }
+
+    private void acquireCapacity(Route route) throws InterruptedException {
+        if (!capacityScheduler.acquire(route)) {
+            // Rolls back rather than holding the received messages in an open XA transaction
+            throw new IllegalStateException("No XA capacity available for route " + route.name());
+        }
+    }
+
+    private void addToBatch(List<Message> batch, Message message) {
+        if (messageProcessingService.supports(message)) {
+            batch.add(message);
+        } else {
+            logger.warn("Received non-text message: {}", message.getClass().getName());
         }
     }
 }
@@ -0,0 +1,207 @@
+package com.example.atomikos.listener;
+
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.service.InvalidMessageException;
+import com.example.atomikos.service.MessageProcessingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Moves messages that cannot be processed to the dead-letter queue instead of letting them be
+ * redelivered forever. A message is dead-lettered
+ * <ul>
+ *   <li>on its first delivery when its body cannot be parsed ({@link InvalidMessageException}),</li>
+ *   <li>on its next delivery after another permanent failure, which rolled back its transaction,</li>
+ *   <li>once its {@code JMSXDeliveryCount} exceeds {@code app.listener.backout.threshold}.</li>
+ * </ul>
+ * Which transaction the copy is sent in depends on how the message was received:
+ * <ul>
+ *   <li>XA listener containers with a transaction manager (batch size above 1 or a route
+ *       transaction timeout) receive in their own JTA transaction. The copy is sent on the
+ *       receiving session in that transaction and commits or rolls back with the receive, together
+ *       with whatever the rest of the batch writes.</li>
+ *   <li>XA listener containers without one (the default: batch size 1, no timeout) leave the JTA
+ *       transaction to {@code MessageProcessingService}. The copy is sent on the receiving session
+ *       outside it, before processing starts or after an invalid message's transaction has ended,
+ *       so the transaction manager does not coordinate it with the receive.</li>
+ *   <li>Outbox mode containers receive in a local JMS transaction, which the copy on the
+ *       receiving session joins.</li>
+ *   <li>Striped lanes pass no session. The copy is sent through the {@link JmsTemplate} in the
+ *       lane's JTA transaction, which also holds the receive.</li>
+ * </ul>
+ */
+@Component
+public class PoisonMessageHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PoisonMessageHandler.class);
+
+    private static final int MAX_REMEMBERED_FAILURES = 1000;
+    private static final int MAX_REASON_LENGTH = 1000;
+
+    static final String CAUSE_PROPERTY = "deadLetterCause";
+    static final String REASON_PROPERTY = "deadLetterReason";
+    static final String ORIGINAL_MESSAGE_ID_PROPERTY = "originalJMSMessageID";
+    static final String ORIGINAL_QUEUE_PROPERTY = "originalQueue";
+    static final String DELIVERY_COUNT_PROPERTY = "deliveryCount";
+    static final String DEAD_LETTERED_AT_PROPERTY = "deadLetteredAt";
+
+    private final JmsTemplate jmsTemplate;
+    private final PipelineMetrics pipelineMetrics;
+    private final int backoutThreshold;
+    private final String deadLetterQueue;
+
+    // Permanent failure per JMS message ID, dead-lettered when the rolled back message comes back
+    private final Map<String, Failure> permanentFailures = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Failure> eldest) {
+            return size() > MAX_REMEMBERED_FAILURES;
+        }
+    };
+
+    public PoisonMessageHandler(JmsTemplate jmsTemplate,
+                                PipelineMetrics pipelineMetrics,
+                                @Value("${app.listener.backout.threshold:5}") int backoutThreshold,
+                                @Value("${app.listener.dead-letter-queue:DEV.DEAD.LETTER.QUEUE}") String deadLetterQueue) {
+        this.jmsTemplate = jmsTemplate;
+        this.pipelineMetrics = pipelineMetrics;
+        this.backoutThreshold = backoutThreshold;
+        this.deadLetterQueue = deadLetterQueue;
+    }
+
+    private record Failure(String cause, String reason) {
+    }
+
+    /**
+     * Dead-letters a redelivered message whose previous delivery failed permanently, or which
+     * has exceeded the backout threshold.
+     *
+     * @param session    the session that received the message, or {@code null} to send in the
+     *                   current transaction through the {@link JmsTemplate}
+     * @param inputQueue the queue the message was received from
+     * @return {@code true} if the message was dead-lettered and must not be processed
+     */
+    public boolean deadLetterIfExhausted(Session session, Message message, String inputQueue) throws JMSException {
+        if (!message.getJMSRedelivered()) {
+            return false;
+        }
+        Failure failure;
+        synchronized (permanentFailures) {
+            failure = permanentFailures.remove(message.getJMSMessageID());
+        }
+        int deliveryCount = deliveryCount(message);
+        if (failure == null && backoutThreshold > 0 && deliveryCount > backoutThreshold) {
+            failure = new Failure("backout_threshold", "Failed " + (deliveryCount - 1) + " deliveries");
+        }
+        if (failure == null) {
+            return false;
+        }
+        deadLetter(session, message, inputQueue, failure, deliveryCount);
+        return true;
+    }
+
+    /**
+     * Handles a processing failure of a single message. An invalid message is dead-lettered
+     * right away, as its transaction was not rolled back. Otherwise the failure is rethrown to
+     * roll back, and remembered if it is permanent so the redelivery is dead-lettered.
+     */
+    public void handleFailure(Session session, Message message, String inputQueue, MessageProcessingException failure)
+            throws JMSException {
+        if (failure instanceof InvalidMessageException) {
+            deadLetter(session, message, inputQueue, new Failure(failure.getFailureCause(), reason(failure)),
+                       deliveryCount(message));
+            return;
+        }
+        if (failure.isPermanent() && message.getJMSMessageID() != null) {
+            synchronized (permanentFailures) {
+                permanentFailures.put(message.getJMSMessageID(), new Failure(failure.getFailureCause(), reason(failure)));
+            }
+        }
+        throw failure;
+    }
+
+    private void deadLetter(Session session, Message message, String inputQueue, Failure failure, int deliveryCount)
+            throws JMSException {
+        if (session != null) {
+            send(session, message, inputQueue, failure, deliveryCount);
+        } else {
+            jmsTemplate.execute(templateSession -> {
+                send(templateSession, message, inputQueue, failure, deliveryCount);
+                return null;
+            }, true);
+        }
+        pipelineMetrics.recordDeadLetter(failure.cause());
+        logger.warn("Moved message {} to {} after {} deliveries: {} ({})", message.getJMSMessageID(),
+                    deadLetterQueue, deliveryCount, failure.cause(), failure.reason());
+    }
+
+    private void send(Session session, Message message, String inputQueue, Failure failure, int deliveryCount)
+            throws JMSException {
+        Message copy = copy(session, message);
+        copy.setStringProperty(CAUSE_PROPERTY, failure.cause());
+        copy.setStringProperty(REASON_PROPERTY, failure.reason());
+        copy.setStringProperty(ORIGINAL_MESSAGE_ID_PROPERTY, message.getJMSMessageID());
+        copy.setStringProperty(ORIGINAL_QUEUE_PROPERTY, inputQueue);
+        copy.setIntProperty(DELIVERY_COUNT_PROPERTY, deliveryCount);
+        copy.setLongProperty(DEAD_LETTERED_AT_PROPERTY, System.currentTimeMillis());
+
+        MessageProducer producer = session.createProducer(session.createQueue(deadLetterQueue));
+        try {
+            producer.send(copy);
+        } finally {
+            producer.close();
+        }
+    }
+
+    private static Message copy(Session session, Message message) throws JMSException {
+        Message copy;
+        if (message instanceof TextMessage textMessage) {
+            copy = session.createTextMessage(textMessage.getText());
+        } else if (message instanceof BytesMessage bytesMessage) {
+            bytesMessage.reset();
+            byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(body);
+            BytesMessage bytesCopy = session.createBytesMessage();
+            bytesCopy.writeBytes(body);
+            copy = bytesCopy;
+        } else {
+            copy = session.createMessage();
+        }
+        copy.setJMSCorrelationID(message.getJMSCorrelationID());
+        copy.setJMSType(message.getJMSType());
+        Enumeration<?> names = message.getPropertyNames();
+        while (names.hasMoreElements()) {
+            String name = (String) names.nextElement();
+            // JMSX and provider-specific JMS_ properties are set by the provider
+            if (!name.startsWith("JMS")) {
+                copy.setObjectProperty(name, message.getObjectProperty(name));
+            }
+        }
+        return copy;
+    }
+
+    static int deliveryCount(Message message) throws JMSException {
+        if (message.propertyExists("JMSXDeliveryCount")) {
+            return message.getIntProperty("JMSXDeliveryCount");
+        }
+        return message.getJMSRedelivered() ? 2 : 1;
+    }
+
+    private static String reason(MessageProcessingException failure) {
+        Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+        String reason = failure.getMessage() + ": " + cause;
+        return reason.length() > MAX_REASON_LENGTH ? reason.substring(0, MAX_REASON_LENGTH) : reason;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.atomikos.listener;
+
+/**
+ * Keeps the connection pools used by the listener consumers sized for the current
+ * consumer count. Each processing mode provides one for its own pools.
+ */
+@FunctionalInterface
+public interface PoolResizer {
+
+    void resize(int consumers);
+}
@@ -0,0 +1,41 @@
+package com.example.atomikos.listener;
+
+import com.example.atomikos.service.Route;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+
+/**
+ * Creates the listener containers of a route: {@link BatchMessageListenerContainer}s receiving
+ * up to the route's batch size per transaction, with the route's transaction timeout if it has
+ * its own. The timeout only applies to containers with a transaction manager. A consumer only
+ * receives once the {@link CapacityScheduler} has a slot available for the route.
+ */
+public class RouteListenerContainerFactory extends DefaultJmsListenerContainerFactory {
+
+    private final Route route;
+    private final long batchWindowMillis;
+    private final CapacityScheduler capacityScheduler;
+
+    public RouteListenerContainerFactory(Route route, long batchWindowMillis, CapacityScheduler capacityScheduler) {
+        this.route = route;
+        this.batchWindowMillis = batchWindowMillis;
+        this.capacityScheduler = capacityScheduler;
+    }
+
+    @Override
+    protected DefaultMessageListenerContainer createContainerInstance() {
+        return new BatchMessageListenerContainer();
+    }
+
+    @Override
+    protected void initializeContainer(DefaultMessageListenerContainer container) {
+        super.initializeContainer(container);
+        BatchMessageListenerContainer batchContainer = (BatchMessageListenerContainer) container;
+        batchContainer.setBatchSize(route.batchSize());
+        batchContainer.setBatchWindowMillis(batchWindowMillis);
+        batchContainer.setCapacityScheduler(capacityScheduler, route);
+        if (route.transactionTimeoutSeconds() > 0) {
+            container.setTransactionTimeout(route.transactionTimeoutSeconds());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.atomikos.listener;
+
+import com.example.atomikos.service.MessageJsonCodec;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import java.io.IOException;
+
+/**
+ * Maps a message to the lane that processes it. The ordering key is a JMS property when one
+ * is configured, otherwise a top-level JSON field, {@code messageId} by default. Messages
+ * without a key fall back to their JMS message ID, the same fallback the processing service
+ * uses for the stored messageId.
+ */
+class StripeKeyResolver {
+
+    private final MessageJsonCodec messageJsonCodec;
+    private final String keyField;
+    private final String keyProperty;
+    private final int lanes;
+
+    StripeKeyResolver(MessageJsonCodec messageJsonCodec, String keyField, String keyProperty, int lanes) {
+        if (lanes < 1) {
+            throw new IllegalArgumentException("Invalid lane count " + lanes);
+        }
+        this.messageJsonCodec = messageJsonCodec;
+        this.keyField = keyField;
+        this.keyProperty = keyProperty == null || keyProperty.isBlank() ? null : keyProperty;
+        this.lanes = lanes;
+    }
+
+    int lanes() {
+        return lanes;
+    }
+
+    int laneOf(Message message) throws JMSException {
+        return laneOf(keyOf(message));
+    }
+
+    int laneOf(String key) {
+        return Math.floorMod(key.hashCode(), lanes);
+    }
+
+    String keyOf(Message message) throws JMSException {
+        String key = null;
+        if (keyProperty != null) {
+            key = message.getStringProperty(keyProperty);
+        } else if (message instanceof TextMessage textMessage && textMessage.getText() != null) {
+            try {
+                key = messageJsonCodec.extractField(textMessage.getText(), keyField);
+            } catch (IOException e) {
+                // Invalid JSON fails in processing, any lane will do until then
+            }
+        }
+        return key != null ? key : String.valueOf(message.getJMSMessageID());
+    }
+}
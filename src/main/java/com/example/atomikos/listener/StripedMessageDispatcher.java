@@ -0,0 +1,297 @@
+package com.example.atomikos.listener;
+
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.service.MessageJsonCodec;
+import com.example.atomikos.service.MessageProcessingException;
+import com.example.atomikos.service.MessageProcessingService;
+import com.example.atomikos.service.Route;
+import com.example.atomikos.service.RouteTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.jms.BytesMessage;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import javax.jms.XAConnectionFactory;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processes the input queue of the primary route on parallel lanes while keeping messages with the same key in
+ * order. A dispatcher browses the queue in arrival order and assigns each message to the lane
+ * of its key (see {@link StripeKeyResolver}). Browsing needs no transaction; in XA mode it uses
+ * a plain connection of the XA connection factory rather than one enlisted by Atomikos. A browse
+ * can still list messages that a lane has consumed since, so messages in flight or recently
+ * finished are not dispatched again. Each lane is a single thread that receives its
+ * messages by JMS message ID and processes them one at a time, each in its own transaction
+ * that covers the receive, the insert and the publish.
+ * <p>
+ * A message whose processing fails is retried by its lane before the lane moves on, so a
+ * later message with the same key never overtakes it, until {@link PoisonMessageHandler} moves
+ * it to the dead-letter queue. Messages that disappear from the queue in the meantime are skipped. While enabled the
+ * regular listener containers of the primary route are not started; other routes keep theirs. Only the primary
+ * queue manager is consumed, so additional queue managers are rejected at startup.
+ */
+@Component
+@ConditionalOnProperty(name = "app.listener.striping.enabled", havingValue = "true")
+public class StripedMessageDispatcher implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(StripedMessageDispatcher.class);
+
+    private final JmsTemplate receiveTemplate;
+    private final CachingConnectionFactory browseConnectionFactory;
+    private final JmsTemplate browseTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageProcessingService messageProcessingService;
+    private final PipelineMetrics pipelineMetrics;
+    private final PoisonMessageHandler poisonMessageHandler;
+    private final PoolResizer poolResizer;
+    private final CapacityScheduler capacityScheduler;
+    private final Route route;
+    private final int secondaryConsumers;
+    private final StripeKeyResolver keyResolver;
+    private final int maxInFlight;
+    private final long pollIntervalMillis;
+    private final long retryDelayMillis;
+
+    // JMS message IDs dispatched to a lane and not yet finished, so browsing does not dispatch them twice
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    // JMS message IDs a lane has finished, which a browse started before may still list
+    private final Set<String> finished;
+
+    private ExecutorService[] lanes;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    public StripedMessageDispatcher(JmsTemplate jmsTemplate,
+                                    ObjectProvider<XAConnectionFactory> xaConnectionFactory,
+                                    PlatformTransactionManager transactionManager,
+                                    MessageProcessingService messageProcessingService,
+                                    MessageJsonCodec messageJsonCodec,
+                                    PipelineMetrics pipelineMetrics,
+                                    PoisonMessageHandler poisonMessageHandler,
+                                    PoolResizer poolResizer,
+                                    RouteTable routeTable,
+                                    CapacityScheduler capacityScheduler,
+                                    @Value("${app.listener.striping.lanes:4}") int lanes,
+                                    @Value("${app.listener.striping.key-field:messageId}") String keyField,
+                                    @Value("${app.listener.striping.key-property:}") String keyProperty,
+                                    @Value("${app.listener.striping.max-in-flight:200}") int maxInFlight,
+                                    @Value("${app.listener.striping.poll-interval-ms:100}") long pollIntervalMillis,
+                                    @Value("${app.listener.striping.retry-delay-ms:1000}") long retryDelayMillis) {
+        // Same connection factory and transaction participation as the publisher, but a
+        // bounded receive so a lane does not block on a message that is already gone
+        this.receiveTemplate = new JmsTemplate(jmsTemplate.getConnectionFactory());
+        this.receiveTemplate.setSessionTransacted(true);
+        this.receiveTemplate.setReceiveTimeout(1000);
+        // Outside XA mode the template's connection factory is not XA in the first place
+        ConnectionFactory browseConnections = xaConnectionFactory.getIfAvailable() instanceof ConnectionFactory plain
+                ? plain : jmsTemplate.getConnectionFactory();
+        this.browseConnectionFactory = new CachingConnectionFactory(browseConnections);
+        this.browseTemplate = new JmsTemplate(browseConnectionFactory);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.messageProcessingService = messageProcessingService;
+        this.pipelineMetrics = pipelineMetrics;
+        this.poisonMessageHandler = poisonMessageHandler;
+        this.poolResizer = poolResizer;
+        this.capacityScheduler = capacityScheduler;
+        this.route = routeTable.primary();
+        this.secondaryConsumers = routeTable.secondaryConsumers();
+        this.keyResolver = new StripeKeyResolver(messageJsonCodec, keyField, keyProperty, lanes);
+        this.maxInFlight = maxInFlight;
+        // Several times what one browse can dispatch, more than a lane finishes while a browse runs
+        int finishedCapacity = 4 * maxInFlight;
+        this.finished = Collections.newSetFromMap(new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > finishedCapacity;
+            }
+        });
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        // Each lane behaves like one listener consumer, the dispatcher browses on the spare session
+        poolResizer.resize(keyResolver.lanes() + secondaryConsumers);
+        lanes = new ExecutorService[keyResolver.lanes()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("stripe-" + i + "-"));
+        }
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "stripe-dispatcher");
+        dispatcher.start();
+        logger.info("Striped processing of route {} enabled with {} lanes", route.name(), lanes.length);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            dispatcher.join();
+            for (ExecutorService lane : lanes) {
+                lane.shutdown();
+            }
+            for (ExecutorService lane : lanes) {
+                if (!lane.awaitTermination(30, TimeUnit.SECONDS)) {
+                    logger.warn("Lane did not finish its current message in time");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        inFlight.clear();
+        synchronized (finished) {
+            finished.clear();
+        }
+        browseConnectionFactory.resetConnection();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            int dispatched = 0;
+            try {
+                Integer count = browseAndDispatch();
+                dispatched = count != null ? count : 0;
+            } catch (RuntimeException e) {
+                logger.error("Error browsing input queue", e);
+            }
+            if (dispatched == 0 && !pause(pollIntervalMillis)) {
+                return;
+            }
+        }
+    }
+
+    private Integer browseAndDispatch() {
+        return browseTemplate.browseSelected(route.inputQueue(), route.selector(), (session, browser) -> {
+            int dispatched = 0;
+            Enumeration<?> messages = browser.getEnumeration();
+            while (running && inFlight.size() < maxInFlight && messages.hasMoreElements()) {
+                Message message = (Message) messages.nextElement();
+                String jmsMessageId = message.getJMSMessageID();
+                if (!inFlight.add(jmsMessageId)) {
+                    continue;
+                }
+                // Checked after claiming the ID, as a lane marks it finished before releasing it
+                if (isFinished(jmsMessageId)) {
+                    inFlight.remove(jmsMessageId);
+                    continue;
+                }
+                lanes[keyResolver.laneOf(message)].execute(() -> processInLane(jmsMessageId));
+                dispatched++;
+            }
+            return dispatched;
+        });
+    }
+
+    private boolean isFinished(String jmsMessageId) {
+        synchronized (finished) {
+            return finished.contains(jmsMessageId);
+        }
+    }
+
+    private void processInLane(String jmsMessageId) {
+        try {
+            while (running) {
+                try {
+                    if (!capacityScheduler.acquire(route)) {
+                        continue;
+                    }
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> receiveAndProcess(jmsMessageId));
+                    } finally {
+                        capacityScheduler.release(route);
+                    }
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    // The message is back on the queue; retry it before anything else of this lane
+                    logger.warn("Processing of message {} failed, retrying in {} ms", jmsMessageId, retryDelayMillis);
+                    if (!pause(retryDelayMillis)) {
+                        return;
+                    }
+                }
+            }
+        } finally {
+            synchronized (finished) {
+                finished.add(jmsMessageId);
+            }
+            inFlight.remove(jmsMessageId);
+        }
+    }
+
+    private void receiveAndProcess(String jmsMessageId) {
+        Message message = receiveTemplate.receiveSelected(route.inputQueue(),
+                                                          "JMSMessageID = '" + jmsMessageId + "'");
+        if (message == null) {
+            logger.info("Message {} is no longer on the input queue", jmsMessageId);
+            return;
+        }
+
+        try {
+            if (message.getJMSRedelivered()) {
+                pipelineMetrics.recordRedelivery(jmsMessageId);
+                if (poisonMessageHandler.deadLetterIfExhausted(null, message, route.inputQueue())) {
+                    return;
+                }
+            }
+            try {
+                if (message instanceof TextMessage textMessage) {
+                    messageProcessingService.processMessage(route, textMessage);
+                } else if (message instanceof BytesMessage bytesMessage) {
+                    messageProcessingService.processMessage(route, bytesMessage);
+                } else {
+                    logger.warn("Received non-text message: {}", message.getClass().getName());
+                }
+            } catch (MessageProcessingException e) {
+                poisonMessageHandler.handleFailure(null, message, route.inputQueue(), e);
+            }
+        } catch (JMSException e) {
+            logger.error("Error receiving message", e);
+            throw new RuntimeException("Failed to receive message", e);
+        }
+    }
+
+    private boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.atomikos.metrics;
+
+import org.springframework.jms.connection.DelegatingConnectionFactory;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+
+/**
+ * Records how long it takes to obtain a connection from the pooled target connection factory.
+ */
+class LeaseTimingConnectionFactory extends DelegatingConnectionFactory {
+
+    private final String pool;
+    private final PipelineMetrics metrics;
+
+    LeaseTimingConnectionFactory(ConnectionFactory targetConnectionFactory, String pool, PipelineMetrics metrics) {
+        this.pool = pool;
+        this.metrics = metrics;
+        setTargetConnectionFactory(targetConnectionFactory);
+    }
+
+    @Override
+    public Connection createConnection() throws JMSException {
+        long start = System.nanoTime();
+        try {
+            return super.createConnection();
+        } finally {
+            metrics.recordLease(pool, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Connection createConnection(String username, String password) throws JMSException {
+        long start = System.nanoTime();
+        try {
+            return super.createConnection(username, password);
+        } finally {
+            metrics.recordLease(pool, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.atomikos.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Records how long it takes to obtain a connection from the pooled target data source.
+ */
+class LeaseTimingDataSource extends DelegatingDataSource {
+
+    private final String pool;
+    private final PipelineMetrics metrics;
+
+    LeaseTimingDataSource(DataSource targetDataSource, String pool, PipelineMetrics metrics) {
+        super(targetDataSource);
+        this.pool = pool;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection();
+        } finally {
+            metrics.recordLease(pool, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection(username, password);
+        } finally {
+            metrics.recordLease(pool, System.nanoTime() - start);
+        }
+    }
+}
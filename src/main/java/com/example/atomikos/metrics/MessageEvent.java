@@ -0,0 +1,21 @@
+package com.example.atomikos.metrics;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * What happened to one message, written as one JSON line by {@link MessageEventLog}.
+ *
+ * @param timestamp     epoch milliseconds when processing started
+ * @param batchSize     messages in the transaction, 1 outside batch mode
+ * @param outcome       {@code processed}, {@code duplicate}, {@code invalid} or {@code failed}
+ * @param cause         failure cause of an {@code invalid} or {@code failed} message
+ * @param extractMicros time to read and parse the body, and to validate it
+ * @param persistMicros time to store the message, shared by a batch
+ * @param publishMicros time to publish the outputs, shared by a batch
+ * @param payload       the start of the body, for a sample of the messages only
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record MessageEvent(long timestamp, String route, String messageId, String jmsMessageId, int batchSize,
+                           String outcome, String cause, long extractMicros, long persistMicros,
+                           long publishMicros, long totalMicros, String payload) {
+}
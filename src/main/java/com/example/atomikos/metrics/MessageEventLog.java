@@ -0,0 +1,217 @@
+package com.example.atomikos.metrics;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured per-message events, one JSON line per message on the logger
+ * {@code com.example.atomikos.events}. Consumers only hand the finished {@link MessageEvent}
+ * to a bounded {@link EventRing}; a background thread formats and writes the events, so
+ * neither the JSON formatting nor the appender's I/O runs inside a transaction. When the
+ * buffer is full the event is dropped and counted in {@code app.events.dropped} rather than
+ * slowing the consumer down. Payloads are included for a sample of the messages only, cut to
+ * {@code app.events.payload.max-chars}.
+ */
+@Component
+public class MessageEventLog implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageEventLog.class);
+    private static final Logger events = LoggerFactory.getLogger("com.example.atomikos.events");
+
+    private final ObjectMapper objectMapper;
+    private final PipelineMetrics pipelineMetrics;
+    private final boolean enabled;
+    private final EventRing<MessageEvent> ring;
+    private final long drainIntervalNanos;
+    private final double payloadSampleRate;
+    private final int payloadMaxChars;
+
+    private Thread drainer;
+    private volatile boolean running;
+
+    public MessageEventLog(ObjectMapper objectMapper,
+                           PipelineMetrics pipelineMetrics,
+                           @Value("${app.events.enabled:true}") boolean enabled,
+                           @Value("${app.events.buffer-size:8192}") int bufferSize,
+                           @Value("${app.events.drain-interval-ms:50}") long drainIntervalMillis,
+                           @Value("${app.events.payload.sample-rate:0.01}") double payloadSampleRate,
+                           @Value("${app.events.payload.max-chars:256}") int payloadMaxChars) {
+        this.objectMapper = objectMapper;
+        this.pipelineMetrics = pipelineMetrics;
+        this.enabled = enabled;
+        this.ring = new EventRing<>(bufferSize);
+        this.drainIntervalNanos = TimeUnit.MILLISECONDS.toNanos(drainIntervalMillis);
+        this.payloadSampleRate = payloadSampleRate;
+        this.payloadMaxChars = payloadMaxChars;
+        pipelineMetrics.registerEventBuffer(ring::size);
+    }
+
+    /**
+     * Starts timing a message.
+     *
+     * @param body the message body as logged, sampled into the event's payload
+     */
+    public Recording begin(String route, String jmsMessageId, int batchSize, String body) {
+        return new Recording(route, jmsMessageId, batchSize, samplePayload(body));
+    }
+
+    String samplePayload(String body) {
+        if (!enabled || body == null || payloadSampleRate <= 0
+            || payloadSampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= payloadSampleRate) {
+            return null;
+        }
+        return body.length() > payloadMaxChars ? body.substring(0, payloadMaxChars) + "..." : body;
+    }
+
+    /**
+     * Completes the event of a message and queues it for writing, or drops it if the buffer is
+     * full.
+     *
+     * @param cause failure cause of an {@code invalid} or {@code failed} message, otherwise {@code null}
+     */
+    public void finish(Recording recording, String outcome, String cause) {
+        if (!enabled) {
+            return;
+        }
+        MessageEvent event = new MessageEvent(recording.timestamp, recording.route, recording.messageId,
+                                              recording.jmsMessageId, recording.batchSize, outcome, cause,
+                                              micros(recording.extractNanos), micros(recording.persistNanos),
+                                              micros(recording.publishNanos),
+                                              micros(System.nanoTime() - recording.start), recording.payload);
+        if (!ring.offer(event)) {
+            pipelineMetrics.recordEventDropped();
+        }
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * Phase timings of one message, filled in by the thread processing it.
+     */
+    public static final class Recording {
+
+        private final long timestamp = System.currentTimeMillis();
+        private final long start = System.nanoTime();
+        private final String route;
+        private final String jmsMessageId;
+        private final int batchSize;
+        private final String payload;
+        private long mark = start;
+        private String messageId;
+        private long extractNanos;
+        private long persistNanos;
+        private long publishNanos;
+
+        private Recording(String route, String jmsMessageId, int batchSize, String payload) {
+            this.route = route;
+            this.jmsMessageId = jmsMessageId;
+            this.batchSize = batchSize;
+            this.payload = payload;
+        }
+
+        private long lap() {
+            long now = System.nanoTime();
+            long elapsed = now - mark;
+            mark = now;
+            return elapsed;
+        }
+
+        public void extracted(String messageId) {
+            this.messageId = messageId;
+            this.extractNanos = lap();
+        }
+
+        public void persisted() {
+            this.persistNanos = lap();
+        }
+
+        public void published() {
+            this.publishNanos = lap();
+        }
+
+        /**
+         * Sets the persist and publish times of a batch the message was part of.
+         */
+        public void batchCompleted(long persistNanos, long publishNanos) {
+            this.persistNanos = persistNanos;
+            this.publishNanos = publishNanos;
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running || !enabled) {
+            return;
+        }
+        running = true;
+        drainer = new Thread(this::drainLoop, "message-events");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.NANOSECONDS.toMillis(drainIntervalNanos) + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Stops after the listener containers, so the events of their last messages are written
+        return SmartLifecycle.DEFAULT_PHASE - 1;
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(drainIntervalNanos);
+            }
+        }
+        drain();
+    }
+
+    int drain() {
+        int written = 0;
+        MessageEvent event;
+        while ((event = ring.poll()) != null) {
+            write(event);
+            written++;
+        }
+        return written;
+    }
+
+    private void write(MessageEvent event) {
+        if (!events.isInfoEnabled()) {
+            return;
+        }
+        try {
+            events.info(objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            logger.warn("Cannot write event of message {}", event.messageId(), e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.atomikos.metrics;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Records the total duration of each new transaction, from begin until completion,
+ * tagged with its outcome.
+ */
+class MeteredTransactionManager implements PlatformTransactionManager {
+
+    private final PlatformTransactionManager delegate;
+    private final PipelineMetrics metrics;
+
+    MeteredTransactionManager(PlatformTransactionManager delegate, PipelineMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) throws TransactionException {
+        long start = System.nanoTime();
+        TransactionStatus status = delegate.getTransaction(definition);
+        if (status.isNewTransaction() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int completionStatus) {
+                    String outcome = switch (completionStatus) {
+                        case STATUS_COMMITTED -> "commit";
+                        case STATUS_ROLLED_BACK -> "rollback";
+                        default -> "unknown";
+                    };
+                    metrics.recordTransaction(outcome, System.nanoTime() - start);
+                }
+            });
+        }
+        return status;
+    }
+
+    @Override
+    public void commit(TransactionStatus status) throws TransactionException {
+        delegate.commit(status);
+    }
+
+    @Override
+    public void rollback(TransactionStatus status) throws TransactionException {
+        delegate.rollback(status);
+    }
+}
@@ -0,0 +1,425 @@
+package com.example.atomikos.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.XAConnectionFactory;
+import javax.sql.DataSource;
+import javax.sql.XADataSource;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Per-phase timings and counters for the message pipeline, published through Micrometer:
+ * <ul>
+ *   <li>{@code app.message.json.parse}, {@code app.message.repository.save}, {@code app.message.jms.send}</li>
+ *   <li>{@code app.xa.prepare}, {@code app.xa.commit}, {@code app.xa.rollback} per XA resource</li>
+ *   <li>{@code app.transaction.total} per outcome</li>
+ *   <li>{@code app.pool.lease}, {@code app.pool.active}, {@code app.pool.idle}, {@code app.pool.max} per pool</li>
+ *   <li>{@code app.message.rollback}, {@code app.message.redelivery} and {@code app.message.dead_letter} per failure cause</li>
+ *   <li>{@code app.retention.rows} and {@code app.retention.run} per retention action</li>
+ *   <li>{@code app.xa.log.write} per log store and record state, {@code app.xa.log.force},
+ *       {@code app.xa.log.checkpoint}, {@code app.xa.recovery} per XA resource and
+ *       {@code app.xa.recovery.pending} for the transaction log</li>
+ *   <li>{@code app.events.dropped} and {@code app.events.pending} for the message event log</li>
+ *   <li>{@code app.route.capacity.wait} per route</li>
+ * </ul>
+ *
+ * <p>Meters are kept in a composite registry that Spring Boot binds to the application registry
+ * once it exists. The data sources and connection factories instrumented here are needed to
+ * create the application registry itself, so it cannot be injected. Meters are built once, those
+ * with tags once per tag combination, so recording on the message path only updates them.
+ */
+@Component
+public class PipelineMetrics implements MeterBinder {
+
+    private static final int MAX_REMEMBERED_FAILURES = 1000;
+
+    private final CompositeMeterRegistry meterRegistry = new CompositeMeterRegistry();
+    private final Timer jsonParseTimer;
+    private final Timer repositorySaveTimer;
+    private final Timer jmsSendTimer;
+    private final Counter compressedCharsCounter;
+    private final Counter compressedBytesCounter;
+    private final Timer compressTimer;
+    private final Counter replayedCounter;
+    private final Timer logForceTimer;
+    private final DistributionSummary logForceRecords;
+    private final Timer logCheckpointTimer;
+    private final DistributionSummary logCheckpointRecords;
+    private final Counter eventsDroppedCounter;
+
+    private final Map<String, Counter> rollbackCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> redeliveryCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> deadLetterCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> retentionRowsCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> retentionRunTimers = new ConcurrentHashMap<>();
+    private final Map<List<String>, Timer> logWriteTimers = new ConcurrentHashMap<>();
+    private final Map<List<String>, Timer> recoveryTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> capacityWaitTimers = new ConcurrentHashMap<>();
+    private final Map<List<String>, Timer> xaTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> transactionTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> leaseTimers = new ConcurrentHashMap<>();
+
+    private final LongAdder transactionCount = new LongAdder();
+    private final LongAdder transactionNanos = new LongAdder();
+    private final LongAdder leaseCount = new LongAdder();
+    private final LongAdder leaseNanos = new LongAdder();
+
+    // Failure cause per JMS message ID, so a redelivery can be attributed to the rollback that caused it
+    private final Map<String, String> failureCauses = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_REMEMBERED_FAILURES;
+        }
+    };
+
+    public PipelineMetrics() {
+        this.jsonParseTimer = timer("app.message.json.parse", "JSON field extraction");
+        this.repositorySaveTimer = timer("app.message.repository.save", "MESSAGE_DATA insert");
+        this.jmsSendTimer = timer("app.message.jms.send", "Output message publish");
+        this.compressedCharsCounter = Counter.builder("app.payload.content.chars")
+                .description("Characters of message content compressed before storing")
+                .register(meterRegistry);
+        this.compressedBytesCounter = Counter.builder("app.payload.content.compressed_bytes")
+                .description("Bytes stored for compressed message content")
+                .register(meterRegistry);
+        this.compressTimer = Timer.builder("app.payload.compress")
+                .description("Time to compress message content")
+                .register(meterRegistry);
+        this.replayedCounter = Counter.builder("app.replay.messages")
+                .description("Stored messages re-published by replays")
+                .register(meterRegistry);
+        this.logForceTimer = Timer.builder("app.xa.log.force")
+                .description("Time to write and force a group of transaction log records")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.logForceRecords = DistributionSummary.builder("app.xa.log.force.records")
+                .description("Transaction log records per forced write")
+                .register(meterRegistry);
+        this.logCheckpointTimer = Timer.builder("app.xa.log.checkpoint")
+                .description("Time to rewrite the transaction log with the pending records")
+                .register(meterRegistry);
+        this.logCheckpointRecords = DistributionSummary.builder("app.xa.log.checkpoint.records")
+                .description("Pending records written by a transaction log checkpoint")
+                .register(meterRegistry);
+        this.eventsDroppedCounter = Counter.builder("app.events.dropped")
+                .description("Message events dropped because the event buffer was full")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        meterRegistry.add(registry);
+    }
+
+    private Timer timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public void recordJsonParse(long nanos) {
+        jsonParseTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRepositorySave(long nanos) {
+        repositorySaveTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordJmsSend(long nanos) {
+        jmsSendTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a processing failure that rolls back the transaction.
+     *
+     * @param cause         failure category, e.g. {@code invalid_json} or {@code database}
+     * @param jmsMessageIds IDs of the messages rolled back with it
+     */
+    public void recordRollback(String cause, Collection<String> jmsMessageIds) {
+        rollbackCounters.computeIfAbsent(cause, key -> Counter.builder("app.message.rollback")
+                        .tag("cause", key)
+                        .register(meterRegistry))
+                .increment();
+        synchronized (failureCauses) {
+            for (String jmsMessageId : jmsMessageIds) {
+                if (jmsMessageId != null) {
+                    failureCauses.put(jmsMessageId, cause);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts a redelivered message, tagged with the cause of the rollback that preceded it
+     * when that rollback happened in this instance.
+     */
+    public void recordRedelivery(String jmsMessageId) {
+        String cause;
+        synchronized (failureCauses) {
+            cause = jmsMessageId != null ? failureCauses.remove(jmsMessageId) : null;
+        }
+        redeliveryCounters.computeIfAbsent(cause != null ? cause : "unknown",
+                        key -> Counter.builder("app.message.redelivery")
+                                .tag("cause", key)
+                                .register(meterRegistry))
+                .increment();
+    }
+
+    /**
+     * Counts a message moved to the dead-letter queue.
+     *
+     * @param cause failure category, or {@code backout_threshold} for a message that kept failing
+     */
+    public void recordDeadLetter(String cause) {
+        deadLetterCounters.computeIfAbsent(cause, key -> Counter.builder("app.message.dead_letter")
+                        .tag("cause", key)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    /**
+     * Records the compression of one message content, so CPU time can be weighed against the
+     * bytes saved in the database.
+     */
+    public void recordCompression(long chars, long compressedBytes, long nanos) {
+        compressedCharsCounter.increment(chars);
+        compressedBytesCounter.increment(compressedBytes);
+        compressTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts stored messages re-published by a replay.
+     */
+    public void recordReplayed(int messages) {
+        replayedCounter.increment(messages);
+    }
+
+    /**
+     * Records one run of the retention job.
+     *
+     * @param action {@code drop_partition}, {@code delete} or {@code archive}
+     * @param rows   rows purged by the run
+     */
+    public void recordRetentionRun(String action, long rows, long nanos) {
+        retentionRowsCounters.computeIfAbsent(action, key -> Counter.builder("app.retention.rows")
+                        .description("MESSAGE_DATA rows purged by the retention job")
+                        .tag("action", key)
+                        .register(meterRegistry))
+                .increment(rows);
+        retentionRunTimers.computeIfAbsent(action, key -> Timer.builder("app.retention.run")
+                        .description("Retention job run time")
+                        .tag("action", key)
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the write of one transaction log record, including the wait for it to be forced.
+     *
+     * @param store log store, see {@code app.transaction.log.store}
+     * @param state transaction state logged, e.g. {@code COMMITTING}
+     */
+    public void recordLogWrite(String store, String state, long nanos) {
+        logWriteTimers.computeIfAbsent(List.of(store, state), key -> Timer.builder("app.xa.log.write")
+                        .description("Time to write a transaction log record")
+                        .tag("store", store)
+                        .tag("state", state)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records one forced write of the transaction log and the records it made durable.
+     */
+    public void recordLogForce(int records, long nanos) {
+        logForceTimer.record(nanos, TimeUnit.NANOSECONDS);
+        logForceRecords.record(records);
+    }
+
+    /**
+     * Records a checkpoint of the transaction log.
+     *
+     * @param records pending records written to the new log file
+     */
+    public void recordLogCheckpoint(int records, long nanos) {
+        logCheckpointTimer.record(nanos, TimeUnit.NANOSECONDS);
+        logCheckpointRecords.record(records);
+    }
+
+    /**
+     * Records the recovery of one XA resource.
+     *
+     * @param outcome {@code recovered}, {@code incomplete} or {@code failed}
+     */
+    public void recordRecovery(String resource, String outcome, long nanos) {
+        recoveryTimers.computeIfAbsent(List.of(resource, outcome), key -> Timer.builder("app.xa.recovery")
+                        .description("Time to recover the in-doubt transactions of an XA resource")
+                        .tag("resource", resource)
+                        .tag("outcome", outcome)
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Registers a gauge of the transactions pending in the transaction log.
+     */
+    public void registerPendingTransactions(IntSupplier pending) {
+        Gauge.builder("app.xa.recovery.pending", pending::getAsInt)
+                .description("Transactions pending in the transaction log")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the time a transaction of a route waited for XA capacity to be released.
+     */
+    public void recordCapacityWait(String route, long nanos) {
+        capacityWaitTimers.computeIfAbsent(route, key -> Timer.builder("app.route.capacity.wait")
+                        .description("Time a transaction waited for a connection slot of its route")
+                        .tag("route", key)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a message event dropped because the event buffer was full.
+     */
+    public void recordEventDropped() {
+        eventsDroppedCounter.increment();
+    }
+
+    /**
+     * Registers a gauge of the message events waiting to be written.
+     */
+    public void registerEventBuffer(IntSupplier pending) {
+        Gauge.builder("app.events.pending", pending::getAsInt)
+                .description("Message events waiting to be written")
+                .register(meterRegistry);
+    }
+
+    void recordXa(String phase, String resource, boolean onePhase, long nanos) {
+        xaTimers.computeIfAbsent(List.of(phase, resource, String.valueOf(onePhase)),
+                        key -> Timer.builder("app.xa." + phase)
+                                .tag("resource", resource)
+                                .tag("onePhase", String.valueOf(onePhase))
+                                .publishPercentileHistogram()
+                                .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordTransaction(String outcome, long nanos) {
+        transactionTimers.computeIfAbsent(outcome, key -> Timer.builder("app.transaction.total")
+                        .tag("outcome", key)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        transactionCount.increment();
+        transactionNanos.add(nanos);
+    }
+
+    void recordLease(String pool, long nanos) {
+        leaseTimers.computeIfAbsent(pool, key -> Timer.builder("app.pool.lease")
+                        .description("Time to obtain a pooled connection")
+                        .tag("pool", key)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        leaseCount.increment();
+        leaseNanos.add(nanos);
+    }
+
+    /**
+     * Cumulative transaction and connection lease totals over all pools since startup.
+     */
+    public Totals totals() {
+        return new Totals(transactionCount.sum(), transactionNanos.sum(), leaseCount.sum(), leaseNanos.sum());
+    }
+
+    /**
+     * Cumulative totals; the difference of two snapshots describes the interval between them.
+     */
+    public record Totals(long transactions, long transactionNanos, long leases, long leaseNanos) {
+
+        public Totals since(Totals earlier) {
+            return new Totals(transactions - earlier.transactions, transactionNanos - earlier.transactionNanos,
+                              leases - earlier.leases, leaseNanos - earlier.leaseNanos);
+        }
+
+        public double meanTransactionMillis() {
+            return transactions > 0 ? transactionNanos / 1e6 / transactions : 0;
+        }
+
+        public double meanLeaseMillis() {
+            return leases > 0 ? leaseNanos / 1e6 / leases : 0;
+        }
+    }
+
+    /**
+     * Registers active, idle and maximum connection gauges for a pool.
+     */
+    public void registerPool(String pool, IntSupplier available, IntSupplier total, IntSupplier max) {
+        Gauge.builder("app.pool.active", () -> total.getAsInt() - available.getAsInt())
+                .tag("pool", pool)
+                .register(meterRegistry);
+        Gauge.builder("app.pool.idle", available::getAsInt)
+                .tag("pool", pool)
+                .register(meterRegistry);
+        Gauge.builder("app.pool.max", max::getAsInt)
+                .tag("pool", pool)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Wraps an XA data source so prepare, commit and rollback of its XA resources are timed.
+     */
+    public XADataSource instrument(String resource, XADataSource xaDataSource) {
+        return XaInstrumentation.instrument(xaDataSource, xaResource -> new TimedXaResource(xaResource, resource, this));
+    }
+
+    /**
+     * Wraps an XA connection factory so prepare, commit and rollback of its XA resources are timed.
+     */
+    public XAConnectionFactory instrument(String resource, XAConnectionFactory xaConnectionFactory) {
+        return XaInstrumentation.instrument(xaConnectionFactory,
+                xaResource -> new TimedXaResource(xaResource, resource, this));
+    }
+
+    /**
+     * Wraps a pooled data source so the time to obtain a connection is recorded.
+     */
+    public DataSource leaseTimed(String pool, DataSource dataSource) {
+        return new LeaseTimingDataSource(dataSource, pool, this);
+    }
+
+    /**
+     * Wraps a pooled connection factory so the time to obtain a connection is recorded.
+     */
+    public ConnectionFactory leaseTimed(String pool, ConnectionFactory connectionFactory) {
+        return new LeaseTimingConnectionFactory(connectionFactory, pool, this);
+    }
+
+    /**
+     * Wraps a transaction manager so the total time of each transaction is recorded.
+     */
+    public PlatformTransactionManager instrument(PlatformTransactionManager transactionManager) {
+        return new MeteredTransactionManager(transactionManager, this);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.atomikos.metrics;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+/**
+ * XA resource decorator that times prepare, commit and rollback.
+ */
+class TimedXaResource implements XAResource {
+
+    private final XAResource delegate;
+    private final String resource;
+    private final PipelineMetrics metrics;
+
+    TimedXaResource(XAResource delegate, String resource, PipelineMetrics metrics) {
+        this.delegate = delegate;
+        this.resource = resource;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int prepare(Xid xid) throws XAException {
+        long start = System.nanoTime();
+        try {
+            return delegate.prepare(xid);
+        } finally {
+            metrics.recordXa("prepare", resource, false, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void commit(Xid xid, boolean onePhase) throws XAException {
+        long start = System.nanoTime();
+        try {
+            delegate.commit(xid, onePhase);
+        } finally {
+            metrics.recordXa("commit", resource, onePhase, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void rollback(Xid xid) throws XAException {
+        long start = System.nanoTime();
+        try {
+            delegate.rollback(xid);
+        } finally {
+            metrics.recordXa("rollback", resource, false, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void start(Xid xid, int flags) throws XAException {
+        delegate.start(xid, flags);
+    }
+
+    @Override
+    public void end(Xid xid, int flags) throws XAException {
+        delegate.end(xid, flags);
+    }
+
+    @Override
+    public void forget(Xid xid) throws XAException {
+        delegate.forget(xid);
+    }
+
+    @Override
+    public Xid[] recover(int flag) throws XAException {
+        return delegate.recover(flag);
+    }
+
+    @Override
+    public boolean isSameRM(XAResource other) throws XAException {
+        XAResource otherResource = other instanceof TimedXaResource timed ? timed.delegate : other;
+        return delegate.isSameRM(otherResource);
+    }
+
+    @Override
+    public int getTransactionTimeout() throws XAException {
+        return delegate.getTransactionTimeout();
+    }
+
+    @Override
+    public boolean setTransactionTimeout(int seconds) throws XAException {
+        return delegate.setTransactionTimeout(seconds);
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
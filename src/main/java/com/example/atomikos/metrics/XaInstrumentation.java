@@ -0,0 +1,81 @@
+package com.example.atomikos.metrics;
+
+import javax.jms.XAConnectionFactory;
+import javax.jms.XASession;
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
+import javax.transaction.xa.XAResource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.function.UnaryOperator;
+
+/**
+ * Dynamic proxies that hand out decorated {@link XAResource}s from JDBC and JMS XA factories,
+ * leaving every other call untouched.
+ */
+final class XaInstrumentation {
+
+    private XaInstrumentation() {
+    }
+
+    static XADataSource instrument(XADataSource xaDataSource, UnaryOperator<XAResource> decorator) {
+        return proxy(XADataSource.class, xaDataSource, (method, result) ->
+                result instanceof XAConnection xaConnection
+                        ? proxy(XAConnection.class, xaConnection, decorateXaResource(decorator))
+                        : result);
+    }
+
+    static XAConnectionFactory instrument(XAConnectionFactory xaConnectionFactory, UnaryOperator<XAResource> decorator) {
+        return proxy(XAConnectionFactory.class, xaConnectionFactory, (method, result) ->
+                result instanceof javax.jms.XAConnection xaConnection
+                        ? proxy(javax.jms.XAConnection.class, xaConnection, (connectionMethod, session) ->
+                                session instanceof XASession xaSession
+                                        ? proxy(XASession.class, xaSession, decorateXaResource(decorator))
+                                        : session)
+                        : result);
+    }
+
+    /**
+     * Decorates the XA resource of one connection or session. The same decorator instance is
+     * returned for repeated calls, as the transaction manager tracks enlisted resources by identity.
+     */
+    private static ResultMapper decorateXaResource(UnaryOperator<XAResource> decorator) {
+        return new ResultMapper() {
+            private XAResource target;
+            private XAResource decorated;
+
+            @Override
+            public synchronized Object map(Method method, Object result) {
+                if (!(result instanceof XAResource xaResource)) {
+                    return result;
+                }
+                if (xaResource != target) {
+                    target = xaResource;
+                    decorated = decorator.apply(xaResource);
+                }
+                return decorated;
+            }
+        };
+    }
+
+    private static <T> T proxy(Class<T> type, T target, ResultMapper resultMapper) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().equals("equals") && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            try {
+                return resultMapper.map(method, method.invoke(target, args));
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    @FunctionalInterface
+    private interface ResultMapper {
+        Object map(Method method, Object result);
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.atomikos.repository;
+
+import com.example.atomikos.entity.MessageData;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Read-only queries over {@code MESSAGE_DATA} on the non-XA query pool. Lists use keyset
+ * pagination on {@code (CREATED_AT, ID)}, served by {@code IX_MESSAGE_DATA_STATUS_CREATED}
+ * and {@code IX_MESSAGE_DATA_CREATED}, so every page is an index range scan that starts where
+ * the previous page ended instead of skipping over an offset. Rows are handed to the caller as
+ * they are fetched. The LOB columns are never selected by lookups and lists.
+ */
+@Repository
+public class MessageDataQueryRepository {
+
+    private static final String COLUMNS =
+            "ID, MESSAGE_ID, STATUS, CREATED_AT, MESSAGE_CONTENT, " +
+            "CASE WHEN MESSAGE_CONTENT_LOB IS NULL AND CONTENT_ENCODING IS NULL THEN 0 ELSE 1 END AS LARGE_CONTENT";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MessageDataQueryRepository(@Qualifier("queryJdbcTemplate") JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * A stored message without its LOB content. {@code content} is {@code null} when the
+     * content is stored in the LOB column or compressed, as flagged by {@code largeContent}.
+     */
+    public record MessageRow(long id, String messageId, String status, LocalDateTime createdAt,
+                             String content, boolean largeContent) {
+    }
+
+    /**
+     * Position after which the next page starts.
+     */
+    public record Keyset(LocalDateTime createdAt, long id) {
+    }
+
+    /**
+     * The key columns of a stored message.
+     */
+    public record MessageKey(long id, String messageId, LocalDateTime createdAt) {
+
+        public Keyset keyset() {
+            return new Keyset(createdAt, id);
+        }
+    }
+
+    public Optional<MessageRow> findByMessageId(String messageId) {
+        List<MessageRow> rows = jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM MESSAGE_DATA WHERE MESSAGE_ID = ?",
+                (rs, rowNum) -> toRow(rs), messageId);
+        return rows.stream().findFirst();
+    }
+
+    /**
+     * Streams up to {@code limit} rows ordered by {@code (CREATED_AT, ID)}, optionally
+     * restricted to a status and a {@code [from, to)} creation time range.
+     *
+     * @param after position of the last row of the previous page, {@code null} for the first page
+     */
+    public void streamPage(String status, LocalDateTime from, LocalDateTime to, Keyset after, int limit,
+                           Consumer<MessageRow> consumer) {
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT " + COLUMNS + " FROM MESSAGE_DATA" + where(status, from, to, after, args) +
+                     " ORDER BY CREATED_AT, ID FETCH FIRST ? ROWS ONLY";
+        args.add(limit);
+
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> consumer.accept(toRow(rs)), args.toArray());
+    }
+
+    /**
+     * Streams the keys of up to {@code limit} rows in the same order and with the same filters
+     * as {@link #streamPage}. Only the index columns and {@code MESSAGE_ID} are read, fetching
+     * {@code fetchSize} rows per round trip instead of the template's default.
+     */
+    public void streamKeys(String status, LocalDateTime from, LocalDateTime to, Keyset after, int limit,
+                           int fetchSize, Consumer<MessageKey> consumer) {
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT ID, MESSAGE_ID, CREATED_AT FROM MESSAGE_DATA" + where(status, from, to, after, args) +
+                     " ORDER BY CREATED_AT, ID FETCH FIRST ? ROWS ONLY";
+        args.add(limit);
+
+        // The template applies its own fetch size before the setter runs, so the setter overrides it
+        jdbcTemplate.query(sql, ps -> {
+            ps.setFetchSize(fetchSize);
+            new ArgumentPreparedStatementSetter(args.toArray()).setValues(ps);
+        }, (RowCallbackHandler) rs -> consumer.accept(new MessageKey(
+                rs.getLong("ID"), rs.getString("MESSAGE_ID"), rs.getObject("CREATED_AT", LocalDateTime.class))));
+    }
+
+    private static String where(String status, LocalDateTime from, LocalDateTime to, Keyset after, List<Object> args) {
+        List<String> conditions = new ArrayList<>();
+        if (status != null) {
+            conditions.add("STATUS = ?");
+            args.add(status);
+        }
+        if (from != null) {
+            conditions.add("CREATED_AT >= ?");
+            args.add(from);
+        }
+        if (to != null) {
+            conditions.add("CREATED_AT < ?");
+            args.add(to);
+        }
+        if (after != null) {
+            conditions.add("(CREATED_AT > ? OR (CREATED_AT = ? AND ID > ?))");
+            args.add(after.createdAt());
+            args.add(after.createdAt());
+            args.add(after.id());
+        }
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    /**
+     * Copies the content of a message to {@code writer}, streaming it from the LOB column when
+     * it is stored there and decompressing it as it is read when it is compressed.
+     *
+     * @return {@code false} if no message with this messageId exists
+     */
+    public boolean copyContent(String messageId, Writer writer) {
+        Boolean found = jdbcTemplate.query(
+                "SELECT MESSAGE_CONTENT, MESSAGE_CONTENT_LOB, CONTENT_ENCODING, MESSAGE_CONTENT_COMPRESSED " +
+                "FROM MESSAGE_DATA WHERE MESSAGE_ID = ?",
+                rs -> {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    try {
+                        String contentEncoding = rs.getString("CONTENT_ENCODING");
+                        Reader lob = contentEncoding != null
+                                ? MessageData.decompress(contentEncoding, rs.getBinaryStream("MESSAGE_CONTENT_COMPRESSED"))
+                                : rs.getCharacterStream("MESSAGE_CONTENT_LOB");
+                        if (lob != null) {
+                            try (lob) {
+                                lob.transferTo(writer);
+                            }
+                        } else {
+                            String content = rs.getString("MESSAGE_CONTENT");
+                            if (content != null) {
+                                writer.write(content);
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return true;
+                }, messageId);
+        return Boolean.TRUE.equals(found);
+    }
+
+    private static MessageRow toRow(ResultSet rs) throws SQLException {
+        return new MessageRow(rs.getLong("ID"), rs.getString("MESSAGE_ID"), rs.getString("STATUS"),
+                              rs.getObject("CREATED_AT", LocalDateTime.class), rs.getString("MESSAGE_CONTENT"),
+                              rs.getInt("LARGE_CONTENT") == 1);
+    }
+}
@@ -5,5 +5,5 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface MessageDataRepository extends JpaRepository<MessageData, Long> {
+public interface MessageDataRepository extends JpaRepository<MessageData, Long>, MessageDataRepositoryCustom {
 }
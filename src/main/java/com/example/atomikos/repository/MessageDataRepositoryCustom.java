@@ -0,0 +1,24 @@
+package com.example.atomikos.repository;
+
+import com.example.atomikos.entity.MessageData;
+
+import java.util.List;
+
+public interface MessageDataRepositoryCustom {
+
+    /**
+     * Persists the given entities in the current transaction, flushing and clearing the
+     * persistence context every JDBC batch so inserts are sent as batched statements.
+     */
+    void saveAllInBatches(List<MessageData> messages);
+
+    /**
+     * Inserts the message with a single {@code MERGE} unless a row with the same messageId
+     * already exists. The ID is taken from the entity's sequence generator like for a persist,
+     * and is left unused for a duplicate. A concurrent insert of the same messageId that the {@code MERGE} could not
+     * see fails on the unique index and is reported as a duplicate as well.
+     *
+     * @return {@code true} if the row was inserted, {@code false} for a duplicate
+     */
+    boolean insertIfAbsent(MessageData message);
+}
@@ -0,0 +1,107 @@
+package com.example.atomikos.repository;
+
+import com.example.atomikos.entity.MessageData;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+public class MessageDataRepositoryImpl implements MessageDataRepositoryCustom {
+
+    private static final int ORACLE_UNIQUE_VIOLATION = 1;
+    private static final String MESSAGE_ID_INDEX = "UX_MESSAGE_DATA_MESSAGE_ID";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final int batchSize;
+
+    public MessageDataRepositoryImpl(@Value("${app.jpa.batch-size:50}") int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void saveAllInBatches(List<MessageData> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            entityManager.persist(messages.get(i));
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Override
+    public boolean insertIfAbsent(MessageData message) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        // The entity's own generator, so the pooled-lo optimizer hands out IDs from its block of
+        // the sequence instead of a NEXTVAL, and a whole block, per row
+        long id = ((Number) session.getEntityPersister(null, message).getIdentifierGenerator()
+                .generate(session, message)).longValue();
+        // Plain JDBC on the session's connection: a unique violation converted by Hibernate
+        // would mark the JTA transaction rollback-only, Oracle only rolls back the statement
+        return session.doReturningWork(connection -> merge(connection, id, message));
+    }
+
+    static boolean merge(Connection connection, long id, MessageData message) throws SQLException {
+        String contentColumns = message.isCompressed() ? "CONTENT_ENCODING, MESSAGE_CONTENT_COMPRESSED"
+                : message.hasLargeContent() ? "MESSAGE_CONTENT_LOB" : "MESSAGE_CONTENT";
+        String contentValues = message.isCompressed() ? "?, ?" : "?";
+        try (PreparedStatement merge = connection.prepareStatement(
+                "MERGE INTO MESSAGE_DATA t " +
+                "USING (SELECT CAST(? AS VARCHAR2(255)) AS MESSAGE_ID FROM DUAL) s " +
+                "ON (t.MESSAGE_ID = s.MESSAGE_ID) " +
+                "WHEN NOT MATCHED THEN INSERT (ID, MESSAGE_ID, " + contentColumns + ", CREATED_AT, STATUS) " +
+                "VALUES (?, s.MESSAGE_ID, " + contentValues + ", ?, ?)")) {
+            int index = 1;
+            merge.setString(index++, message.getMessageId());
+            merge.setLong(index++, id);
+            if (message.isCompressed()) {
+                Blob content = message.getCompressedContent();
+                merge.setString(index++, message.getContentEncoding());
+                merge.setBinaryStream(index++, content.getBinaryStream(), content.length());
+            } else if (message.hasLargeContent()) {
+                // Bound as a character stream so the content is not materialized as a String
+                Clob content = message.getLargeContent();
+                merge.setCharacterStream(index++, content.getCharacterStream(), content.length());
+            } else {
+                merge.setString(index++, message.getMessageContent());
+            }
+            merge.setTimestamp(index++, Timestamp.valueOf(message.getCreatedAt()));
+            merge.setString(index, message.getStatus());
+            return merge.executeUpdate() > 0;
+        } catch (SQLException e) {
+            if (isMessageIdViolation(e)) {
+                // A concurrent transaction inserted the messageId after the MERGE looked for it
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the exception or one of its causes is a unique violation of
+     * {@code UX_MESSAGE_DATA_MESSAGE_ID}, which is {@code ORA-00001} on Oracle and SQLState
+     * 23505 on databases following the standard.
+     */
+    public static boolean isMessageIdViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException
+                    && (sqlException.getErrorCode() == ORACLE_UNIQUE_VIOLATION || "23505".equals(sqlException.getSQLState()))
+                    && sqlException.getMessage() != null && sqlException.getMessage().contains(MESSAGE_ID_INDEX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
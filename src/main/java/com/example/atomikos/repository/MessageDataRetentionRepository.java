@@ -0,0 +1,127 @@
+package com.example.atomikos.repository;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Removes expired rows from {@code MESSAGE_DATA} on the retention pool, either by dropping
+ * whole {@code CREATED_AT} range partitions or by deleting small batches of rows. Each batch is
+ * its own short local transaction. Ingest transactions never touch expired rows, so a batch only
+ * waits for a concurrent batch of another instance.
+ */
+@Repository
+@ConditionalOnProperty(name = "app.retention.enabled", havingValue = "true")
+public class MessageDataRetentionRepository {
+
+    // Oracle limits IN lists to 1000 expressions
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    // HIGH_VALUE of a DATE or TIMESTAMP range partition, e.g. TIMESTAMP' 2025-11-07 00:00:00'
+    private static final Pattern HIGH_VALUE = Pattern.compile("(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2})");
+    private static final DateTimeFormatter HIGH_VALUE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public MessageDataRetentionRepository(@Qualifier("retentionJdbcTemplate") JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+    }
+
+    /**
+     * A range partition of {@code MESSAGE_DATA} holding rows created before {@code highValue}.
+     */
+    public record Partition(String name, LocalDateTime highValue) {
+    }
+
+    /**
+     * Whether {@code MESSAGE_DATA} is partitioned. Databases without Oracle's data dictionary
+     * views report it as not partitioned.
+     */
+    public boolean isPartitioned() {
+        try {
+            Integer count = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM USER_PART_TABLES WHERE TABLE_NAME = 'MESSAGE_DATA'", Integer.class);
+            return count != null && count > 0;
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Partitions whose rows were all created before {@code cutoff}, oldest first.
+     */
+    public List<Partition> findExpiredPartitions(LocalDateTime cutoff) {
+        List<Partition> expired = new ArrayList<>();
+        jdbcTemplate.query("SELECT PARTITION_NAME, HIGH_VALUE FROM USER_TAB_PARTITIONS " +
+                           "WHERE TABLE_NAME = 'MESSAGE_DATA' ORDER BY PARTITION_POSITION",
+                rs -> {
+                    LocalDateTime highValue = parseHighValue(rs.getString("HIGH_VALUE"));
+                    if (highValue != null && !highValue.isAfter(cutoff)) {
+                        expired.add(new Partition(rs.getString("PARTITION_NAME"), highValue));
+                    }
+                });
+        return expired;
+    }
+
+    static LocalDateTime parseHighValue(String highValue) {
+        if (highValue == null) {
+            return null;
+        }
+        Matcher matcher = HIGH_VALUE.matcher(highValue);
+        return matcher.find() ? LocalDateTime.parse(matcher.group(1), HIGH_VALUE_FORMAT) : null;
+    }
+
+    /**
+     * Drops a partition, keeping the global indexes usable.
+     *
+     * @return the number of rows the partition held
+     */
+    public long dropPartition(Partition partition) {
+        String name = "\"" + partition.name().replace("\"", "") + "\"";
+        Long rows = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM MESSAGE_DATA PARTITION (" + name + ")", Long.class);
+        jdbcTemplate.execute("ALTER TABLE MESSAGE_DATA DROP PARTITION " + name + " UPDATE INDEXES");
+        return rows != null ? rows : 0;
+    }
+
+    /**
+     * Deletes up to {@code batchSize} rows created before {@code cutoff} in one local transaction,
+     * copying them to {@code archiveTable} first when it is not {@code null}. The archive table
+     * must have the columns of {@code MESSAGE_DATA} in the same order.
+     *
+     * @return the number of rows deleted
+     */
+    public int purgeBatch(LocalDateTime cutoff, int batchSize, String archiveTable) {
+        int limit = Math.min(batchSize, MAX_BATCH_SIZE);
+        Integer purged = transactionTemplate.execute(status -> {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT ID FROM MESSAGE_DATA WHERE CREATED_AT < ? AND ROWNUM <= ? FOR UPDATE",
+                    Long.class, cutoff, limit);
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            String in = " WHERE ID IN (" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+            Object[] args = ids.toArray();
+            if (archiveTable != null) {
+                jdbcTemplate.update("INSERT INTO " + archiveTable + " SELECT * FROM MESSAGE_DATA" + in, args);
+            }
+            return jdbcTemplate.update("DELETE FROM MESSAGE_DATA" + in, args);
+        });
+        return purged != null ? purged : 0;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.atomikos.repository;
+
+import com.example.atomikos.entity.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Pending outbox rows. Rows are deleted once they have been published, so the table only
+ * holds the backlog and the primary key is the index the relay reads it in order by.
+ */
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long>, OutboxMessageRepositoryCustom {
+}
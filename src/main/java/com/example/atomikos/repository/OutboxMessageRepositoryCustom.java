@@ -0,0 +1,14 @@
+package com.example.atomikos.repository;
+
+import com.example.atomikos.entity.OutboxMessage;
+
+import java.util.List;
+
+public interface OutboxMessageRepositoryCustom {
+
+    /**
+     * Locks the {@code limit} oldest pending rows, in insertion order. Rows locked by another
+     * relay instance are skipped, so several instances can drain the outbox concurrently.
+     */
+    List<OutboxMessage> lockPending(int limit);
+}
@@ -0,0 +1,35 @@
+package com.example.atomikos.repository;
+
+import com.example.atomikos.entity.OutboxMessage;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.NativeQuery;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OutboxMessageRepositoryImpl implements OutboxMessageRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<OutboxMessage> lockPending(int limit) {
+        // A ROWNUM or FETCH FIRST limit would be applied before SKIP LOCKED and return nothing
+        // while another instance holds the oldest rows. With SKIP LOCKED Oracle locks rows as
+        // they are fetched, so the limit is the fetch size and the cursor is closed after it.
+        NativeQuery<?> query = entityManager.createNativeQuery(
+                        "SELECT * FROM OUTBOX_MESSAGE ORDER BY ID FOR UPDATE SKIP LOCKED", OutboxMessage.class)
+                .unwrap(NativeQuery.class)
+                .setFetchSize(limit);
+        List<OutboxMessage> pending = new ArrayList<>(limit);
+        try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (pending.size() < limit && results.next()) {
+                pending.add((OutboxMessage) results.get(0));
+            }
+        }
+        return pending;
+    }
+}
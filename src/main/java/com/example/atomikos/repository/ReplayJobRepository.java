@@ -0,0 +1,9 @@
+package com.example.atomikos.repository;
+
+import com.example.atomikos.entity.ReplayJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReplayJobRepository extends JpaRepository<ReplayJob, String> {
+}
@@ -0,0 +1,48 @@
+package com.example.atomikos.service;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the body of a {@link BytesMessage} as a stream, from its current position.
+ */
+final class BytesMessageInputStream extends InputStream {
+
+    private final BytesMessage message;
+    private byte[] transfer;
+
+    BytesMessageInputStream(BytesMessage message) {
+        this.message = message;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        try {
+            if (offset == 0) {
+                return message.readBytes(buffer, length);
+            }
+            // readBytes always fills from the start of the array
+            if (transfer == null || transfer.length < length) {
+                transfer = new byte[length];
+            }
+            int read = message.readBytes(transfer, length);
+            if (read > 0) {
+                System.arraycopy(transfer, 0, buffer, offset, read);
+            }
+            return read;
+        } catch (JMSException e) {
+            throw new IOException("Failed to read message body", e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.atomikos.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds message content of any size in fixed-size chunks, so a large payload is never copied
+ * into one contiguous array while it is collected, and is read back as a stream.
+ */
+public final class ContentBuffer extends Writer {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final List<char[]> chunks = new ArrayList<>();
+    private char[] current;
+    private int position = CHUNK_SIZE;
+    private long length;
+
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int count) {
+        while (count > 0) {
+            if (position == CHUNK_SIZE) {
+                current = new char[CHUNK_SIZE];
+                chunks.add(current);
+                position = 0;
+            }
+            int copied = Math.min(count, CHUNK_SIZE - position);
+            System.arraycopy(chars, offset, current, position, copied);
+            position += copied;
+            offset += copied;
+            count -= copied;
+            length += copied;
+        }
+    }
+
+    @Override
+    public void write(String str, int offset, int count) {
+        while (count > 0) {
+            if (position == CHUNK_SIZE) {
+                current = new char[CHUNK_SIZE];
+                chunks.add(current);
+                position = 0;
+            }
+            int copied = Math.min(count, CHUNK_SIZE - position);
+            str.getChars(offset, offset + copied, current, position);
+            position += copied;
+            offset += copied;
+            count -= copied;
+            length += copied;
+        }
+    }
+
+    @Override
+    public void write(int c) {
+        write(new char[]{(char) c}, 0, 1);
+    }
+
+    /**
+     * Copies everything from {@code reader} into this buffer.
+     */
+    public ContentBuffer transferFrom(Reader reader) throws IOException {
+        char[] buffer = new char[CHUNK_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            write(buffer, 0, read);
+        }
+        return this;
+    }
+
+    /**
+     * Returns a reader over the content written so far.
+     */
+    public Reader reader() {
+        return new Reader() {
+
+            private int chunk;
+            private int offset;
+            private long remaining = length;
+
+            @Override
+            public int read(char[] target, int targetOffset, int count) {
+                if (remaining == 0) {
+                    return -1;
+                }
+                int read = (int) Math.min(Math.min(count, CHUNK_SIZE - offset), remaining);
+                System.arraycopy(chunks.get(chunk), offset, target, targetOffset, read);
+                offset += read;
+                remaining -= read;
+                if (offset == CHUNK_SIZE) {
+                    chunk++;
+                    offset = 0;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder content = new StringBuilder((int) length);
+        long remaining = length;
+        for (char[] chunk : chunks) {
+            int count = (int) Math.min(CHUNK_SIZE, remaining);
+            content.append(chunk, 0, count);
+            remaining -= count;
+        }
+        return content.toString();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.atomikos.service;
+
+import com.example.atomikos.entity.MessageData;
+import com.example.atomikos.metrics.PipelineMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compresses message content before it is stored, trading a little CPU for fewer bytes of
+ * table, LOB and redo on the XA commit path. With {@code app.payload.compression.enabled},
+ * content of at least {@code app.payload.compression.min-chars} characters is deflated as
+ * UTF-8 at {@code app.payload.compression.level} (1 is fastest) and stored in
+ * {@code MESSAGE_CONTENT_COMPRESSED} with {@code CONTENT_ENCODING} set to {@code deflate}.
+ * Rows without an encoding keep their plain content, so both kinds can be read side by side.
+ */
+@Component
+public class ContentCompressor {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final PipelineMetrics pipelineMetrics;
+    private final boolean enabled;
+    private final int minChars;
+    private final int level;
+
+    public ContentCompressor(PipelineMetrics pipelineMetrics,
+                             @Value("${app.payload.compression.enabled:false}") boolean enabled,
+                             @Value("${app.payload.compression.min-chars:1024}") int minChars,
+                             @Value("${app.payload.compression.level:1}") int level) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("app.payload.compression.level must be between 1 and 9: " + level);
+        }
+        this.pipelineMetrics = pipelineMetrics;
+        this.enabled = enabled;
+        this.minChars = minChars;
+        this.level = level;
+    }
+
+    /**
+     * Replaces the plain content of the entity with its compressed form when compression is
+     * enabled and the content is large enough. Content stored in the LOB column is read from
+     * its reader, which must not have been consumed yet.
+     */
+    public MessageData compress(MessageData messageData) throws IOException {
+        if (!enabled || messageData.isCompressed()) {
+            return messageData;
+        }
+        long chars;
+        try {
+            chars = messageData.hasLargeContent() ? messageData.getLargeContent().length()
+                    : messageData.getMessageContent() != null ? messageData.getMessageContent().length() : 0;
+            if (chars < minChars) {
+                return messageData;
+            }
+            long start = System.nanoTime();
+            byte[] compressed;
+            try (Reader content = messageData.openContent()) {
+                compressed = compress(content, level);
+            }
+            pipelineMetrics.recordCompression(chars, compressed.length, System.nanoTime() - start);
+            messageData.setCompressedContent(MessageData.DEFLATE, compressed);
+        } catch (SQLException e) {
+            throw new IOException("Cannot read message content", e);
+        }
+        return messageData;
+    }
+
+    /**
+     * Deflates the content of {@code reader} as UTF-8.
+     */
+    public static byte[] compress(Reader content, int level) throws IOException {
+        Deflater deflater = new Deflater(level);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+            try (Writer writer = new OutputStreamWriter(new DeflaterOutputStream(bytes, deflater, BUFFER_SIZE),
+                                                        StandardCharsets.UTF_8)) {
+                content.transferTo(writer);
+            }
+            return bytes.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
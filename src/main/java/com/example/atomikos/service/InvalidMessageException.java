@@ -0,0 +1,13 @@
+package com.example.atomikos.service;
+
+/**
+ * A message whose body cannot be processed at all, detected before anything was written.
+ * It does not roll back the transaction, so the caller can dead-letter the message on its
+ * first delivery.
+ */
+public class InvalidMessageException extends MessageProcessingException {
+
+    public InvalidMessageException(String message, Throwable cause, String failureCause) {
+        super(message, cause, failureCause, true);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.atomikos.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends output messages directly to MQ, enlisted in the XA transaction.
+ * <p>
+ * Resolved destinations are cached for the lifetime of the application, as queue objects are
+ * not tied to a session. Within a transaction {@link JmsTemplate} hands out the same enlisted
+ * session for every send, and the producer created on it is kept until the transaction
+ * completes, so a transaction opens one producer however many outputs it sends. Atomikos
+ * enlists a fresh session per transaction, so producers are not carried across transactions.
+ */
+@Component
+@ConditionalOnProperty(name = "app.processing.mode", havingValue = "xa", matchIfMissing = true)
+public class JmsOutputPublisher implements OutputPublisher {
+
+    private final JmsTemplate jmsTemplate;
+    private final Map<String, Destination> destinations = new ConcurrentHashMap<>();
+
+    public JmsOutputPublisher(JmsTemplate jmsTemplate) {
+        this.jmsTemplate = jmsTemplate;
+    }
+
+    @Override
+    public void publish(String destination, String payload) {
+        publishAll(destination, List.of(payload));
+    }
+
+    @Override
+    public void publishAll(String destination, List<String> payloads) {
+        jmsTemplate.execute(session -> {
+            Destination resolved = resolve(session, destination);
+            ProducerCache producers = transactionProducers();
+            MessageProducer producer = producers != null
+                    ? producers.producer(session)
+                    : session.createProducer(null);
+            try {
+                for (String payload : payloads) {
+                    producer.send(resolved, session.createTextMessage(payload));
+                }
+            } finally {
+                if (producers == null) {
+                    JmsUtils.closeMessageProducer(producer);
+                }
+            }
+            return null;
+        }, false);
+    }
+
+    private Destination resolve(Session session, String destinationName) throws JMSException {
+        Destination destination = destinations.get(destinationName);
+        if (destination == null) {
+            destination = jmsTemplate.getDestinationResolver().resolveDestinationName(
+                    session, destinationName, jmsTemplate.isPubSubDomain());
+            destinations.put(destinationName, destination);
+        }
+        return destination;
+    }
+
+    /**
+     * Returns the producers of the current transaction, or {@code null} outside a transaction.
+     */
+    private ProducerCache transactionProducers() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        ProducerCache producers = (ProducerCache) TransactionSynchronizationManager.getResource(this);
+        if (producers == null) {
+            producers = new ProducerCache();
+            TransactionSynchronizationManager.bindResource(this, producers);
+            TransactionSynchronizationManager.registerSynchronization(producers);
+        }
+        return producers;
+    }
+
+    /**
+     * Anonymous producers per enlisted session, closed when the transaction completes.
+     */
+    private final class ProducerCache implements TransactionSynchronization {
+
+        private final Map<Session, MessageProducer> producers = new IdentityHashMap<>(2);
+
+        MessageProducer producer(Session session) throws JMSException {
+            MessageProducer producer = producers.get(session);
+            if (producer == null) {
+                producer = session.createProducer(null);
+                producers.put(session, producer);
+            }
+            return producer;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(JmsOutputPublisher.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(JmsOutputPublisher.this, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(JmsOutputPublisher.this);
+            for (MessageProducer producer : producers.values()) {
+                JmsUtils.closeMessageProducer(producer);
+            }
+            producers.clear();
+        }
+    }
+}
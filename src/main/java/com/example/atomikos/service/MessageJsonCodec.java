@@ -0,0 +1,269 @@
+package com.example.atomikos.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Allocation-light JSON handling for the message hot path. Input fields are read with a
+ * streaming parser that stops as soon as all wanted fields are found, and output messages
+ * are written by pooled, reusable generators instead of building a tree or formatting strings.
+ */
+@Component
+public class MessageJsonCodec {
+
+    private static final int POOL_SIZE = 32;
+
+    private final JsonFactory jsonFactory;
+    private final BlockingQueue<OutputWriter> writerPool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    public MessageJsonCodec(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Fields of an input message. A field is {@code null} when it is absent from the
+     * top-level JSON object.
+     */
+    public record MessageFields(String messageId, String content, String status) {
+    }
+
+    /**
+     * Reads {@code messageId}, {@code content} and {@code status} from the top-level object.
+     * Unknown fields are skipped without being materialized. Values are converted to text the
+     * same way {@code JsonNode.asText()} does: scalars by their textual form, {@code null} as
+     * "null" and nested objects or arrays as an empty string.
+     */
+    public MessageFields extract(String json) throws IOException {
+        String messageId = null;
+        String content = null;
+        String status = null;
+
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return new MessageFields(null, null, null);
+            }
+            int remaining = 3;
+            while (remaining > 0 && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                switch (fieldName) {
+                    case "messageId" -> {
+                        if (messageId == null) {
+                            remaining--;
+                        }
+                        messageId = valueAsText(parser);
+                    }
+                    case "content" -> {
+                        if (content == null) {
+                            remaining--;
+                        }
+                        content = valueAsText(parser);
+                    }
+                    case "status" -> {
+                        if (status == null) {
+                            remaining--;
+                        }
+                        status = valueAsText(parser);
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new MessageFields(messageId, content, status);
+    }
+
+    /**
+     * Fields of a large input message. The content is collected in a {@link ContentBuffer}
+     * instead of a {@code String}, and is {@code null} when the field is absent.
+     */
+    public record LargeMessageFields(String messageId, ContentBuffer content, String status) {
+    }
+
+    /**
+     * Like {@link #extract(String)}, but streams the {@code content} value into a chunked
+     * buffer so a multi-megabyte field is not materialized as another string.
+     */
+    public LargeMessageFields extractLarge(String json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return extractLarge(parser);
+        }
+    }
+
+    /**
+     * Like {@link #extractLarge(String)} for a UTF-8 encoded body read from a stream.
+     */
+    public LargeMessageFields extractLarge(InputStream json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return extractLarge(parser);
+        }
+    }
+
+    private LargeMessageFields extractLarge(JsonParser parser) throws IOException {
+        String messageId = null;
+        ContentBuffer content = null;
+        String status = null;
+
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return new LargeMessageFields(null, null, null);
+        }
+        int remaining = 3;
+        while (remaining > 0 && parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case "messageId" -> {
+                    if (messageId == null) {
+                        remaining--;
+                    }
+                    messageId = valueAsText(parser);
+                }
+                case "content" -> {
+                    if (content == null) {
+                        remaining--;
+                    }
+                    content = new ContentBuffer();
+                    JsonToken token = parser.currentToken();
+                    if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                    } else {
+                        parser.getText(content);
+                    }
+                }
+                case "status" -> {
+                    if (status == null) {
+                        remaining--;
+                    }
+                    status = valueAsText(parser);
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return new LargeMessageFields(messageId, content, status);
+    }
+
+    /**
+     * Reads a single field of the top-level object, converted to text like {@link #extract},
+     * stopping at the first occurrence. Returns {@code null} when the field is absent.
+     */
+    public String extractField(String json, String field) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals(fieldName)) {
+                    return valueAsText(parser);
+                }
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+
+    private static String valueAsText(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return "";
+        }
+        return parser.getText();
+    }
+
+    /**
+     * Writes the confirmation message published to the output queue.
+     */
+    public String writeOutput(String messageId, String status, LocalDateTime timestamp) throws IOException {
+        OutputWriter writer = writerPool.poll();
+        if (writer == null) {
+            writer = new OutputWriter(jsonFactory);
+        }
+        try {
+            JsonGenerator generator = writer.generator;
+            generator.writeStartObject();
+            generator.writeStringField("messageId", messageId);
+            generator.writeStringField("status", status);
+            generator.writeStringField("timestamp", String.valueOf(timestamp));
+            generator.writeEndObject();
+            return writer.drain();
+        } catch (IOException | RuntimeException e) {
+            // A generator that failed mid-document cannot be reused
+            writer = null;
+            throw e;
+        } finally {
+            if (writer != null) {
+                writerPool.offer(writer);
+            }
+        }
+    }
+
+    /**
+     * A generator bound to a resettable buffer. The generator is never closed, so its
+     * recycled internal buffers stay attached to it for the next message.
+     */
+    private static final class OutputWriter {
+
+        private final StringBuilder buffer = new StringBuilder(256);
+        private final JsonGenerator generator;
+
+        OutputWriter(JsonFactory jsonFactory) throws IOException {
+            this.generator = jsonFactory.createGenerator(new StringBuilderWriter(buffer));
+            this.generator.setRootValueSeparator(null);
+        }
+
+        String drain() throws IOException {
+            generator.flush();
+            String output = buffer.toString();
+            buffer.setLength(0);
+            return output;
+        }
+    }
+
+    /**
+     * Unsynchronized writer over a {@link StringBuilder}; {@link java.io.StringWriter} locks
+     * on every write, which the single-owner pooled generators do not need.
+     */
+    private static final class StringBuilderWriter extends Writer {
+
+        private final StringBuilder buffer;
+
+        StringBuilderWriter(StringBuilder buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            buffer.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String str, int offset, int length) {
+            buffer.append(str, offset, offset + length);
+        }
+
+        @Override
+        public void write(int c) {
+            buffer.append((char) c);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.atomikos.service;
+
+/**
+ * Failure to process an input message. Permanent failures fail again on every redelivery, e.g.
+ * a value the database rejects; other failures, e.g. a lost connection, may succeed on retry.
+ */
+public class MessageProcessingException extends RuntimeException {
+
+    private final String failureCause;
+    private final boolean permanent;
+
+    /**
+     * @param failureCause failure category, e.g. {@code invalid_json} or {@code database}
+     */
+    public MessageProcessingException(String message, Throwable cause, String failureCause, boolean permanent) {
+        super(message, cause);
+        this.failureCause = failureCause;
+        this.permanent = permanent;
+    }
+
+    public String getFailureCause() {
+        return failureCause;
+    }
+
+    public boolean isPermanent() {
+        return permanent;
+    }
+}
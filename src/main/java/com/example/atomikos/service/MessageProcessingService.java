@@ -1,74 +1,423 @@
 package com.example.atomikos.service;
 
 import com.example.atomikos.entity.MessageData;
+import com.example.atomikos.metrics.MessageEventLog;
+import com.example.atomikos.metrics.PipelineMetrics;
 import com.example.atomikos.repository.MessageDataRepository;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.atomikos.repository.MessageDataRepositoryImpl;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.jms.core.JmsTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jms.JmsException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
 import javax.jms.TextMessage;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 @Service
 public class MessageProcessingService {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageProcessingService.class);
-    private static final String OUTPUT_QUEUE = "DEV.QUEUE.2";
+    private static final String PROCESSED = "processed";
+    private static final String DUPLICATE = "duplicate";
+    private static final String INVALID = "invalid";
+    private static final String FAILED = "failed";
 
     private final MessageDataRepository messageDataRepository;
-    private final JmsTemplate jmsTemplate;
-    private final ObjectMapper objectMapper;
+    private final OutputPublisher outputPublisher;
+    private final MessageJsonCodec messageJsonCodec;
+    private final ProcessedMessageCache processedMessageCache;
+    private final ContentCompressor contentCompressor;
+    private final PipelineMetrics pipelineMetrics;
+    private final MessageEventLog messageEventLog;
+    private final int inlineMaxChars;
 
     public MessageProcessingService(MessageDataRepository messageDataRepository, 
-                                   JmsTemplate jmsTemplate,
-                                   ObjectMapper objectMapper) {
+                                   OutputPublisher outputPublisher,
+                                   MessageJsonCodec messageJsonCodec,
+                                   ProcessedMessageCache processedMessageCache,
+                                   ContentCompressor contentCompressor,
+                                   PipelineMetrics pipelineMetrics,
+                                   MessageEventLog messageEventLog,
+                                   @Value("${app.payload.inline-max-chars:4000}") int inlineMaxChars) {
         this.messageDataRepository = messageDataRepository;
-        this.jmsTemplate = jmsTemplate;
-        this.objectMapper = objectMapper;
+        this.outputPublisher = outputPublisher;
+        this.messageJsonCodec = messageJsonCodec;
+        this.processedMessageCache = processedMessageCache;
+        this.contentCompressor = contentCompressor;
+        this.pipelineMetrics = pipelineMetrics;
+        this.messageEventLog = messageEventLog;
+        this.inlineMaxChars = inlineMaxChars;
     }
 
+    /**
+     * Whether the message body is one this service can process: text, or UTF-8 encoded bytes.
+     */
+    public boolean supports(Message message) {
+        return message instanceof TextMessage || message instanceof BytesMessage;
+    }
+
+    /**
+     * Passes one message through the stages of its route in the caller's transaction. A body
+     * that cannot be parsed or fails validation fails with an {@link InvalidMessageException}
+     * before anything is written and leaves the transaction intact; any other failure rolls it
+     * back.
+     */
+    @Transactional(noRollbackFor = InvalidMessageException.class)
+    public void processMessage(Route route, TextMessage message) throws JMSException {
+        process(route, message);
+    }
+
+    @Transactional(noRollbackFor = InvalidMessageException.class)
+    public void processMessage(Route route, BytesMessage message) throws JMSException {
+        process(route, message);
+    }
+
+    private void process(Route route, Message message) throws JMSException {
+        String messageText = loggableText(message);
+        logger.debug("Processing message on route {}: {}", route.name(), messageText);
+        MessageEventLog.Recording event = messageEventLog.begin(route.name(), message.getJMSMessageID(), 1, messageText);
+        try {
+            messageEventLog.finish(event, process(route, message, messageText, event), null);
+        } catch (MessageProcessingException e) {
+            messageEventLog.finish(event, outcome(e), e.getFailureCause());
+            throw e;
+        }
+    }
+
+    private String process(Route route, Message message, String messageText, MessageEventLog.Recording event) {
+        MessageData messageData;
+        try {
+            messageData = toMessageData(route, message, messageText);
+            event.extracted(messageData.getMessageId());
+        } catch (InvalidMessageException e) {
+            throw e;
+        } catch (JsonProcessingException | MessageFormatException e) {
+            throw invalidMessage(e, messageText);
+        } catch (Exception e) {
+            throw processingFailure(e, messageText, List.of(message));
+        }
+
+        try {
+            if (route.persists()) {
+                if (processedMessageCache.contains(messageData.getMessageId())) {
+                    logger.debug("Skipping recently processed message: {}", messageData.getMessageId());
+                    return DUPLICATE;
+                }
+
+                // Save to database unless the messageId is already stored
+                contentCompressor.compress(messageData);
+                long saveStart = System.nanoTime();
+                boolean inserted = messageDataRepository.insertIfAbsent(messageData);
+                pipelineMetrics.recordRepositorySave(System.nanoTime() - saveStart);
+                event.persisted();
+                if (!inserted) {
+                    logger.debug("Skipping already stored message: {}", messageData.getMessageId());
+                    processedMessageCache.add(messageData.getMessageId());
+                    return DUPLICATE;
+                }
+                logger.debug("Saved message to database: {}", messageData);
+            }
+
+            if (route.publishes()) {
+                publish(route, messageData);
+                event.published();
+            }
+            if (route.persists()) {
+                processedMessageCache.addAfterCommit(messageData.getMessageId());
+            }
+            return PROCESSED;
+        } catch (Exception e) {
+            throw processingFailure(e, messageText, List.of(message));
+        }
+    }
+
+    /**
+     * Passes all messages of a batch through the stages of their route in the caller's
+     * transaction, so the whole batch shares a single XA prepare/commit. The entities are
+     * inserted with JDBC batching before any output is published. Any failure rolls back the
+     * complete batch; a duplicate the cache does not know about fails the batch on the unique
+     * index, and the redelivered messages then take the {@code MERGE} path of
+     * {@link #processMessage}.
+     */
     @Transactional
-    public void processMessage(TextMessage message) throws JMSException {
-        String messageText = message.getText();
-        logger.info("Processing message: {}", messageText);
+    public void processBatch(Route route, List<? extends Message> messages) throws JMSException {
+        List<MessageData> batch = new ArrayList<>(messages.size());
+        List<MessageEventLog.Recording> events = new ArrayList<>(messages.size());
+        Set<String> batchMessageIds = new HashSet<>();
+        for (Message message : messages) {
+            String messageText = loggableText(message);
+            MessageEventLog.Recording event = messageEventLog.begin(route.name(), message.getJMSMessageID(),
+                                                                    messages.size(), messageText);
+            events.add(event);
+            try {
+                MessageData messageData = toMessageData(route, message, messageText);
+                event.extracted(messageData.getMessageId());
+                if (route.persists() && (processedMessageCache.contains(messageData.getMessageId())
+                        || !batchMessageIds.add(messageData.getMessageId()))) {
+                    logger.debug("Skipping recently processed message: {}", messageData.getMessageId());
+                    events.remove(events.size() - 1);
+                    messageEventLog.finish(event, DUPLICATE, null);
+                } else {
+                    batch.add(route.persists() ? contentCompressor.compress(messageData) : messageData);
+                }
+            } catch (Exception e) {
+                throw batchFailure(processingFailure(e, messageText, messages), events);
+            }
+        }
 
         try {
-            // Parse JSON message
-            JsonNode jsonNode = objectMapper.readTree(messageText);
-            
-            // Extract fields from JSON
-            String messageId = jsonNode.has("messageId") ? jsonNode.get("messageId").asText() : "UNKNOWN";
-            String content = jsonNode.has("content") ? jsonNode.get("content").asText() : messageText;
-            String status = jsonNode.has("status") ? jsonNode.get("status").asText() : "RECEIVED";
-
-            // Save to database
-            MessageData messageData = new MessageData(messageId, content, status);
-            messageDataRepository.save(messageData);
-            logger.info("Saved message to database: {}", messageData);
-
-            // Publish to output queue
-            String outputMessage = String.format("{\"messageId\":\"%s\",\"status\":\"PROCESSED\",\"timestamp\":\"%s\"}", 
-                                                messageId, 
-                                                messageData.getCreatedAt());
-            jmsTemplate.convertAndSend(OUTPUT_QUEUE, outputMessage);
-            logger.info("Published message to output queue: {}", outputMessage);
-
-        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            long saveNanos = 0;
+            if (route.persists()) {
+                long saveStart = System.nanoTime();
+                messageDataRepository.saveAllInBatches(batch);
+                saveNanos = System.nanoTime() - saveStart;
+                pipelineMetrics.recordRepositorySave(saveNanos);
+                logger.debug("Saved batch of {} messages to database", batch.size());
+            }
+
+            long sendNanos = 0;
+            if (route.publishes()) {
+                List<String> outputMessages = new ArrayList<>(batch.size());
+                for (MessageData messageData : batch) {
+                    outputMessages.add(outputMessage(messageData));
+                }
+                long sendStart = System.nanoTime();
+                for (String outputQueue : route.outputQueues()) {
+                    outputPublisher.publishAll(outputQueue, outputMessages);
+                }
+                sendNanos = System.nanoTime() - sendStart;
+                pipelineMetrics.recordJmsSend(sendNanos);
+                logger.debug("Published batch of {} messages to {}", outputMessages.size(), route.outputQueues());
+            }
+            if (route.persists()) {
+                for (MessageData messageData : batch) {
+                    processedMessageCache.addAfterCommit(messageData.getMessageId());
+                }
+            }
+            for (MessageEventLog.Recording event : events) {
+                event.batchCompleted(saveNanos, sendNanos);
+                messageEventLog.finish(event, PROCESSED, null);
+            }
+        } catch (Exception e) {
+            throw batchFailure(processingFailure(e, null, messages), events);
+        }
+    }
+
+    private MessageProcessingException batchFailure(MessageProcessingException failure,
+                                                    List<MessageEventLog.Recording> events) {
+        // The whole batch rolls back, so none of its messages was processed
+        for (MessageEventLog.Recording event : events) {
+            messageEventLog.finish(event, FAILED, failure.getFailureCause());
+        }
+        return failure;
+    }
+
+    private static String outcome(MessageProcessingException failure) {
+        return failure instanceof InvalidMessageException ? INVALID : FAILED;
+    }
+
+    /**
+     * Builds the entity for a text or bytes message. Bodies up to {@code inlineMaxChars} are
+     * read as a string and stored inline. Larger bodies are parsed as a stream, and content
+     * beyond the inline limit is stored in the LOB column without another string copy. The
+     * entity is then validated if the route has the {@code VALIDATE} stage. Its content is only
+     * compressed once it has passed the duplicate check, see {@link ContentCompressor}.
+     */
+    private MessageData toMessageData(Route route, Message message, String messageText)
+            throws IOException, JMSException {
+        MessageData messageData = readMessageData(message);
+        if (route.validates()) {
+            validate(route, messageData, messageText);
+        }
+        return messageData;
+    }
+
+    private void validate(Route route, MessageData messageData, String messageText) {
+        String problem = null;
+        if (!route.allowedStatuses().isEmpty() && !route.allowedStatuses().contains(messageData.getStatus())) {
+            problem = "Status " + messageData.getStatus() + " is not accepted on route " + route.name();
+        } else if (!messageData.hasLargeContent()
+                   && (messageData.getMessageContent() == null || messageData.getMessageContent().isBlank())) {
+            problem = "Message has no content";
+        }
+        if (problem != null) {
+            logger.error("Invalid message {}: {}", messageData.getMessageId(), messageText);
+            throw new InvalidMessageException(problem, null, "validation");
+        }
+    }
+
+    private MessageData readMessageData(Message message) throws IOException, JMSException {
+        if (message instanceof BytesMessage bytesMessage) {
+            if (bytesMessage.getBodyLength() > inlineMaxChars) {
+                return toLargeMessageData(bytesMessage);
+            }
+            byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(body);
+            return toMessageData(message, new String(body, StandardCharsets.UTF_8));
+        }
+        String messageText = ((TextMessage) message).getText();
+        if (messageText != null && messageText.length() > inlineMaxChars) {
+            return toLargeMessageData(message, messageText);
+        }
+        return toMessageData(message, messageText);
+    }
+
+    private MessageData toLargeMessageData(Message message, String messageText) throws IOException, JMSException {
+        long parseStart = System.nanoTime();
+        MessageJsonCodec.LargeMessageFields fields = messageJsonCodec.extractLarge(messageText);
+        pipelineMetrics.recordJsonParse(System.nanoTime() - parseStart);
+
+        if (fields.content() != null) {
+            return toLargeMessageData(message, fields, fields.content());
+        }
+        // The whole text is the content; stream it from the message's own string
+        return toLargeMessageData(message, fields, new StringReader(messageText), messageText.length());
+    }
+
+    private MessageData toLargeMessageData(BytesMessage message) throws IOException, JMSException {
+        long parseStart = System.nanoTime();
+        MessageJsonCodec.LargeMessageFields fields = messageJsonCodec.extractLarge(new BytesMessageInputStream(message));
+        pipelineMetrics.recordJsonParse(System.nanoTime() - parseStart);
+
+        ContentBuffer content = fields.content();
+        if (content == null) {
+            message.reset();
+            content = new ContentBuffer().transferFrom(
+                    new InputStreamReader(new BytesMessageInputStream(message), StandardCharsets.UTF_8));
+        }
+        return toLargeMessageData(message, fields, content);
+    }
+
+    private MessageData toLargeMessageData(Message message, MessageJsonCodec.LargeMessageFields fields,
+                                           ContentBuffer content) throws JMSException {
+        if (content.length() <= inlineMaxChars) {
+            String messageId = fields.messageId() != null ? fields.messageId() : fallbackMessageId(message);
+            String status = fields.status() != null ? fields.status() : "RECEIVED";
+            return new MessageData(messageId, content.toString(), status);
+        }
+        return toLargeMessageData(message, fields, content.reader(), content.length());
+    }
+
+    private MessageData toLargeMessageData(Message message, MessageJsonCodec.LargeMessageFields fields,
+                                           Reader content, long length) throws JMSException {
+        String messageId = fields.messageId() != null ? fields.messageId() : fallbackMessageId(message);
+        String status = fields.status() != null ? fields.status() : "RECEIVED";
+        MessageData messageData = new MessageData(messageId, null, status);
+        messageData.setLargeContent(content, length);
+        return messageData;
+    }
+
+    private MessageData toMessageData(Message message, String messageText)
+            throws IOException, JMSException {
+        // Extract fields from JSON
+        long parseStart = System.nanoTime();
+        MessageJsonCodec.MessageFields fields = messageJsonCodec.extract(messageText);
+        pipelineMetrics.recordJsonParse(System.nanoTime() - parseStart);
+
+        // Fall back to the JMS message ID, which stays the same across redeliveries
+        String messageId = fields.messageId() != null ? fields.messageId() : fallbackMessageId(message);
+        String content = fields.content() != null ? fields.content() : messageText;
+        String status = fields.status() != null ? fields.status() : "RECEIVED";
+
+        return new MessageData(messageId, content, status);
+    }
+
+    private String fallbackMessageId(Message message) throws JMSException {
+        String jmsMessageId = message.getJMSMessageID();
+        return jmsMessageId != null ? jmsMessageId : "UNKNOWN";
+    }
+
+    private void publish(Route route, MessageData messageData) throws IOException {
+        String outputMessage = outputMessage(messageData);
+        long sendStart = System.nanoTime();
+        for (String outputQueue : route.outputQueues()) {
+            outputPublisher.publish(outputQueue, outputMessage);
+        }
+        pipelineMetrics.recordJmsSend(System.nanoTime() - sendStart);
+        logger.debug("Published message to {}: {}", route.outputQueues(), outputMessage);
+    }
+
+    private String outputMessage(MessageData messageData) throws IOException {
+        return messageJsonCodec.writeOutput(messageData.getMessageId(), "PROCESSED", messageData.getCreatedAt());
+    }
+
+    /**
+     * The message text for logging, or just its size when it is too large to log.
+     */
+    private String loggableText(Message message) throws JMSException {
+        if (message instanceof BytesMessage bytesMessage) {
+            return "<" + bytesMessage.getBodyLength() + " bytes>";
+        }
+        String messageText = ((TextMessage) message).getText();
+        return messageText != null && messageText.length() > inlineMaxChars
+                ? "<" + messageText.length() + " chars>"
+                : messageText;
+    }
+
+    private InvalidMessageException invalidMessage(Exception e, String messageText) {
+        if (e instanceof JsonProcessingException) {
+            logger.error("Failed to parse JSON message: {}", messageText, e);
+            return new InvalidMessageException("Invalid JSON message format", e, "invalid_json");
+        }
+        logger.error("Unreadable message body: {}", messageText, e);
+        return new InvalidMessageException("Unreadable message body", e, "invalid_message");
+    }
+
+    private MessageProcessingException processingFailure(Exception e, String messageText,
+                                                         List<? extends Message> messages) {
+        MessageProcessingException failure;
+        if (e instanceof InvalidMessageException invalid) {
+            // Rolls back the batch it is part of; the message is dead-lettered on its redelivery
+            failure = new MessageProcessingException(invalid.getMessage(), invalid, invalid.getFailureCause(), true);
+        } else if (e instanceof JsonProcessingException) {
             logger.error("Failed to parse JSON message: {}", messageText, e);
-            throw new RuntimeException("Invalid JSON message format", e);
-        } catch (org.springframework.dao.DataAccessException e) {
+            failure = new MessageProcessingException("Invalid JSON message format", e, "invalid_json", true);
+        } else if (MessageDataRepositoryImpl.isMessageIdViolation(e)) {
+            // A duplicate of another batch, or inserted concurrently; the redelivery takes the MERGE path
+            logger.warn("Duplicate messageId while saving, rolling back for redelivery", e);
+            failure = new MessageProcessingException("Duplicate messageId", e, "duplicate", false);
+        } else if (e instanceof DataAccessException) {
             logger.error("Database error while processing message", e);
-            throw new RuntimeException("Failed to save message to database", e);
-        } catch (org.springframework.jms.JmsException e) {
+            // Constraint and value violations fail again on every redelivery
+            failure = new MessageProcessingException("Failed to save message to database", e, "database",
+                                                     e instanceof DataIntegrityViolationException);
+        } else if (e instanceof JmsException) {
             logger.error("JMS error while publishing message", e);
-            throw new RuntimeException("Failed to publish message to output queue", e);
-        } catch (Exception e) {
+            failure = new MessageProcessingException("Failed to publish message to output queue", e, "jms", false);
+        } else {
             logger.error("Unexpected error processing message", e);
-            throw new RuntimeException("Failed to process message", e);
+            failure = new MessageProcessingException("Failed to process message", e, "unexpected", false);
+        }
+        pipelineMetrics.recordRollback(failure.getFailureCause(), jmsMessageIds(messages));
+        return failure;
+    }
+
+    private static List<String> jmsMessageIds(List<? extends Message> messages) {
+        List<String> jmsMessageIds = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            try {
+                jmsMessageIds.add(message.getJMSMessageID());
+            } catch (JMSException e) {
+                // Not attributable to a redelivery, the rollback is still counted
+            }
         }
+        return jmsMessageIds;
     }
 }
@@ -0,0 +1,38 @@
+package com.example.atomikos.service;
+
+import com.example.atomikos.entity.OutboxMessage;
+import com.example.atomikos.repository.OutboxMessageRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes output messages to the outbox table in the local database transaction.
+ * {@link OutboxRelay} publishes them to MQ afterwards.
+ */
+@Component
+@ConditionalOnProperty(name = "app.processing.mode", havingValue = "outbox")
+public class OutboxOutputPublisher implements OutputPublisher {
+
+    private final OutboxMessageRepository outboxMessageRepository;
+
+    public OutboxOutputPublisher(OutboxMessageRepository outboxMessageRepository) {
+        this.outboxMessageRepository = outboxMessageRepository;
+    }
+
+    @Override
+    public void publish(String destination, String payload) {
+        outboxMessageRepository.save(new OutboxMessage(destination, payload));
+    }
+
+    @Override
+    public void publishAll(String destination, List<String> payloads) {
+        List<OutboxMessage> outboxMessages = new ArrayList<>(payloads.size());
+        for (String payload : payloads) {
+            outboxMessages.add(new OutboxMessage(destination, payload));
+        }
+        outboxMessageRepository.saveAll(outboxMessages);
+    }
+}
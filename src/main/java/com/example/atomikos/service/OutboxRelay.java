@@ -0,0 +1,94 @@
+package com.example.atomikos.service;
+
+import com.example.atomikos.entity.OutboxMessage;
+import com.example.atomikos.repository.OutboxMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.destination.DestinationResolver;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.jms.Destination;
+import javax.jms.MessageProducer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes pending outbox rows to MQ in batches, oldest first. Each batch is sent in one
+ * local JMS transaction, which is committed before the rows are deleted in the database
+ * transaction. A crash in between re-publishes the batch, so delivery is at-least-once
+ * and consumers deduplicate by messageId.
+ */
+@Component
+@ConditionalOnProperty(name = "app.processing.mode", havingValue = "outbox")
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final JmsTemplate jmsTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public OutboxRelay(OutboxMessageRepository outboxMessageRepository,
+                       JmsTemplate jmsTemplate,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${app.outbox.relay-batch-size:100}") int batchSize) {
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.jmsTemplate = jmsTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay-interval-ms:200}")
+    public void relay() {
+        Integer sent;
+        do {
+            sent = transactionTemplate.execute(status -> relayBatch());
+        } while (sent != null && sent == batchSize);
+    }
+
+    private int relayBatch() {
+        List<OutboxMessage> pending = outboxMessageRepository.lockPending(batchSize);
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        jmsTemplate.execute(session -> {
+            DestinationResolver destinationResolver = jmsTemplate.getDestinationResolver();
+            Map<String, Destination> destinations = new HashMap<>();
+            MessageProducer producer = session.createProducer(null);
+            try {
+                for (OutboxMessage outboxMessage : pending) {
+                    Destination destination = destinations.get(outboxMessage.getDestination());
+                    if (destination == null) {
+                        destination = destinationResolver.resolveDestinationName(
+                                session, outboxMessage.getDestination(), false);
+                        destinations.put(outboxMessage.getDestination(), destination);
+                    }
+                    producer.send(destination, session.createTextMessage(outboxMessage.getPayload()));
+                }
+                JmsUtils.commitIfNecessary(session);
+            } finally {
+                JmsUtils.closeMessageProducer(producer);
+            }
+            return null;
+        }, false);
+
+        List<Long> ids = new ArrayList<>(pending.size());
+        for (OutboxMessage outboxMessage : pending) {
+            ids.add(outboxMessage.getId());
+        }
+        outboxMessageRepository.deleteAllByIdInBatch(ids);
+        logger.debug("Relayed {} outbox messages", pending.size());
+        return pending.size();
+    }
+}
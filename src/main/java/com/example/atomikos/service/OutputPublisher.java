@@ -0,0 +1,21 @@
+package com.example.atomikos.service;
+
+import java.util.List;
+
+/**
+ * Publishes output messages produced while processing an input message. The publish
+ * takes part in the caller's transaction.
+ */
+public interface OutputPublisher {
+
+    void publish(String destination, String payload);
+
+    /**
+     * Publishes several output messages to the same destination, in order.
+     */
+    default void publishAll(String destination, List<String> payloads) {
+        for (String payload : payloads) {
+            publish(destination, payload);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.atomikos.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU cache of recently committed messageIds with a time-to-live, used to reject
+ * obvious redeliveries before any database or XA work is done. A cache miss is not proof
+ * of a new message; the unique index on {@code MESSAGE_ID} remains the source of truth.
+ */
+@Component
+public class ProcessedMessageCache {
+
+    private final Map<String, Long> entries;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    @Autowired
+    public ProcessedMessageCache(@Value("${app.dedup.cache-size:10000}") int maxSize,
+                                 @Value("${app.dedup.cache-ttl:PT10M}") Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    ProcessedMessageCache(int maxSize, Duration ttl, LongSupplier nanoClock) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    public boolean contains(String messageId) {
+        synchronized (entries) {
+            Long addedAt = entries.get(messageId);
+            if (addedAt == null) {
+                return false;
+            }
+            if (nanoClock.getAsLong() - addedAt > ttlNanos) {
+                entries.remove(messageId);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    public void add(String messageId) {
+        synchronized (entries) {
+            entries.put(messageId, nanoClock.getAsLong());
+        }
+    }
+
+    /**
+     * Adds the messageId once the current transaction has committed, or immediately when
+     * no transaction synchronization is active.
+     */
+    public void addAfterCommit(String messageId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(messageId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(messageId);
+            }
+        });
+    }
+}
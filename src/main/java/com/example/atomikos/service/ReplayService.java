@@ -0,0 +1,294 @@
+package com.example.atomikos.service;
+
+import com.example.atomikos.entity.ReplayJob;
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.repository.MessageDataQueryRepository;
+import com.example.atomikos.repository.MessageDataQueryRepository.Keyset;
+import com.example.atomikos.repository.MessageDataQueryRepository.MessageKey;
+import com.example.atomikos.repository.ReplayJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-publishes the output notifications of stored messages, e.g. after a downstream consumer
+ * lost data. A replay walks {@code MESSAGE_DATA} in {@code (CREATED_AT, ID)} order, one keyset
+ * page of {@code app.replay.page-size} keys at a time, read on the query pool without the
+ * persistence context. Each page is split into batches of {@code app.replay.batch-size} that are
+ * published in parallel, each in its own transaction through the {@link OutputPublisher}, so a
+ * batch is sent to MQ directly in XA mode and written to the outbox in outbox mode. Batches are
+ * paced to {@code app.replay.rate-per-second} messages so the replay runs alongside live ingest.
+ * <p>
+ * Once every batch of a page has committed, the key of its last row is saved as the checkpoint
+ * of the {@link ReplayJob}. A failed, cancelled or interrupted replay is resumed from there and
+ * re-publishes at most one page, so delivery is at-least-once and consumers deduplicate by
+ * messageId. Memory is bounded by one page of keys, whatever the number of rows replayed.
+ * One replay runs at a time.
+ */
+@Service
+public class ReplayService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayService.class);
+
+    static final String DEFAULT_TARGET_QUEUE = "DEV.QUEUE.2";
+
+    private final MessageDataQueryRepository queryRepository;
+    private final ReplayJobRepository replayJobRepository;
+    private final OutputPublisher outputPublisher;
+    private final MessageJsonCodec messageJsonCodec;
+    private final PipelineMetrics pipelineMetrics;
+    private final TransactionTemplate transactionTemplate;
+    private final int pageSize;
+    private final int batchSize;
+    private final int fetchSize;
+    private final RateLimiter rateLimiter;
+    private final ExecutorService coordinator;
+    private final ExecutorService publishers;
+
+    // The job this instance is running, null when idle
+    private volatile String activeJobId;
+    private volatile boolean cancelRequested;
+
+    public ReplayService(MessageDataQueryRepository queryRepository,
+                         ReplayJobRepository replayJobRepository,
+                         OutputPublisher outputPublisher,
+                         MessageJsonCodec messageJsonCodec,
+                         PipelineMetrics pipelineMetrics,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.replay.page-size:10000}") int pageSize,
+                         @Value("${app.replay.batch-size:500}") int batchSize,
+                         @Value("${app.replay.fetch-size:1000}") int fetchSize,
+                         @Value("${app.replay.parallelism:4}") int parallelism,
+                         @Value("${app.replay.rate-per-second:1000}") int ratePerSecond) {
+        this.queryRepository = queryRepository;
+        this.replayJobRepository = replayJobRepository;
+        this.outputPublisher = outputPublisher;
+        this.messageJsonCodec = messageJsonCodec;
+        this.pipelineMetrics = pipelineMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pageSize = pageSize;
+        this.batchSize = batchSize;
+        this.fetchSize = fetchSize;
+        this.rateLimiter = new RateLimiter(ratePerSecond);
+        this.coordinator = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("replay-"));
+        this.publishers = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("replay-publisher-"));
+    }
+
+    /**
+     * Creates a replay of the messages with an optional status, created in the optional
+     * {@code [from, to)} range, and starts it in the background.
+     *
+     * @param targetQueue queue to publish to, {@code null} for the output queue
+     * @throws IllegalStateException if a replay is already running
+     */
+    public synchronized ReplayJob start(String status, LocalDateTime from, LocalDateTime to, String targetQueue) {
+        checkIdle();
+        ReplayJob job = replayJobRepository.save(new ReplayJob(UUID.randomUUID().toString(), status, from, to,
+                targetQueue != null ? targetQueue : DEFAULT_TARGET_QUEUE));
+        submit(job.getJobId());
+        return job;
+    }
+
+    /**
+     * Resumes a replay that failed, was cancelled or was running when the application stopped,
+     * from its last checkpoint.
+     *
+     * @throws IllegalArgumentException if the job does not exist or has completed
+     * @throws IllegalStateException    if a replay is already running
+     */
+    public synchronized ReplayJob resume(String jobId) {
+        checkIdle();
+        ReplayJob job = replayJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown replay " + jobId));
+        if (job.getState() == ReplayJob.State.COMPLETED) {
+            throw new IllegalArgumentException("Replay " + jobId + " has completed");
+        }
+        job.setState(ReplayJob.State.RUNNING);
+        job.setError(null);
+        job = replayJobRepository.save(job);
+        submit(jobId);
+        return job;
+    }
+
+    /**
+     * Stops a running replay after the batches in flight. Its checkpoint is kept for a resume.
+     *
+     * @return {@code false} if the job is not running in this instance
+     */
+    public boolean cancel(String jobId) {
+        if (!jobId.equals(activeJobId)) {
+            return false;
+        }
+        cancelRequested = true;
+        return true;
+    }
+
+    public Optional<ReplayJob> find(String jobId) {
+        return replayJobRepository.findById(jobId);
+    }
+
+    private void checkIdle() {
+        if (activeJobId != null) {
+            throw new IllegalStateException("Replay " + activeJobId + " is running");
+        }
+    }
+
+    private void submit(String jobId) {
+        activeJobId = jobId;
+        cancelRequested = false;
+        coordinator.execute(() -> {
+            try {
+                run(jobId);
+            } finally {
+                activeJobId = null;
+            }
+        });
+    }
+
+    void run(String jobId) {
+        ReplayJob job = replayJobRepository.findById(jobId).orElseThrow();
+        Keyset after = job.getAfterId() != null ? new Keyset(job.getAfterCreatedAt(), job.getAfterId()) : null;
+        long start = System.nanoTime();
+        long published = 0;
+        logger.info("Starting replay {}", job);
+        try {
+            while (true) {
+                if (cancelRequested) {
+                    finish(job, ReplayJob.State.CANCELLED, null);
+                    break;
+                }
+                List<MessageKey> page = new ArrayList<>(pageSize);
+                queryRepository.streamKeys(job.getStatusFilter(), job.getFromCreatedAt(), job.getToCreatedAt(),
+                                           after, pageSize, fetchSize, page::add);
+                if (page.isEmpty()) {
+                    finish(job, ReplayJob.State.COMPLETED, null);
+                    break;
+                }
+                if (!publishPage(job.getTargetQueue(), page)) {
+                    // The page was cut short, so its checkpoint must not be saved
+                    finish(job, ReplayJob.State.CANCELLED, null);
+                    break;
+                }
+                after = page.get(page.size() - 1).keyset();
+                published += page.size();
+                job = checkpoint(job, after, page.size());
+                if (page.size() < pageSize) {
+                    finish(job, ReplayJob.State.COMPLETED, null);
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            logger.error("Replay {} failed after {} messages", jobId, published, cause);
+            finish(job, ReplayJob.State.FAILED, cause.toString());
+        }
+        logger.info("Replay {} published {} messages in {} ms", jobId, published,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Publishes all batches of a page, failing if any batch failed.
+     *
+     * @return {@code false} if the replay was cancelled before all batches were published
+     */
+    private boolean publishPage(String targetQueue, List<MessageKey> page) {
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        for (int from = 0; from < page.size(); from += batchSize) {
+            List<MessageKey> batch = page.subList(from, Math.min(from + batchSize, page.size()));
+            rateLimiter.acquire(batch.size());
+            if (cancelRequested) {
+                break;
+            }
+            batches.add(CompletableFuture.runAsync(() -> publishBatch(targetQueue, batch), publishers));
+        }
+        CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).join();
+        return batches.size() * batchSize >= page.size();
+    }
+
+    private void publishBatch(String targetQueue, List<MessageKey> batch) {
+        List<String> payloads = new ArrayList<>(batch.size());
+        try {
+            for (MessageKey key : batch) {
+                payloads.add(messageJsonCodec.writeOutput(key.messageId(), "PROCESSED", key.createdAt()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        transactionTemplate.executeWithoutResult(status -> outputPublisher.publishAll(targetQueue, payloads));
+        pipelineMetrics.recordReplayed(batch.size());
+    }
+
+    private ReplayJob checkpoint(ReplayJob job, Keyset after, int published) {
+        job.checkpoint(after.createdAt(), after.id(), published);
+        return transactionTemplate.execute(status -> replayJobRepository.save(job));
+    }
+
+    private void finish(ReplayJob job, ReplayJob.State state, String error) {
+        job.setState(state);
+        job.setError(error);
+        transactionTemplate.executeWithoutResult(status -> replayJobRepository.save(job));
+    }
+
+    @Override
+    public void destroy() {
+        cancelRequested = true;
+        coordinator.shutdown();
+        publishers.shutdown();
+    }
+
+    /**
+     * Spaces out permits evenly at a fixed rate. A caller asking for several permits waits until
+     * the previous permits have been paid off, so bursts never exceed one batch.
+     */
+    static final class RateLimiter {
+
+        private final double nanosPerPermit;
+        private long nextFreeNanos = System.nanoTime();
+
+        /**
+         * @param permitsPerSecond rate, or 0 or less for no limit
+         */
+        RateLimiter(int permitsPerSecond) {
+            this.nanosPerPermit = permitsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / (double) permitsPerSecond : 0;
+        }
+
+        void acquire(int permits) {
+            if (nanosPerPermit == 0) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                // Unused time is not saved up, so an idle limiter does not allow a burst
+                long start = Math.max(now, nextFreeNanos);
+                nextFreeNanos = start + (long) (permits * nanosPerPermit);
+                waitNanos = start - now;
+            }
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.atomikos.service;
+
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.repository.MessageDataRetentionRepository;
+import com.example.atomikos.repository.MessageDataRetentionRepository.Partition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Purges {@code MESSAGE_DATA} rows older than {@code app.retention.max-age}. With
+ * {@code app.retention.strategy=auto} expired partitions are dropped when the table is range
+ * partitioned on {@code CREATED_AT}, otherwise rows are deleted in bounded batches with a pause
+ * between batches, optionally copied to an archive table first. A run stops after
+ * {@code app.retention.max-run} and the next run continues where it stopped.
+ */
+@Component
+@ConditionalOnProperty(name = "app.retention.enabled", havingValue = "true")
+public class RetentionJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionJob.class);
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z][A-Za-z0-9_$#]*(\\.[A-Za-z][A-Za-z0-9_$#]*)?");
+
+    private final MessageDataRetentionRepository retentionRepository;
+    private final PipelineMetrics pipelineMetrics;
+    private final String strategy;
+    private final Duration maxAge;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final Duration maxRun;
+    private final String archiveTable;
+
+    public RetentionJob(MessageDataRetentionRepository retentionRepository,
+                        PipelineMetrics pipelineMetrics,
+                        @Value("${app.retention.strategy:auto}") String strategy,
+                        @Value("${app.retention.max-age:P90D}") Duration maxAge,
+                        @Value("${app.retention.batch-size:500}") int batchSize,
+                        @Value("${app.retention.pause-ms:200}") long pauseMillis,
+                        @Value("${app.retention.max-run:PT10M}") Duration maxRun,
+                        @Value("${app.retention.archive-table:}") String archiveTable) {
+        this.retentionRepository = retentionRepository;
+        this.pipelineMetrics = pipelineMetrics;
+        this.strategy = strategy.toLowerCase(Locale.ROOT);
+        if (!this.strategy.equals("auto") && !this.strategy.equals("partition") && !this.strategy.equals("delete")) {
+            throw new IllegalArgumentException("app.retention.strategy must be auto, partition or delete: " + strategy);
+        }
+        if (!archiveTable.isBlank() && !TABLE_NAME.matcher(archiveTable).matches()) {
+            throw new IllegalArgumentException("Invalid app.retention.archive-table: " + archiveTable);
+        }
+        this.maxAge = maxAge;
+        this.batchSize = Math.min(batchSize, MessageDataRetentionRepository.MAX_BATCH_SIZE);
+        this.pauseMillis = pauseMillis;
+        this.maxRun = maxRun;
+        this.archiveTable = archiveTable.isBlank() ? null : archiveTable;
+    }
+
+    @Scheduled(fixedDelayString = "${app.retention.interval-ms:3600000}",
+               initialDelayString = "${app.retention.initial-delay-ms:60000}")
+    public void purge() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(maxAge);
+        String action = usePartitions() ? "drop_partition" : archiveTable != null ? "archive" : "delete";
+        long start = System.nanoTime();
+        long rows = 0;
+        try {
+            rows = action.equals("drop_partition") ? dropPartitions(cutoff) : deleteBatches(cutoff, start);
+        } catch (DataAccessException e) {
+            logger.error("Retention {} failed after {} rows", action, rows, e);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            pipelineMetrics.recordRetentionRun(action, rows, nanos);
+            logger.info("Retention purged {} rows created before {} ({}) in {} ms",
+                        rows, cutoff, action, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
+    // Dropping partitions cannot archive rows, so an archive table always means batched deletes
+    private boolean usePartitions() {
+        if (archiveTable != null || strategy.equals("delete")) {
+            return false;
+        }
+        return strategy.equals("partition") || retentionRepository.isPartitioned();
+    }
+
+    private long dropPartitions(LocalDateTime cutoff) {
+        long rows = 0;
+        for (Partition partition : retentionRepository.findExpiredPartitions(cutoff)) {
+            try {
+                rows += retentionRepository.dropPartition(partition);
+                logger.info("Dropped partition {} of rows created before {}", partition.name(), partition.highValue());
+            } catch (DataAccessException e) {
+                // ORA-14758: the last range partition of an interval partitioned table cannot be dropped
+                logger.warn("Could not drop partition {}: {}", partition.name(), e.getMostSpecificCause().getMessage());
+            }
+        }
+        return rows;
+    }
+
+    private long deleteBatches(LocalDateTime cutoff, long start) {
+        long rows = 0;
+        long deadline = start + maxRun.toNanos();
+        while (true) {
+            int purged = retentionRepository.purgeBatch(cutoff, batchSize, archiveTable);
+            rows += purged;
+            if (purged < batchSize || System.nanoTime() - deadline >= 0) {
+                return rows;
+            }
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return rows;
+            }
+        }
+    }
+}
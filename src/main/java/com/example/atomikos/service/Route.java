@@ -0,0 +1,99 @@
+package com.example.atomikos.service;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An input queue and the stages its messages pass through, in pipeline order: the fields are
+ * extracted, optionally validated, stored in {@code MESSAGE_DATA} and published to every output
+ * queue. A route without {@code PERSIST} only forwards, so in XA mode its transactions enlist
+ * MQ alone; one without {@code PUBLISH} only stores. Routes with a selector can share an input
+ * queue, e.g. as priority lanes keyed by {@code JMSPriority} or a message property.
+ *
+ * @param selector                  JMS message selector of the messages this route consumes, or
+ *                                  {@code null} for all
+ * @param concurrency               consumers per queue manager, each with a reserved share of the
+ *                                  connection pools
+ * @param maxConcurrency            consumers per queue manager the route may grow to, using capacity
+ *                                  reserved by idle routes of lower priority
+ * @param priority                  higher priorities may borrow the idle capacity of lower ones
+ * @param batchSize                 messages per transaction, 1 for one message per transaction
+ * @param transactionTimeoutSeconds timeout of the transactions of this route in XA mode, 0 for
+ *                                  {@code app.transaction.timeout-seconds}
+ * @param allowedStatuses           statuses the {@code VALIDATE} stage accepts, empty for any
+ */
+public record Route(String name, String inputQueue, String selector, List<String> outputQueues, Set<Stage> stages,
+                    int concurrency, int maxConcurrency, int priority, int batchSize, int transactionTimeoutSeconds,
+                    Set<String> allowedStatuses) {
+
+    public enum Stage {
+        EXTRACT, VALIDATE, PERSIST, PUBLISH
+    }
+
+    public Route {
+        outputQueues = List.copyOf(outputQueues);
+        stages = stages.isEmpty() ? EnumSet.noneOf(Stage.class) : EnumSet.copyOf(stages);
+        allowedStatuses = Set.copyOf(allowedStatuses);
+        if (selector != null && selector.isBlank()) {
+            selector = null;
+        }
+        if (!name.matches("[A-Za-z0-9_-]+")) {
+            throw new IllegalArgumentException("Route names may contain letters, digits, '_' and '-' only: " + name);
+        }
+        if (inputQueue == null || inputQueue.isBlank()) {
+            throw new IllegalArgumentException("Route " + name + " has no input queue");
+        }
+        if (!stages.contains(Stage.EXTRACT)) {
+            throw new IllegalArgumentException("Route " + name + " must start with the extract stage");
+        }
+        if (!stages.contains(Stage.PERSIST) && !stages.contains(Stage.PUBLISH)) {
+            throw new IllegalArgumentException("Route " + name + " neither persists nor publishes");
+        }
+        if (stages.contains(Stage.PUBLISH) == outputQueues.isEmpty()) {
+            throw new IllegalArgumentException("Route " + name + " needs output queues exactly when it publishes");
+        }
+        if (outputQueues.contains(inputQueue)) {
+            throw new IllegalArgumentException("Route " + name + " publishes to its own input queue");
+        }
+        if (concurrency < 1 || batchSize < 1 || transactionTimeoutSeconds < 0) {
+            throw new IllegalArgumentException("Route " + name + " needs a positive concurrency and batch size");
+        }
+        if (maxConcurrency < concurrency) {
+            throw new IllegalArgumentException("Route " + name + " has a maximum concurrency below its concurrency");
+        }
+    }
+
+    /**
+     * Parses a comma separated stage list, which must name the stages in pipeline order.
+     */
+    public static Set<Stage> parseStages(String stages) {
+        Set<Stage> parsed = EnumSet.noneOf(Stage.class);
+        Stage previous = null;
+        for (String value : stages.split(",")) {
+            if (value.isBlank()) {
+                continue;
+            }
+            Stage stage = Stage.valueOf(value.trim().toUpperCase());
+            if (previous != null && stage.compareTo(previous) <= 0) {
+                throw new IllegalArgumentException("Stages must be listed once each in the order extract, validate, "
+                                                   + "persist, publish: " + stages);
+            }
+            parsed.add(stage);
+            previous = stage;
+        }
+        return parsed;
+    }
+
+    public boolean validates() {
+        return stages.contains(Stage.VALIDATE);
+    }
+
+    public boolean persists() {
+        return stages.contains(Stage.PERSIST);
+    }
+
+    public boolean publishes() {
+        return stages.contains(Stage.PUBLISH);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.atomikos.service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The routes this instance serves, resolved once at startup. Every route consumes from its own
+ * input queue, on every queue manager, with its own listener containers; all routes share the
+ * Oracle and MQ connection pools. The first route is the primary one, which striped processing
+ * and adaptive concurrency apply to.
+ */
+public class RouteTable {
+
+    private final List<Route> routes;
+
+    public RouteTable(List<Route> routes) {
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("At least one route is required");
+        }
+        Set<String> names = new HashSet<>();
+        Map<String, Route> inputQueues = new HashMap<>();
+        for (Route route : routes) {
+            if (!names.add(route.name())) {
+                throw new IllegalArgumentException("Route " + route.name() + " is defined twice");
+            }
+            Route other = inputQueues.putIfAbsent(route.inputQueue(), route);
+            // Routes can only split a queue between them by selector
+            if (other != null && (other.selector() == null || route.selector() == null)) {
+                throw new IllegalArgumentException("Queue " + route.inputQueue() + " is the input of routes "
+                                                   + other.name() + " and " + route.name() + " without selectors");
+            }
+        }
+        this.routes = List.copyOf(routes);
+    }
+
+    public List<Route> routes() {
+        return routes;
+    }
+
+    public Route primary() {
+        return routes.get(0);
+    }
+
+    /**
+     * Consumers of all routes on one queue manager, the capacity reserved for them.
+     */
+    public int consumers() {
+        int consumers = 0;
+        for (Route route : routes) {
+            consumers += route.concurrency();
+        }
+        return consumers;
+    }
+
+    /**
+     * Consumers of all routes on one queue manager once every route has grown to its maximum.
+     */
+    public int maxConsumers() {
+        int consumers = 0;
+        for (Route route : routes) {
+            consumers += maxConcurrency(route);
+        }
+        return consumers;
+    }
+
+    /**
+     * Consumers per queue manager {@code route} can keep busy: its {@code maxConcurrency}, but
+     * no more than its own reserved capacity plus the capacity of the lower priorities it may
+     * borrow. Further consumers could never get a slot from the {@code CapacityScheduler}.
+     */
+    public int maxConcurrency(Route route) {
+        int borrowable = route.concurrency();
+        for (Route other : routes) {
+            if (other.priority() < route.priority()) {
+                borrowable += other.concurrency();
+            }
+        }
+        return Math.min(route.maxConcurrency(), borrowable);
+    }
+
+    /**
+     * Maximum consumers of the routes other than the primary one on one queue manager.
+     */
+    public int secondaryConsumers() {
+        return maxConsumers() - maxConcurrency(primary());
+    }
+
+    /**
+     * Whether any route may borrow capacity, so transactions need to be scheduled.
+     */
+    public boolean prioritized() {
+        for (Route route : routes) {
+            if (route.maxConcurrency() > route.concurrency()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.atomikos.web;
+
+import com.example.atomikos.repository.MessageDataQueryRepository;
+import com.example.atomikos.repository.MessageDataQueryRepository.Keyset;
+import com.example.atomikos.repository.MessageDataQueryRepository.MessageRow;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only access to stored messages. Lists are paged by keyset: the {@code next} object of a
+ * page holds the {@code afterCreatedAt} and {@code afterId} parameters for the following page,
+ * and is {@code null} on the last page.
+ */
+@RestController
+@RequestMapping("/api/messages")
+public class MessageQueryController {
+
+    private final MessageDataQueryRepository queryRepository;
+    private final ObjectMapper objectMapper;
+    private final int maxPageSize;
+
+    public MessageQueryController(MessageDataQueryRepository queryRepository,
+                                  ObjectMapper objectMapper,
+                                  @Value("${app.query.max-page-size:1000}") int maxPageSize) {
+        this.queryRepository = queryRepository;
+        this.objectMapper = objectMapper;
+        this.maxPageSize = maxPageSize;
+    }
+
+    @GetMapping("/{messageId}")
+    public MessageRow findByMessageId(@PathVariable String messageId) {
+        return queryRepository.findByMessageId(messageId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown messageId " + messageId));
+    }
+
+    @GetMapping(value = "/{messageId}/content", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<StreamingResponseBody> content(@PathVariable String messageId) {
+        findByMessageId(messageId);
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+            queryRepository.copyContent(messageId, writer);
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8)).body(body);
+    }
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> list(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterCreatedAt,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "100") int limit) {
+        if ((afterCreatedAt == null) != (afterId == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "afterCreatedAt and afterId must be given together");
+        }
+        if (limit < 1 || limit > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + maxPageSize);
+        }
+        Keyset after = afterCreatedAt != null ? new Keyset(afterCreatedAt, afterId) : null;
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("items");
+                MessageRow[] last = new MessageRow[1];
+                int[] count = new int[1];
+                queryRepository.streamPage(status, from, to, after, limit, row -> {
+                    try {
+                        objectMapper.writeValue(generator, row);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    last[0] = row;
+                    count[0]++;
+                });
+                generator.writeEndArray();
+                if (count[0] == limit) {
+                    generator.writeObjectFieldStart("next");
+                    generator.writeStringField("afterCreatedAt", last[0].createdAt().toString());
+                    generator.writeNumberField("afterId", last[0].id());
+                    generator.writeEndObject();
+                } else {
+                    generator.writeNullField("next");
+                }
+                generator.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+}
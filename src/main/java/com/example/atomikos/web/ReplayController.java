@@ -0,0 +1,77 @@
+package com.example.atomikos.web;
+
+import com.example.atomikos.entity.ReplayJob;
+import com.example.atomikos.service.ReplayService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+
+/**
+ * Starts and tracks replays of stored messages to an output queue; see {@link ReplayService}.
+ * A replay runs in the background, so the responses only describe the job and its checkpoint.
+ */
+@RestController
+@RequestMapping("/api/replay")
+public class ReplayController {
+
+    private final ReplayService replayService;
+
+    public ReplayController(ReplayService replayService) {
+        this.replayService = replayService;
+    }
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ReplayJob start(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String queue) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+        }
+        try {
+            return replayService.start(status, from, to, queue);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    public ReplayJob find(@PathVariable String jobId) {
+        return replayService.find(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown replay " + jobId));
+    }
+
+    @PostMapping("/{jobId}/resume")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ReplayJob resume(@PathVariable String jobId) {
+        find(jobId);
+        try {
+            return replayService.resume(jobId);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{jobId}")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void cancel(@PathVariable String jobId) {
+        find(jobId);
+        if (!replayService.cancel(jobId)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Replay " + jobId + " is not running");
+        }
+    }
+}
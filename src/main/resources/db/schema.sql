@@ -0,0 +1,45 @@
+-- Schema for app.jpa.ddl-auto=none or validate, matching what Hibernate creates with update
+CREATE SEQUENCE MESSAGE_DATA_SEQ START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE MESSAGE_DATA (
+    ID NUMBER(19) NOT NULL,
+    MESSAGE_ID VARCHAR2(255) NOT NULL,
+    MESSAGE_CONTENT VARCHAR2(4000),
+    MESSAGE_CONTENT_LOB CLOB,
+    CONTENT_ENCODING VARCHAR2(16),
+    MESSAGE_CONTENT_COMPRESSED BLOB,
+    CREATED_AT TIMESTAMP NOT NULL,
+    STATUS VARCHAR2(50),
+    CONSTRAINT PK_MESSAGE_DATA PRIMARY KEY (ID)
+);
+
+CREATE UNIQUE INDEX UX_MESSAGE_DATA_MESSAGE_ID ON MESSAGE_DATA (MESSAGE_ID);
+CREATE INDEX IX_MESSAGE_DATA_STATUS_CREATED ON MESSAGE_DATA (STATUS, CREATED_AT, ID);
+CREATE INDEX IX_MESSAGE_DATA_CREATED ON MESSAGE_DATA (CREATED_AT, ID);
+
+CREATE SEQUENCE OUTBOX_MESSAGE_SEQ START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE OUTBOX_MESSAGE (
+    ID NUMBER(19) NOT NULL,
+    DESTINATION VARCHAR2(255) NOT NULL,
+    PAYLOAD VARCHAR2(4000) NOT NULL,
+    CREATED_AT TIMESTAMP NOT NULL,
+    CONSTRAINT PK_OUTBOX_MESSAGE PRIMARY KEY (ID)
+);
+-- Published rows are deleted, so the primary key indexes exactly the pending rows in insertion order
+
+CREATE TABLE REPLAY_JOB (
+    JOB_ID VARCHAR2(36) NOT NULL,
+    STATUS_FILTER VARCHAR2(50),
+    FROM_CREATED_AT TIMESTAMP,
+    TO_CREATED_AT TIMESTAMP,
+    TARGET_QUEUE VARCHAR2(255) NOT NULL,
+    AFTER_CREATED_AT TIMESTAMP,
+    AFTER_ID NUMBER(19),
+    PUBLISHED NUMBER(19) NOT NULL,
+    STATE VARCHAR2(20) NOT NULL,
+    ERROR VARCHAR2(1000),
+    CREATED_AT TIMESTAMP NOT NULL,
+    UPDATED_AT TIMESTAMP NOT NULL,
+    CONSTRAINT PK_REPLAY_JOB PRIMARY KEY (JOB_ID)
+);
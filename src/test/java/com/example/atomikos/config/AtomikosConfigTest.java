@@ -0,0 +1,69 @@
+package com.example.atomikos.config;
+
+import com.atomikos.jms.AtomikosConnectionFactoryBean;
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.ibm.mq.jms.MQXAConnectionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class AtomikosConfigTest {
+
+    @Test
+    void testVirtualThreadConsumersWithinPool() {
+        assertEquals(40, AtomikosConfig.virtualThreadConsumers(40, 1, 0, 1, 50));
+    }
+
+    @Test
+    void testVirtualThreadConsumersCappedByPool() {
+        // 49 connections besides the spare, 9 of them for the consumers of the other routes
+        assertEquals(40, AtomikosConfig.virtualThreadConsumers(200, 1, 9, 1, 50));
+        // Every queue manager runs its own consumers on the same Oracle pool
+        assertEquals(24, AtomikosConfig.virtualThreadConsumers(200, 1, 0, 2, 50));
+    }
+
+    @Test
+    void testVirtualThreadConsumersKeepReservedConcurrency() {
+        assertEquals(8, AtomikosConfig.virtualThreadConsumers(200, 8, 0, 1, 5));
+    }
+
+    @Test
+    void testShowSqlDisabledByDefault() {
+        AtomikosConfig config = configure(Map.of());
+
+        assertEquals("false", config.jpaProperties().getProperty("hibernate.show_sql"));
+    }
+
+    @Test
+    void testShowSqlEnabledByProperty() {
+        AtomikosConfig config = configure(Map.of("app.jpa.show-sql", "true"));
+
+        assertEquals("true", config.jpaProperties().getProperty("hibernate.show_sql"));
+    }
+
+    @Test
+    void testStripingRejectsAdditionalQueueManagers() {
+        AtomikosConfig config = configure(Map.of("app.listener.striping.enabled", "true",
+                                                 "ibm.mq.additional-queue-managers", "QM2@mq2(1414)"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> config.queueManagers(mock(AtomikosConnectionFactoryBean.class),
+                                           mock(MQXAConnectionFactory.class)));
+        assertTrue(e.getMessage().contains("app.listener.striping.enabled"));
+    }
+
+    private static AtomikosConfig configure(Map<String, Object> properties) {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+            context.refresh();
+            AtomikosConfig config = new AtomikosConfig(new PipelineMetrics());
+            context.getAutowireCapableBeanFactory().autowireBean(config);
+            return config;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.atomikos.config;
+
+import com.atomikos.recovery.PendingTransactionRecord;
+import com.atomikos.recovery.TxState;
+import com.example.atomikos.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitRepositoryTest {
+
+    @TempDir
+    Path logDir;
+
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private GroupCommitRepository open(long checkpointInterval) throws Exception {
+        pipelineMetrics.bindTo(meterRegistry);
+        GroupCommitRepository repository = new GroupCommitRepository(logDir + "/", "tmlog", checkpointInterval,
+                                                                      Long.MAX_VALUE, pipelineMetrics);
+        repository.init();
+        return repository;
+    }
+
+    private static PendingTransactionRecord record(String id, TxState state) {
+        return new PendingTransactionRecord(id, state, System.currentTimeMillis() + 60000, "tm", null);
+    }
+
+    private static Set<String> ids(GroupCommitRepository repository) {
+        return repository.getAllCoordinatorLogEntries().stream().map(record -> record.id).collect(Collectors.toSet());
+    }
+
+    @Test
+    void testConcurrentWritesAreDurable() throws Exception {
+        GroupCommitRepository repository = open(500);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> writes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String id = "tx-" + i;
+            writes.add(executor.submit(() -> {
+                repository.put(id, record(id, TxState.COMMITTING));
+                return null;
+            }));
+        }
+        for (Future<?> write : writes) {
+            write.get();
+        }
+        executor.shutdown();
+        repository.close();
+
+        GroupCommitRepository reopened = open(500);
+        assertEquals(200, ids(reopened).size());
+        assertEquals(200, reopened.findAllCommittingCoordinatorLogEntries().size());
+        reopened.close();
+
+        long forcedRecords = (long) meterRegistry.get("app.xa.log.force.records").summary().totalAmount();
+        assertEquals(200, forcedRecords);
+        assertTrue(meterRegistry.get("app.xa.log.force").timer().count() <= 200);
+    }
+
+    @Test
+    void testTerminatedTransactionsAreForgotten() throws Exception {
+        GroupCommitRepository repository = open(500);
+        repository.put("tx-1", record("tx-1", TxState.COMMITTING));
+        repository.put("tx-2", record("tx-2", TxState.IN_DOUBT));
+        repository.put("tx-1", record("tx-1", TxState.TERMINATED));
+
+        assertNull(repository.get("tx-1"));
+        assertEquals(Set.of("tx-2"), ids(repository));
+        assertTrue(repository.findAllCommittingCoordinatorLogEntries().isEmpty());
+        repository.close();
+
+        GroupCommitRepository reopened = open(500);
+        assertEquals(Set.of("tx-2"), ids(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void testCheckpointKeepsOnlyPendingRecords() throws Exception {
+        GroupCommitRepository repository = open(4);
+        for (int i = 0; i < 10; i++) {
+            repository.put("tx-" + i, record("tx-" + i, TxState.COMMITTING));
+            repository.put("tx-" + i, record("tx-" + i, TxState.TERMINATED));
+        }
+        repository.put("tx-pending", record("tx-pending", TxState.COMMITTING));
+        repository.close();
+
+        // Startup and at least four interval checkpoints, each to a new version of the file
+        assertTrue(meterRegistry.get("app.xa.log.checkpoint").timer().count() >= 5);
+        try (var files = Files.list(logDir)) {
+            assertEquals(1, files.filter(file -> file.toString().endsWith(".log")).count());
+        }
+        GroupCommitRepository reopened = open(4);
+        assertEquals(Set.of("tx-pending"), ids(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void testRequestedCheckpointReplacesLog() throws Exception {
+        GroupCommitRepository repository = open(500);
+        repository.put("tx-1", record("tx-1", TxState.COMMITTING));
+        repository.put("tx-2", record("tx-2", TxState.COMMITTING));
+
+        repository.writeCheckpoint(List.of(record("tx-2", TxState.COMMITTING), record("tx-3", TxState.IN_DOUBT),
+                                           record("tx-4", TxState.TERMINATED)));
+        assertEquals(Set.of("tx-2", "tx-3"), ids(repository));
+        repository.put("tx-5", record("tx-5", TxState.COMMITTING));
+        repository.close();
+
+        GroupCommitRepository reopened = open(500);
+        assertEquals(Set.of("tx-2", "tx-3", "tx-5"), ids(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void testCommittingSuperiorMakesInDoubtRecordCommitting() throws Exception {
+        GroupCommitRepository repository = open(500);
+        repository.put("root", record("root", TxState.COMMITTING));
+        repository.put("sub", new PendingTransactionRecord("sub", TxState.IN_DOUBT,
+                                                           System.currentTimeMillis() + 60000, "tm", "root"));
+        repository.put("other", record("other", TxState.IN_DOUBT));
+
+        assertEquals(Set.of("root", "sub"), repository.findAllCommittingCoordinatorLogEntries().stream()
+                .map(record -> record.id).collect(Collectors.toSet()));
+        repository.close();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.atomikos.config;
+
+import com.example.atomikos.metrics.PipelineMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxConfigTest {
+
+    @Test
+    void testShowSqlDisabledByDefault() {
+        OutboxConfig config = configure(Map.of());
+
+        assertEquals("false", config.jpaProperties().getProperty("hibernate.show_sql"));
+    }
+
+    @Test
+    void testDialectFromProperty() {
+        assertEquals("org.hibernate.dialect.Oracle12cDialect",
+                     configure(Map.of()).jpaProperties().getProperty("hibernate.dialect"));
+        assertEquals("org.hibernate.dialect.H2Dialect",
+                     configure(Map.of("app.jpa.dialect", "org.hibernate.dialect.H2Dialect"))
+                             .jpaProperties().getProperty("hibernate.dialect"));
+    }
+
+    private static OutboxConfig configure(Map<String, Object> properties) {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+            context.refresh();
+            OutboxConfig config = new OutboxConfig(new PipelineMetrics());
+            context.getAutowireCapableBeanFactory().autowireBean(config);
+            return config;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.atomikos.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PoolWarmupTest {
+
+    @Test
+    void testOpensAllConnectionsInParallel() {
+        // Only passes if all five connections are open at the same time
+        CyclicBarrier allOpen = new CyclicBarrier(5);
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        PoolWarmup.ConnectionOpener opener = () -> {
+            allOpen.await(5, TimeUnit.SECONDS);
+            opened.incrementAndGet();
+            return closed::incrementAndGet;
+        };
+        PoolWarmup poolWarmup = new PoolWarmup(List.of(new PoolWarmup.Pool("oracleDataSource", 3, opener),
+                                                       new PoolWarmup.Pool("ibmMqXA", 2, opener)), 10000);
+
+        poolWarmup.start();
+
+        assertTrue(poolWarmup.isRunning());
+        assertEquals(5, opened.get());
+        // Every connection goes back to its pool once all are open
+        await().atMost(5, TimeUnit.SECONDS).until(() -> closed.get() == 5);
+    }
+
+    @Test
+    void testFailedPoolDoesNotHoldUpStartup() {
+        AtomicInteger opened = new AtomicInteger();
+        PoolWarmup poolWarmup = new PoolWarmup(List.of(
+                new PoolWarmup.Pool("oracleDataSource", 2, () -> {
+                    throw new IllegalStateException("listener refused the connection");
+                }),
+                new PoolWarmup.Pool("ibmMqXA", 2, () -> {
+                    opened.incrementAndGet();
+                    return () -> { };
+                })), 10000);
+
+        long start = System.nanoTime();
+        poolWarmup.start();
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        assertTrue(poolWarmup.isRunning());
+        assertEquals(2, opened.get());
+    }
+
+    @Test
+    void testGivesUpAfterTimeout() {
+        CountDownLatch unreachable = new CountDownLatch(1);
+        PoolWarmup poolWarmup = new PoolWarmup(List.of(new PoolWarmup.Pool("oracleDataSource", 2, () -> {
+            unreachable.await();
+            return () -> { };
+        })), 200);
+
+        try {
+            long start = System.nanoTime();
+            poolWarmup.start();
+
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+            assertTrue(poolWarmup.isRunning());
+        } finally {
+            unreachable.countDown();
+        }
+    }
+
+    @Test
+    void testStartsAfterRecoveryAndBeforeListeners() {
+        PoolWarmup poolWarmup = new PoolWarmup(List.of(), 0);
+
+        assertEquals(PoolWarmup.PHASE, poolWarmup.getPhase());
+        assertTrue(ParallelRecovery.PHASE < poolWarmup.getPhase());
+        assertTrue(poolWarmup.getPhase() < SmartLifecycle.DEFAULT_PHASE);
+    }
+}
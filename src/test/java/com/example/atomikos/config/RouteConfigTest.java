@@ -0,0 +1,119 @@
+package com.example.atomikos.config;
+
+import com.example.atomikos.service.Route;
+import com.example.atomikos.service.RouteTable;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteConfigTest {
+
+    private final RouteConfig routeConfig = new RouteConfig();
+
+    @Test
+    void testDefaultRouteWithoutConfiguredRoutes() {
+        RouteTable routeTable = routeConfig.routeTable(new MockEnvironment(), "", 3, 1);
+
+        Route route = routeTable.primary();
+        assertEquals(List.of(route), routeTable.routes());
+        assertEquals("DEV.QUEUE.1", route.inputQueue());
+        assertEquals(List.of("DEV.QUEUE.2"), route.outputQueues());
+        assertTrue(route.persists() && route.publishes() && !route.validates());
+        assertEquals(3, route.concurrency());
+        assertEquals(0, routeTable.secondaryConsumers());
+        assertFalse(routeTable.prioritized());
+    }
+
+    @Test
+    void testConfiguredRoutes() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("app.route.orders.input", "ORDERS.IN")
+                .withProperty("app.route.orders.outputs", "ORDERS.OUT, AUDIT.OUT")
+                .withProperty("app.route.orders.stages", "extract,validate,persist,publish")
+                .withProperty("app.route.orders.allowed-statuses", "NEW,UPDATED")
+                .withProperty("app.route.orders.batch-size", "10")
+                .withProperty("app.route.forward.input", "FORWARD.IN")
+                .withProperty("app.route.forward.outputs", "FORWARD.OUT")
+                .withProperty("app.route.forward.stages", "extract,publish")
+                .withProperty("app.route.forward.concurrency", "4")
+                .withProperty("app.route.forward.transaction-timeout-seconds", "30");
+
+        RouteTable routeTable = routeConfig.routeTable(environment, "orders, forward", 2, 1);
+
+        Route orders = routeTable.primary();
+        assertEquals("orders", orders.name());
+        assertEquals(List.of("ORDERS.OUT", "AUDIT.OUT"), orders.outputQueues());
+        assertTrue(orders.validates());
+        assertEquals(Set.of("NEW", "UPDATED"), orders.allowedStatuses());
+        assertEquals(2, orders.concurrency());
+        assertEquals(10, orders.batchSize());
+
+        Route forward = routeTable.routes().get(1);
+        assertFalse(forward.persists());
+        assertTrue(forward.publishes());
+        assertEquals(1, forward.batchSize());
+        assertEquals(30, forward.transactionTimeoutSeconds());
+        assertEquals(6, routeTable.consumers());
+        assertEquals(4, routeTable.secondaryConsumers());
+    }
+
+    @Test
+    void testPriorityLanesShareInputQueue() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("app.route.urgent.input", "DEV.QUEUE.1")
+                .withProperty("app.route.urgent.selector", "JMSPriority >= 7")
+                .withProperty("app.route.urgent.outputs", "DEV.QUEUE.2")
+                .withProperty("app.route.urgent.max-concurrency", "4")
+                .withProperty("app.route.urgent.priority", "10")
+                .withProperty("app.route.bulk.input", "DEV.QUEUE.1")
+                .withProperty("app.route.bulk.selector", "JMSPriority < 7")
+                .withProperty("app.route.bulk.outputs", "DEV.QUEUE.2")
+                .withProperty("app.route.bulk.concurrency", "3");
+
+        RouteTable routeTable = routeConfig.routeTable(environment, "urgent,bulk", 1, 1);
+
+        Route urgent = routeTable.primary();
+        assertEquals("JMSPriority >= 7", urgent.selector());
+        assertEquals(1, urgent.concurrency());
+        assertEquals(4, urgent.maxConcurrency());
+        assertEquals(10, urgent.priority());
+        assertEquals(3, routeTable.routes().get(1).maxConcurrency());
+        assertEquals(4, routeTable.consumers());
+        assertEquals(7, routeTable.maxConsumers());
+        assertTrue(routeTable.prioritized());
+    }
+
+    @Test
+    void testRejectsInvalidRoutes() {
+        assertThrows(IllegalArgumentException.class, () -> Route.parseStages("extract,publish,persist"));
+        assertThrows(IllegalArgumentException.class, () -> Route.parseStages("extract,extract,publish"));
+        assertThrows(IllegalArgumentException.class, () -> Route.parseStages("extract,transform"));
+
+        MockEnvironment noOutputs = new MockEnvironment().withProperty("app.route.a.input", "A.IN");
+        assertThrows(IllegalArgumentException.class, () -> routeConfig.routeTable(noOutputs, "a", 1, 1));
+
+        MockEnvironment sameInput = new MockEnvironment()
+                .withProperty("app.route.a.input", "SHARED.IN")
+                .withProperty("app.route.a.outputs", "A.OUT")
+                .withProperty("app.route.b.input", "SHARED.IN")
+                .withProperty("app.route.b.stages", "extract,persist");
+        assertThrows(IllegalArgumentException.class, () -> routeConfig.routeTable(sameInput, "a,b", 1, 1));
+
+        MockEnvironment oneSelector = new MockEnvironment()
+                .withProperty("app.route.a.input", "SHARED.IN")
+                .withProperty("app.route.a.selector", "JMSPriority >= 7")
+                .withProperty("app.route.a.outputs", "A.OUT")
+                .withProperty("app.route.b.input", "SHARED.IN")
+                .withProperty("app.route.b.stages", "extract,persist");
+        assertThrows(IllegalArgumentException.class, () -> routeConfig.routeTable(oneSelector, "a,b", 1, 1));
+
+        MockEnvironment loop = new MockEnvironment()
+                .withProperty("app.route.a.input", "A.IN")
+                .withProperty("app.route.a.outputs", "A.IN");
+        assertThrows(IllegalArgumentException.class, () -> routeConfig.routeTable(loop, "a", 1, 1));
+    }
+}
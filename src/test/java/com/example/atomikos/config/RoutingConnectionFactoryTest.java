@@ -0,0 +1,81 @@
+package com.example.atomikos.config;
+
+import org.junit.jupiter.api.Test;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RoutingConnectionFactoryTest {
+
+    private final ConnectionFactory qm1 = mock(ConnectionFactory.class);
+    private final ConnectionFactory qm2 = mock(ConnectionFactory.class);
+    private final Connection qm1Connection = mock(Connection.class);
+    private final Connection qm2Connection = mock(Connection.class);
+    private final RoutingConnectionFactory routing = routing();
+
+    private RoutingConnectionFactory routing() {
+        Map<String, ConnectionFactory> connectionFactories = new LinkedHashMap<>();
+        connectionFactories.put("QM1", qm1);
+        connectionFactories.put("QM2", qm2);
+        return new RoutingConnectionFactory(connectionFactories);
+    }
+
+    @Test
+    void testBalancesUnboundConnections() throws Exception {
+        when(qm1.createConnection()).thenReturn(qm1Connection);
+        when(qm2.createConnection()).thenReturn(qm2Connection);
+
+        assertEquals(List.of(qm1Connection, qm2Connection, qm1Connection),
+                     List.of(routing.createConnection(), routing.createConnection(), routing.createConnection()));
+    }
+
+    @Test
+    void testFailsOverWhileQueueManagerIsDown() throws Exception {
+        when(qm1.createConnection()).thenThrow(new JMSException("MQRC_Q_MGR_NOT_AVAILABLE"));
+        when(qm2.createConnection()).thenReturn(qm2Connection);
+
+        assertSame(qm2Connection, routing.createConnection());
+        assertSame(qm2Connection, routing.createConnection());
+
+        when(qm2.createConnection()).thenThrow(new JMSException("MQRC_HOST_NOT_AVAILABLE"));
+        JMSException failure = assertThrows(JMSException.class, routing::createConnection);
+        assertEquals(1, failure.getSuppressed().length);
+    }
+
+    @Test
+    void testBoundThreadUsesItsQueueManager() throws Exception {
+        when(qm2.createConnection()).thenReturn(qm2Connection);
+        AtomicReference<Connection> connections = new AtomicReference<>();
+
+        routing.bindTo("QM2").decorate(() -> {
+            try {
+                routing.createConnection();
+                connections.set(routing.createConnection());
+            } catch (JMSException e) {
+                throw new IllegalStateException(e);
+            }
+        }).run();
+
+        assertSame(qm2Connection, connections.get());
+        verify(qm2, times(2)).createConnection();
+        verifyNoInteractions(qm1);
+        assertThrows(IllegalArgumentException.class, () -> routing.bindTo("QM3"));
+    }
+
+    @Test
+    void testParsesQueueManagerList() {
+        assertEquals(List.of(new MqConnectionSupport.QueueManager("QM2", "mq2(1414)"),
+                             new MqConnectionSupport.QueueManager("QM3", null)),
+                     MqConnectionSupport.parseQueueManagers(" QM2@mq2(1414), QM3 ,"));
+        assertTrue(MqConnectionSupport.parseQueueManagers("").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> MqConnectionSupport.parseQueueManagers("QM2@"));
+    }
+}
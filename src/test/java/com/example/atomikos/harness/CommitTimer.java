@@ -0,0 +1,27 @@
+package com.example.atomikos.harness;
+
+import java.util.Arrays;
+
+/**
+ * Collects transaction commit durations recorded by {@link CommitTimingTransactionManager}.
+ */
+class CommitTimer {
+
+    private long[] durations = new long[1024];
+    private int count;
+
+    synchronized void record(long nanos) {
+        if (count == durations.length) {
+            durations = Arrays.copyOf(durations, count * 2);
+        }
+        durations[count++] = nanos;
+    }
+
+    synchronized void reset() {
+        count = 0;
+    }
+
+    synchronized long[] snapshot() {
+        return Arrays.copyOf(durations, count);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.atomikos.harness;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+
+/**
+ * Delegating transaction manager that times each commit, i.e. the XA prepare and commit
+ * across all enlisted resources.
+ */
+class CommitTimingTransactionManager implements PlatformTransactionManager {
+
+    private final PlatformTransactionManager delegate;
+    private final CommitTimer commitTimer = new CommitTimer();
+
+    CommitTimingTransactionManager(PlatformTransactionManager delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public TransactionStatus getTransaction(TransactionDefinition definition) throws TransactionException {
+        return delegate.getTransaction(definition);
+    }
+
+    @Override
+    public void commit(TransactionStatus status) throws TransactionException {
+        long start = System.nanoTime();
+        try {
+            delegate.commit(status);
+        } finally {
+            if (status.isNewTransaction()) {
+                commitTimer.record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    CommitTimer getCommitTimer() {
+        return commitTimer;
+    }
+
+    @Override
+    public void rollback(TransactionStatus status) throws TransactionException {
+        delegate.rollback(status);
+    }
+}
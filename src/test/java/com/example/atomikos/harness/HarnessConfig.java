@@ -0,0 +1,65 @@
+package com.example.atomikos.harness;
+
+import org.apache.activemq.artemis.api.core.TransportConfiguration;
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.remoting.impl.invm.InVMAcceptorFactory;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.apache.activemq.artemis.jms.client.ActiveMQXAConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.jms.XAConnectionFactory;
+
+/**
+ * Local XA stand-ins for the load harness: an embedded Artemis broker replaces IBM MQ and
+ * H2 in Oracle mode (see {@code application-harness.properties}) replaces Oracle. Both are
+ * wired through the regular Atomikos beans of {@code AtomikosConfig}.
+ */
+@org.springframework.context.annotation.Configuration
+@Profile("harness")
+public class HarnessConfig {
+
+    static final String BROKER_URL = "vm://0";
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public EmbeddedActiveMQ embeddedBroker(@Value("${harness.broker.persistent:false}") boolean persistent,
+                                           @Value("${harness.broker.data-dir:target/harness/artemis}") String dataDir)
+            throws Exception {
+        Configuration configuration = new ConfigurationImpl()
+                .setPersistenceEnabled(persistent)
+                .setSecurityEnabled(false)
+                .setJournalDirectory(dataDir + "/journal")
+                .setBindingsDirectory(dataDir + "/bindings")
+                .setLargeMessagesDirectory(dataDir + "/large-messages")
+                .setPagingDirectory(dataDir + "/paging")
+                .addAcceptorConfiguration(new TransportConfiguration(InVMAcceptorFactory.class.getName()));
+
+        EmbeddedActiveMQ broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuration);
+        return broker;
+    }
+
+    @Bean
+    @DependsOn("embeddedBroker")
+    public XAConnectionFactory artemisXAConnectionFactory() {
+        return new ActiveMQXAConnectionFactory(BROKER_URL);
+    }
+
+    @Bean
+    public static BeanPostProcessor commitTimingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof PlatformTransactionManager transactionManager && "transactionManager".equals(beanName)) {
+                    return new CommitTimingTransactionManager(transactionManager);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.atomikos.harness;
+
+import com.example.atomikos.Application;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.io.File;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Offline end-to-end load harness. Starts the application with the {@code harness} profile, so
+ * the regular Atomikos wiring runs against an embedded Artemis broker and H2, drives messages
+ * into {@code DEV.QUEUE.1} at a fixed rate and measures the latency until the confirmation for
+ * each message arrives on {@code DEV.QUEUE.2}.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.atomikos.harness.LoadHarness}. Settings are read as properties:
+ * <ul>
+ *   <li>{@code harness.messages} - measured messages (default 10000)</li>
+ *   <li>{@code harness.warmup-messages} - messages sent before measuring (default 2000)</li>
+ *   <li>{@code harness.rate} - messages per second, 0 for unthrottled (default 500)</li>
+ *   <li>{@code harness.payload-bytes} - size of the content field, at most 4000 (default 256)</li>
+ *   <li>{@code harness.timeout-seconds} - time to wait for outstanding outputs (default 120)</li>
+ *   <li>{@code harness.result-file} - JSON result file (default target/harness/results.json)</li>
+ * </ul>
+ * Any application property, e.g. {@code app.listener.batch.size}, can be passed the same way.
+ */
+public final class LoadHarness {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadHarness.class);
+
+    private static final String INPUT_QUEUE = "DEV.QUEUE.1";
+    private static final String OUTPUT_QUEUE = "DEV.QUEUE.2";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CommitTimer commitTimer;
+    private final int messages;
+    private final int warmupMessages;
+    private final int rate;
+    private final int payloadBytes;
+    private final long timeoutSeconds;
+
+    private volatile String messageIdPrefix;
+    private long[] sendTimes;
+    private long[] latencies;
+    private volatile CountDownLatch outstanding;
+    private volatile long lastOutputTime;
+
+    private LoadHarness(Environment environment, CommitTimer commitTimer) {
+        this.commitTimer = commitTimer;
+        this.messages = environment.getProperty("harness.messages", Integer.class, 10000);
+        this.warmupMessages = environment.getProperty("harness.warmup-messages", Integer.class, 2000);
+        this.rate = environment.getProperty("harness.rate", Integer.class, 500);
+        this.payloadBytes = Math.min(environment.getProperty("harness.payload-bytes", Integer.class, 256), 4000);
+        this.timeoutSeconds = environment.getProperty("harness.timeout-seconds", Long.class, 120L);
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("com.atomikos.icatch.log_base_dir", "target/harness/atomikos");
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .profiles("harness")
+                .run(args)) {
+            Environment environment = context.getEnvironment();
+            CommitTimer commitTimer = context.getBean("transactionManager", CommitTimingTransactionManager.class)
+                    .getCommitTimer();
+            LoadHarness harness = new LoadHarness(environment, commitTimer);
+
+            ObjectNode results = harness.run(environment);
+
+            File resultFile = new File(environment.getProperty("harness.result-file", "target/harness/results.json"));
+            resultFile.getParentFile().mkdirs();
+            harness.objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultFile, results);
+            logger.warn("Harness results written to {}:\n{}", resultFile, results.toPrettyString());
+        }
+    }
+
+    private ObjectNode run(Environment environment) throws Exception {
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(HarnessConfig.BROKER_URL);
+        try (Connection connection = connectionFactory.createConnection()) {
+            Session consumerSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer consumer = consumerSession.createConsumer(consumerSession.createQueue(OUTPUT_QUEUE));
+            consumer.setMessageListener(message -> onOutput((TextMessage) message));
+            connection.start();
+
+            Session producerSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageProducer producer = producerSession.createProducer(producerSession.createQueue(INPUT_QUEUE));
+            producer.setDeliveryMode(DeliveryMode.PERSISTENT);
+
+            String content = "x".repeat(payloadBytes);
+
+            logger.warn("Warming up with {} messages", warmupMessages);
+            drive(producerSession, producer, content, "W-", warmupMessages);
+            commitTimer.reset();
+
+            logger.warn("Measuring {} messages at {} msg/s with {} byte payloads", messages,
+                    rate > 0 ? rate : "unthrottled", payloadBytes);
+            long start = System.nanoTime();
+            int completed = drive(producerSession, producer, content, "M-", messages);
+            long elapsed = lastOutputTime - start;
+
+            return results(environment, completed, elapsed);
+        }
+    }
+
+    /**
+     * Sends {@code count} messages on a fixed schedule and waits for all confirmations. Latency
+     * is measured from the scheduled send time, so a stalled pipeline is not hidden by the
+     * producer falling behind. Each phase uses its own messageId prefix, as repeated messageIds
+     * are skipped as duplicates by the application.
+     */
+    private int drive(Session session, MessageProducer producer, String content, String prefix, int count)
+            throws Exception {
+        sendTimes = new long[count];
+        latencies = new long[count];
+        Arrays.fill(latencies, -1);
+        outstanding = new CountDownLatch(count);
+        messageIdPrefix = prefix;
+
+        long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        long next = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (intervalNanos > 0) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                sendTimes[i] = next;
+                next += intervalNanos;
+            } else {
+                sendTimes[i] = System.nanoTime();
+            }
+            producer.send(session.createTextMessage(
+                    "{\"messageId\":\"" + prefix + i + "\",\"content\":\"" + content + "\",\"status\":\"NEW\"}"));
+        }
+
+        if (!outstanding.await(timeoutSeconds, TimeUnit.SECONDS)) {
+            logger.warn("Timed out with {} of {} confirmations outstanding", outstanding.getCount(), count);
+        }
+        return count - (int) outstanding.getCount();
+    }
+
+    private void onOutput(TextMessage message) {
+        long now = System.nanoTime();
+        try {
+            String messageId = objectMapper.readTree(message.getText()).path("messageId").asText();
+            String prefix = messageIdPrefix;
+            if (!messageId.startsWith(prefix)) {
+                return;
+            }
+            int index = Integer.parseInt(messageId.substring(prefix.length()));
+            if (index < latencies.length && latencies[index] < 0) {
+                latencies[index] = now - sendTimes[index];
+                lastOutputTime = now;
+                outstanding.countDown();
+            }
+        } catch (JMSException | java.io.IOException | NumberFormatException e) {
+            logger.error("Failed to read output message", e);
+        }
+    }
+
+    private ObjectNode results(Environment environment, int completed, long elapsedNanos) {
+        long[] measured = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+        long[] commits = commitTimer.snapshot();
+        Arrays.sort(commits);
+
+        ObjectNode results = objectMapper.createObjectNode();
+        results.put("timestamp", Instant.now().toString());
+
+        ObjectNode config = results.putObject("config");
+        config.put("messages", messages);
+        config.put("warmupMessages", warmupMessages);
+        config.put("rate", rate);
+        config.put("payloadBytes", payloadBytes);
+        config.put("processingMode", environment.getProperty("app.processing.mode", "xa"));
+        config.put("listenerBatchSize", environment.getProperty("app.listener.batch.size", Integer.class, 1));
+        config.put("listenerConcurrency", environment.getProperty("app.listener.concurrency.min", Integer.class, 1));
+        config.put("listenerMaxConcurrency", environment.getProperty("app.listener.concurrency.max", Integer.class, 10));
+        config.put("listenerVirtualThreads", environment.getProperty("app.listener.virtual-threads", Boolean.class, false));
+
+        results.put("completed", completed);
+        results.put("throughputPerSecond", elapsedNanos > 0 ? completed * 1e9 / elapsedNanos : 0);
+        results.set("latencyMillis", percentiles(measured));
+        ObjectNode commit = percentiles(commits);
+        commit.put("count", commits.length);
+        results.set("commitMillis", commit);
+        return results;
+    }
+
+    private ObjectNode percentiles(long[] sortedNanos) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("p50", toMillis(percentile(sortedNanos, 0.50)));
+        node.put("p99", toMillis(percentile(sortedNanos, 0.99)));
+        node.put("p999", toMillis(percentile(sortedNanos, 0.999)));
+        node.put("max", toMillis(sortedNanos.length > 0 ? sortedNanos[sortedNanos.length - 1] : 0));
+        return node;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
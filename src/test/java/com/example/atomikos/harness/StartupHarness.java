@@ -0,0 +1,139 @@
+package com.example.atomikos.harness;
+
+import com.example.atomikos.Application;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.sql.DataSource;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.time.Instant;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Cold-start benchmark. Measures the time from JVM launch until the first message has been
+ * committed, i.e. its confirmation arrived on {@code DEV.QUEUE.2}, split into JVM startup up to
+ * {@code main}, application context startup, and processing of the first message on a cold
+ * instance. Uses the {@code harness} profile like {@link LoadHarness}.
+ *
+ * <p>Every run needs a fresh JVM, so run the class with {@code java} rather than through
+ * {@code exec:java}, which would measure from the launch of Maven; see TESTING.md. Settings:
+ * <ul>
+ *   <li>{@code harness.timeout-seconds} - time to wait for the first confirmation (default 60)</li>
+ *   <li>{@code harness.result-file} - JSON result file (default target/harness/startup.json)</li>
+ * </ul>
+ * Application properties, e.g. {@code spring.profiles.include=fast-start}, are passed as system properties.
+ */
+public final class StartupHarness {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupHarness.class);
+
+    private static final String INPUT_QUEUE = "DEV.QUEUE.1";
+    private static final String OUTPUT_QUEUE = "DEV.QUEUE.2";
+
+    private StartupHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        long mainEntered = System.currentTimeMillis();
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        System.setProperty("com.atomikos.icatch.log_base_dir", "target/harness/atomikos");
+        createSchema();
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .profiles("harness")
+                .run(args)) {
+            long ready = System.currentTimeMillis();
+            Environment environment = context.getEnvironment();
+            long timeoutMillis = environment.getProperty("harness.timeout-seconds", Long.class, 60L) * 1000;
+
+            long firstCommit = sendFirstMessage(timeoutMillis);
+
+            ObjectMapper objectMapper = new ObjectMapper();
+            ObjectNode results = objectMapper.createObjectNode();
+            results.put("timestamp", Instant.now().toString());
+
+            ObjectNode config = results.putObject("config");
+            config.put("processingMode", environment.getProperty("app.processing.mode", "xa"));
+            config.put("ddlAuto", environment.getProperty("app.jpa.ddl-auto", "update"));
+            config.put("lookupJdbcMetadata", environment.getProperty("app.jpa.lookup-jdbc-metadata", Boolean.class, true));
+            config.put("warmPools", environment.getProperty("app.startup.warm-pools", Boolean.class, false));
+            config.put("sharedArchive", sharedArchive(runtime.getInputArguments()));
+            config.put("javaVersion", Runtime.version().toString());
+
+            long jvmStart = runtime.getStartTime();
+            results.put("completed", firstCommit > 0);
+            results.put("jvmToMainMillis", mainEntered - jvmStart);
+            results.put("contextStartMillis", ready - mainEntered);
+            results.put("firstMessageMillis", firstCommit > 0 ? firstCommit - ready : -1);
+            results.put("jvmToFirstMessageMillis", firstCommit > 0 ? firstCommit - jvmStart : -1);
+
+            File resultFile = new File(environment.getProperty("harness.result-file", "target/harness/startup.json"));
+            resultFile.getParentFile().mkdirs();
+            objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultFile, results);
+            logger.warn("Startup results written to {}:\n{}", resultFile, results.toPrettyString());
+        }
+    }
+
+    /**
+     * Creates the schema before the application starts, as on a production database, so runs
+     * with {@code app.jpa.ddl-auto=none} work and runs with {@code update} find nothing to do.
+     */
+    private static void createSchema() throws Exception {
+        Properties harness = PropertiesLoaderUtils.loadAllProperties("application-harness.properties");
+        DataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                harness.getProperty("spring.datasource.url"), harness.getProperty("spring.datasource.username"),
+                harness.getProperty("spring.datasource.password"));
+        new ResourceDatabasePopulator(new ClassPathResource("db/schema.sql")).execute(dataSource);
+    }
+
+    /**
+     * Sends one message and waits for its confirmation.
+     *
+     * @return the time the confirmation arrived, or 0 on timeout
+     */
+    private static long sendFirstMessage(long timeoutMillis) throws Exception {
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(HarnessConfig.BROKER_URL);
+        try (Connection connection = connectionFactory.createConnection()) {
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer consumer = session.createConsumer(session.createQueue(OUTPUT_QUEUE));
+            connection.start();
+
+            MessageProducer producer = session.createProducer(session.createQueue(INPUT_QUEUE));
+            producer.setDeliveryMode(DeliveryMode.PERSISTENT);
+            producer.send(session.createTextMessage(
+                    "{\"messageId\":\"STARTUP-" + System.nanoTime() + "\",\"content\":\"first\",\"status\":\"NEW\"}"));
+
+            Message confirmation = consumer.receive(timeoutMillis);
+            return confirmation != null ? System.currentTimeMillis() : 0;
+        }
+    }
+
+    private static String sharedArchive(List<String> jvmArguments) {
+        for (String argument : jvmArguments) {
+            if (argument.startsWith("-XX:SharedArchiveFile=")) {
+                return argument.substring("-XX:SharedArchiveFile=".length());
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.atomikos.listener;
+
+import com.atomikos.jms.AtomikosConnectionFactoryBean;
+import com.example.atomikos.config.QueueManagers;
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.service.Route;
+import com.example.atomikos.service.RouteTable;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.core.JmsTemplate;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Message;
+import javax.jms.Queue;
+import javax.jms.QueueBrowser;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AdaptiveConcurrencyControllerTest {
+
+    private final Route route = new Route("default", "DEV.QUEUE.1", null, List.of("DEV.QUEUE.2"),
+                                          Route.parseStages("extract,persist,publish"), 1, 1, 0, 1, 0, Set.of());
+    private final List<ConnectionFactory> leaseTimed = new ArrayList<>();
+
+    // A queue manager whose input queue holds the given number of messages
+    private QueueManagers.Member queueManager(String name, int messages) throws Exception {
+        QueueBrowser browser = mock(QueueBrowser.class);
+        when(browser.getEnumeration()).thenAnswer(invocation ->
+                Collections.enumeration(Collections.nCopies(messages, mock(Message.class))));
+        Session session = mock(Session.class);
+        when(session.createQueue(anyString())).thenReturn(mock(Queue.class));
+        when(session.createBrowser(any(), any())).thenReturn(browser);
+        Connection connection = mock(Connection.class);
+        when(connection.createSession(anyBoolean(), anyInt())).thenReturn(session);
+        ConnectionFactory plain = mock(ConnectionFactory.class);
+        when(plain.createConnection()).thenReturn(connection);
+
+        ConnectionFactory timed = mock(ConnectionFactory.class);
+        leaseTimed.add(timed);
+        return new QueueManagers.Member(name, "ibmMqXA." + name, mock(AtomikosConnectionFactoryBean.class), timed,
+                                        plain);
+    }
+
+    @SuppressWarnings("unchecked")
+    private AdaptiveConcurrencyController controller(int maxConsumers, QueueManagers.Member... members) {
+        ObjectProvider<QueueManagers> queueManagers = mock(ObjectProvider.class);
+        when(queueManagers.getIfAvailable()).thenReturn(new QueueManagers(List.of(members)));
+        return new AdaptiveConcurrencyController(mock(JmsListenerEndpointRegistry.class), mock(JmsTemplate.class),
+                                                 queueManagers, new PipelineMetrics(), consumers -> { },
+                                                 new RouteTable(List.of(route)), 1, maxConsumers, 2, 500, 50);
+    }
+
+    @Test
+    void testSumsBacklogOverQueueManagers() throws Exception {
+        AdaptiveConcurrencyController controller = controller(10, queueManager("QM1", 3), queueManager("QM2", 4));
+
+        assertEquals(7, controller.backlog());
+        // Browsed on plain connections, not through the Atomikos pools
+        for (ConnectionFactory timed : leaseTimed) {
+            verifyNoInteractions(timed);
+        }
+        controller.destroy();
+    }
+
+    @Test
+    void testStopsAtProbeLimit() throws Exception {
+        // (2 + 1) consumers * 2 messages each
+        AdaptiveConcurrencyController controller = controller(2, queueManager("QM1", 5), queueManager("QM2", 5));
+
+        assertEquals(6, controller.backlog());
+        controller.destroy();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.atomikos.listener;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AimdConcurrencyPolicyTest {
+
+    private final AimdConcurrencyPolicy policy = new AimdConcurrencyPolicy(1, 10, 20, 500, 50);
+
+    @Test
+    void testAddsOneConsumerWhileBacklogGrows() {
+        assertEquals(5, policy.next(4, 81, 100, 1));
+        assertEquals(10, policy.next(10, 1000, 100, 1), "Consumer count should not exceed the maximum");
+    }
+
+    @Test
+    void testHalvesConsumersOnSlowTransactions() {
+        assertEquals(4, policy.next(8, 1000, 600, 1));
+    }
+
+    @Test
+    void testHalvesConsumersOnSlowConnectionLeases() {
+        assertEquals(3, policy.next(7, 1000, 100, 80));
+        assertEquals(1, policy.next(1, 1000, 100, 80), "Consumer count should not drop below the minimum");
+    }
+
+    @Test
+    void testReleasesOneConsumerWhenQueueIsEmpty() {
+        assertEquals(5, policy.next(6, 0, 0, 0));
+        assertEquals(1, policy.next(1, 0, 0, 0));
+    }
+
+    @Test
+    void testKeepsConsumersWhileBacklogIsDrained() {
+        assertEquals(4, policy.next(4, 80, 100, 1));
+    }
+
+    @Test
+    void testRejectsInvalidRange() {
+        assertThrows(IllegalArgumentException.class, () -> new AimdConcurrencyPolicy(0, 10, 20, 500, 50));
+        assertThrows(IllegalArgumentException.class, () -> new AimdConcurrencyPolicy(5, 4, 20, 500, 50));
+    }
+}
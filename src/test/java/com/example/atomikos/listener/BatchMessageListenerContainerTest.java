@@ -0,0 +1,148 @@
+package com.example.atomikos.listener;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.listener.SessionAwareMessageListener;
+
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BatchMessageListenerContainerTest {
+
+    private final MessageConsumer consumer = mock(MessageConsumer.class);
+    private final Session session = mock(Session.class);
+    private final List<List<Message>> batches = new ArrayList<>();
+    private final List<Message> singles = new ArrayList<>();
+    // First message of each listener call, in call order
+    private final List<Message> invocations = new ArrayList<>();
+    private BatchMessageListenerContainer container;
+
+    private interface RouteListener extends SessionAwareMessageListener<Message>, BatchMessageListener {
+    }
+
+    @BeforeEach
+    void setUp() {
+        container = new BatchMessageListenerContainer();
+        container.setBatchSize(3);
+        container.setBatchWindowMillis(50);
+        container.setMessageListener(new RouteListener() {
+            @Override
+            public void onMessage(Message message, Session session) {
+                singles.add(message);
+                invocations.add(message);
+            }
+
+            @Override
+            public void onMessages(List<Message> messages, Session session) {
+                batches.add(messages);
+                invocations.add(messages.get(0));
+            }
+        });
+    }
+
+    private static TextMessage message(boolean redelivered) throws Exception {
+        TextMessage message = mock(TextMessage.class);
+        when(message.getJMSRedelivered()).thenReturn(redelivered);
+        return message;
+    }
+
+    private void receiveAndInvoke() throws Exception {
+        Message first = container.receiveMessage(consumer);
+        container.invokeListener(session, first);
+    }
+
+    @Test
+    void testCollectsPrefetchedMessagesUpToBatchSize() throws Exception {
+        TextMessage first = message(false);
+        TextMessage second = message(false);
+        TextMessage third = message(false);
+        TextMessage fourth = message(false);
+        when(consumer.receive(anyLong())).thenReturn(first, second, third, fourth);
+
+        receiveAndInvoke();
+
+        assertEquals(List.of(List.of(first, second, third)), batches);
+        assertTrue(singles.isEmpty());
+        verify(consumer, times(3)).receive(anyLong());
+    }
+
+    @Test
+    void testEndsBatchWhenNothingArrivesWithinWindow() throws Exception {
+        TextMessage first = message(false);
+        when(consumer.receive(anyLong())).thenReturn(first, (Message) null);
+
+        receiveAndInvoke();
+
+        assertEquals(List.of(List.of(first)), batches);
+    }
+
+    @Test
+    void testRedeliveredFirstMessageIsProcessedAlone() throws Exception {
+        TextMessage redelivered = message(true);
+        TextMessage next = message(false);
+        when(consumer.receive(anyLong())).thenReturn(redelivered, next);
+
+        receiveAndInvoke();
+
+        assertEquals(List.of(redelivered), singles);
+        assertTrue(batches.isEmpty());
+        verify(consumer, times(1)).receive(anyLong());
+    }
+
+    @Test
+    void testRedeliveredMessageIsProcessedAloneAheadOfBatch() throws Exception {
+        TextMessage first = message(false);
+        TextMessage redelivered = message(true);
+        TextMessage next = message(false);
+        when(consumer.receive(anyLong())).thenReturn(first, redelivered, next);
+
+        receiveAndInvoke();
+
+        assertEquals(List.of(redelivered), singles);
+        assertEquals(List.of(List.of(first)), batches);
+        assertEquals(List.of(redelivered, first), invocations);
+        verify(consumer, times(2)).receive(anyLong());
+    }
+
+    @Test
+    void testFailingRedeliveredMessageSkipsFreshMessages() throws Exception {
+        TextMessage first = message(false);
+        TextMessage redelivered = message(true);
+        when(consumer.receive(anyLong())).thenReturn(first, redelivered);
+        container.setMessageListener(new RouteListener() {
+            @Override
+            public void onMessage(Message message, Session session) {
+                throw new IllegalStateException("still failing");
+            }
+
+            @Override
+            public void onMessages(List<Message> messages, Session session) {
+                batches.add(messages);
+            }
+        });
+
+        assertThrows(RuntimeException.class, this::receiveAndInvoke);
+
+        assertTrue(batches.isEmpty());
+    }
+
+    @Test
+    void testBatchSizeOneInvokesRegularListener() throws Exception {
+        container.setBatchSize(1);
+        TextMessage first = message(false);
+        when(consumer.receive(anyLong())).thenReturn(first);
+
+        receiveAndInvoke();
+
+        assertEquals(List.of(first), singles);
+        assertTrue(batches.isEmpty());
+    }
+}
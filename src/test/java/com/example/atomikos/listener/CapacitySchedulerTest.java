@@ -0,0 +1,132 @@
+package com.example.atomikos.listener;
+
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.service.Route;
+import com.example.atomikos.service.RouteTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapacitySchedulerTest {
+
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics();
+
+    private static Route route(String name, String selector, int concurrency, int maxConcurrency, int priority) {
+        return new Route(name, "DEV.QUEUE.1", selector, List.of("DEV.QUEUE.2"),
+                         Route.parseStages("extract,persist,publish"), concurrency, maxConcurrency, priority, 1, 0,
+                         Set.of());
+    }
+
+    @Test
+    void testUrgentRouteBorrowsIdleBulkCapacity() {
+        Route urgent = route("urgent", "JMSPriority >= 7", 1, 3, 10);
+        Route bulk = route("bulk", "JMSPriority < 7", 2, 2, 0);
+        CapacityScheduler scheduler = new CapacityScheduler(new RouteTable(List.of(urgent, bulk)), 1, 1000, pipelineMetrics);
+
+        assertTrue(scheduler.tryAcquire(urgent));
+        assertTrue(scheduler.tryAcquire(urgent), "Urgent should borrow a slot the bulk route is not using");
+        assertTrue(scheduler.tryAcquire(bulk));
+        assertFalse(scheduler.tryAcquire(urgent), "Nothing is left to borrow");
+        assertFalse(scheduler.tryAcquire(bulk), "The lent slot only comes back once urgent releases one");
+
+        scheduler.release(urgent);
+        assertTrue(scheduler.tryAcquire(bulk));
+    }
+
+    @Test
+    void testBulkRouteNeverTakesUrgentReservation() {
+        Route urgent = route("urgent", "JMSPriority >= 7", 2, 2, 10);
+        Route bulk = route("bulk", "JMSPriority < 7", 2, 6, 0);
+        CapacityScheduler scheduler = new CapacityScheduler(new RouteTable(List.of(urgent, bulk)), 1, 1000, pipelineMetrics);
+
+        assertTrue(scheduler.tryAcquire(bulk));
+        assertTrue(scheduler.tryAcquire(bulk));
+        assertFalse(scheduler.tryAcquire(bulk), "Bulk may not borrow the idle urgent slots");
+        assertTrue(scheduler.tryAcquire(urgent));
+        assertTrue(scheduler.tryAcquire(urgent));
+    }
+
+    @Test
+    void testLowerRouteDoesNotReclaimThroughHigherReservation() {
+        Route urgent = route("urgent", "JMSPriority >= 7", 1, 1, 10);
+        Route normal = route("normal", "JMSPriority BETWEEN 4 AND 6", 1, 2, 5);
+        Route bulk = route("bulk", "JMSPriority < 4", 1, 1, 0);
+        CapacityScheduler scheduler = new CapacityScheduler(new RouteTable(List.of(urgent, normal, bulk)), 1, 1000,
+                                                            pipelineMetrics);
+
+        assertTrue(scheduler.tryAcquire(normal));
+        assertTrue(scheduler.tryAcquire(normal), "Normal should borrow the idle bulk slot");
+        assertFalse(scheduler.tryAcquire(bulk), "The last free slot is reserved for urgent");
+        assertTrue(scheduler.tryAcquire(urgent));
+    }
+
+    @Test
+    void testAcquireWaitsForRelease() throws Exception {
+        Route urgent = route("urgent", "JMSPriority >= 7", 1, 2, 10);
+        Route bulk = route("bulk", "JMSPriority < 7", 1, 1, 0);
+        CapacityScheduler scheduler = new CapacityScheduler(new RouteTable(List.of(urgent, bulk)), 1, 1000, pipelineMetrics);
+        assertTrue(scheduler.acquire(urgent));
+        assertTrue(scheduler.acquire(urgent));
+
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> acquire(scheduler, bulk));
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+        scheduler.release(urgent);
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testAcquireGivesUpAfterMaxWait() throws Exception {
+        Route urgent = route("urgent", "JMSPriority >= 7", 1, 2, 10);
+        Route bulk = route("bulk", "JMSPriority < 7", 1, 1, 0);
+        CapacityScheduler scheduler = new CapacityScheduler(new RouteTable(List.of(urgent, bulk)), 1, 50,
+                                                            pipelineMetrics);
+        assertTrue(scheduler.acquire(urgent));
+        assertTrue(scheduler.acquire(urgent));
+
+        assertFalse(scheduler.awaitAvailable(bulk));
+        assertFalse(scheduler.acquire(bulk));
+    }
+
+    @Test
+    void testReleasedSlotReturnsToWaitingRoute() throws Exception {
+        Route urgent = route("urgent", "JMSPriority >= 7", 1, 2, 10);
+        Route bulk = route("bulk", "JMSPriority < 7", 1, 1, 0);
+        CapacityScheduler scheduler = new CapacityScheduler(new RouteTable(List.of(urgent, bulk)), 1, 1000,
+                                                            pipelineMetrics);
+        assertTrue(scheduler.acquire(urgent));
+        assertTrue(scheduler.acquire(urgent));
+
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> acquire(scheduler, bulk));
+        Thread.sleep(100);
+        scheduler.release(urgent);
+        assertFalse(scheduler.tryAcquire(urgent), "The slot bulk is waiting for is not lent again");
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testRoutesGrowOnlyToBorrowableCapacity() {
+        Route urgent = route("urgent", "JMSPriority >= 7", 2, 10, 10);
+        Route normal = route("normal", "JMSPriority BETWEEN 4 AND 6", 2, 3, 5);
+        Route bulk = route("bulk", "JMSPriority < 4", 1, 1, 0);
+        RouteTable routeTable = new RouteTable(List.of(urgent, normal, bulk));
+
+        assertEquals(5, routeTable.maxConcurrency(urgent));
+        assertEquals(3, routeTable.maxConcurrency(normal));
+        assertEquals(1, routeTable.maxConcurrency(bulk));
+        assertEquals(9, routeTable.maxConsumers());
+    }
+
+    private static boolean acquire(CapacityScheduler scheduler, Route route) {
+        try {
+            return scheduler.acquire(route);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
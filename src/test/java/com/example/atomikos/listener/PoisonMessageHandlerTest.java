@@ -0,0 +1,104 @@
+package com.example.atomikos.listener;
+
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.service.InvalidMessageException;
+import com.example.atomikos.service.MessageProcessingException;
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jms.core.JmsTemplate;
+
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PoisonMessageHandlerTest {
+
+    private final Session session = mock(Session.class);
+    private final MessageProducer producer = mock(MessageProducer.class);
+    private final TextMessage copy = mock(TextMessage.class);
+    private PoisonMessageHandler handler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Queue deadLetterQueue = mock(Queue.class);
+        when(session.createQueue("DEV.DEAD.LETTER.QUEUE")).thenReturn(deadLetterQueue);
+        when(session.createProducer(deadLetterQueue)).thenReturn(producer);
+        when(session.createTextMessage(anyString())).thenReturn(copy);
+        handler = new PoisonMessageHandler(mock(JmsTemplate.class), new PipelineMetrics(), 3, "DEV.DEAD.LETTER.QUEUE");
+    }
+
+    @Test
+    void testDeadLettersInvalidMessageOnFirstDelivery() throws Exception {
+        TextMessage message = message("ID:1", false, 1);
+        InvalidMessageException failure = new InvalidMessageException(
+                "Invalid JSON message format", new JsonParseException(null, "Unexpected end-of-input"), "invalid_json");
+
+        handler.handleFailure(session, message, "DEV.QUEUE.1", failure);
+
+        verify(session).createTextMessage("{\"messageId\":");
+        verify(copy).setObjectProperty("orderId", "42");
+        verify(copy).setStringProperty(PoisonMessageHandler.CAUSE_PROPERTY, "invalid_json");
+        verify(copy).setStringProperty(PoisonMessageHandler.ORIGINAL_MESSAGE_ID_PROPERTY, "ID:1");
+        verify(copy).setStringProperty(PoisonMessageHandler.ORIGINAL_QUEUE_PROPERTY, "DEV.QUEUE.1");
+        verify(copy).setIntProperty(PoisonMessageHandler.DELIVERY_COUNT_PROPERTY, 1);
+        verify(producer).send(copy);
+    }
+
+    @Test
+    void testRethrowsTransientFailureUntilBackoutThreshold() throws Exception {
+        MessageProcessingException failure = new MessageProcessingException(
+                "Failed to publish message to output queue", null, "jms", false);
+
+        assertThrows(MessageProcessingException.class,
+                     () -> handler.handleFailure(session, message("ID:2", false, 1), "DEV.QUEUE.1", failure));
+        assertFalse(handler.deadLetterIfExhausted(session, message("ID:2", true, 3), "DEV.QUEUE.1"));
+        assertTrue(handler.deadLetterIfExhausted(session, message("ID:2", true, 4), "DEV.QUEUE.1"));
+
+        verify(copy).setStringProperty(PoisonMessageHandler.CAUSE_PROPERTY, "backout_threshold");
+        verify(copy).setIntProperty(PoisonMessageHandler.DELIVERY_COUNT_PROPERTY, 4);
+        verify(producer, times(1)).send(copy);
+    }
+
+    @Test
+    void testDeadLettersRedeliveryOfPermanentFailure() throws Exception {
+        MessageProcessingException failure = new MessageProcessingException(
+                "Failed to save message to database", new DataIntegrityViolationException("ORA-12899"), "database", true);
+
+        assertThrows(MessageProcessingException.class,
+                     () -> handler.handleFailure(session, message("ID:3", false, 1), "DEV.QUEUE.1", failure));
+        verify(producer, never()).send(any());
+
+        assertTrue(handler.deadLetterIfExhausted(session, message("ID:3", true, 2), "DEV.QUEUE.1"));
+        verify(copy).setStringProperty(PoisonMessageHandler.CAUSE_PROPERTY, "database");
+        verify(producer).send(copy);
+    }
+
+    @Test
+    void testFirstDeliveryIsNeverDeadLettered() throws Exception {
+        assertFalse(handler.deadLetterIfExhausted(session, message("ID:4", false, 10), "DEV.QUEUE.1"));
+
+        verify(producer, never()).send(any());
+    }
+
+    private static TextMessage message(String jmsMessageId, boolean redelivered, int deliveryCount) throws Exception {
+        TextMessage message = mock(TextMessage.class);
+        when(message.getJMSMessageID()).thenReturn(jmsMessageId);
+        when(message.getJMSRedelivered()).thenReturn(redelivered);
+        when(message.getText()).thenReturn("{\"messageId\":");
+        when(message.propertyExists("JMSXDeliveryCount")).thenReturn(true);
+        when(message.getIntProperty("JMSXDeliveryCount")).thenReturn(deliveryCount);
+        when(message.getPropertyNames()).thenAnswer(
+                invocation -> Collections.enumeration(List.of("orderId", "JMSXDeliveryCount")));
+        when(message.getObjectProperty("orderId")).thenReturn("42");
+        return message;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.atomikos.listener;
+
+import com.example.atomikos.service.MessageJsonCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.Message;
+import javax.jms.TextMessage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StripeKeyResolverTest {
+
+    private final MessageJsonCodec codec = new MessageJsonCodec(new ObjectMapper());
+
+    @Test
+    void testKeysByJsonField() throws Exception {
+        StripeKeyResolver resolver = new StripeKeyResolver(codec, "messageId", null, 4);
+
+        assertEquals("MSG-001", resolver.keyOf(textMessage("{\"messageId\":\"MSG-001\"}", "ID:1")));
+        assertEquals(resolver.laneOf(textMessage("{\"messageId\":\"MSG-001\",\"status\":\"NEW\"}", "ID:1")),
+                     resolver.laneOf(textMessage("{\"status\":\"DONE\",\"messageId\":\"MSG-001\"}", "ID:2")),
+                     "Messages with the same key should share a lane");
+    }
+
+    @Test
+    void testKeysByJmsPropertyWhenConfigured() throws Exception {
+        StripeKeyResolver resolver = new StripeKeyResolver(codec, "messageId", "orderId", 4);
+        TextMessage message = textMessage("{\"messageId\":\"MSG-001\"}", "ID:1");
+        when(message.getStringProperty("orderId")).thenReturn("ORDER-9");
+
+        assertEquals("ORDER-9", resolver.keyOf(message));
+    }
+
+    @Test
+    void testFallsBackToJmsMessageId() throws Exception {
+        StripeKeyResolver resolver = new StripeKeyResolver(codec, "messageId", null, 4);
+
+        assertEquals("ID:1", resolver.keyOf(textMessage("{\"content\":\"no key\"}", "ID:1")));
+        assertEquals("ID:2", resolver.keyOf(textMessage("not json", "ID:2")));
+
+        Message bytesMessage = mock(Message.class);
+        when(bytesMessage.getJMSMessageID()).thenReturn("ID:3");
+        assertEquals("ID:3", resolver.keyOf(bytesMessage));
+    }
+
+    @Test
+    void testLanesCoverRange() {
+        StripeKeyResolver resolver = new StripeKeyResolver(codec, "messageId", null, 3);
+
+        for (int i = 0; i < 100; i++) {
+            int lane = resolver.laneOf("MSG-" + i);
+            assertTrue(lane >= 0 && lane < 3);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new StripeKeyResolver(codec, "messageId", null, 0));
+    }
+
+    private static TextMessage textMessage(String text, String jmsMessageId) throws Exception {
+        TextMessage message = mock(TextMessage.class);
+        when(message.getText()).thenReturn(text);
+        when(message.getJMSMessageID()).thenReturn(jmsMessageId);
+        return message;
+    }
+}
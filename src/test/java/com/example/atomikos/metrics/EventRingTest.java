@@ -0,0 +1,69 @@
+package com.example.atomikos.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventRingTest {
+
+    @Test
+    void testPollsInOrderAndRejectsWhenFull() {
+        EventRing<Integer> ring = new EventRing<>(3);
+        assertEquals(4, ring.capacity());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4), "A full ring should reject instead of blocking");
+        assertEquals(4, ring.size());
+
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4), "A polled slot should be reused on the next lap");
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, ring.poll());
+        }
+        assertNull(ring.poll());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void testConcurrentProducersLoseNothing() throws Exception {
+        EventRing<Integer> ring = new EventRing<>(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            int base = p * 100_000;
+            producers.add(executor.submit(() -> {
+                int rejected = 0;
+                for (int i = 0; i < 20_000; i++) {
+                    while (!ring.offer(base + i)) {
+                        rejected++;
+                        Thread.onSpinWait();
+                    }
+                }
+                return rejected;
+            }));
+        }
+
+        Set<Integer> received = new HashSet<>();
+        while (received.size() < 80_000) {
+            Integer element = ring.poll();
+            if (element != null) {
+                assertTrue(received.add(element), "Element " + element + " was polled twice");
+            }
+        }
+        for (Future<Integer> producer : producers) {
+            producer.get();
+        }
+        executor.shutdown();
+        assertNull(ring.poll());
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.atomikos.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageEventLogTest {
+
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private MessageEventLog eventLog(int bufferSize, double sampleRate) {
+        pipelineMetrics.bindTo(meterRegistry);
+        return new MessageEventLog(new ObjectMapper(), pipelineMetrics, true, bufferSize, 50, sampleRate, 10);
+    }
+
+    @Test
+    void testSamplesAndTruncatesPayload() {
+        assertEquals("0123456789...", eventLog(8, 1.0).samplePayload("0123456789abcdef"));
+        assertEquals("short", eventLog(8, 1.0).samplePayload("short"));
+        assertNull(eventLog(8, 0.0).samplePayload("short"));
+    }
+
+    @Test
+    void testDropsEventsWhenBufferIsFull() {
+        MessageEventLog eventLog = eventLog(2, 0.0);
+        for (int i = 0; i < 5; i++) {
+            MessageEventLog.Recording recording = eventLog.begin("default", "ID:" + i, 1, "{}");
+            recording.extracted("MSG-" + i);
+            eventLog.finish(recording, "processed", null);
+        }
+
+        assertEquals(3.0, meterRegistry.get("app.events.dropped").counter().count());
+        assertEquals(2.0, meterRegistry.get("app.events.pending").gauge().value());
+        assertEquals(2, eventLog.drain());
+        assertEquals(0.0, meterRegistry.get("app.events.pending").gauge().value());
+    }
+}
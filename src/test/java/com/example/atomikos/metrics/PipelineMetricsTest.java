@@ -0,0 +1,41 @@
+package com.example.atomikos.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineMetricsTest {
+
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testReusesMeterPerTagCombination() {
+        pipelineMetrics.bindTo(meterRegistry);
+
+        pipelineMetrics.recordXa("commit", "oracleDataSource", false, 1_000_000);
+        pipelineMetrics.recordXa("commit", "oracleDataSource", false, 3_000_000);
+        pipelineMetrics.recordXa("commit", "oracleDataSource", true, 2_000_000);
+
+        assertEquals(2, meterRegistry.get("app.xa.commit").timers().size());
+        assertEquals(2, meterRegistry.get("app.xa.commit").tag("onePhase", "false").timer().count());
+        assertEquals(1, meterRegistry.get("app.xa.commit").tag("onePhase", "true").timer().count());
+    }
+
+    @Test
+    void testAttributesRedeliveryToRollbackCause() {
+        pipelineMetrics.bindTo(meterRegistry);
+
+        pipelineMetrics.recordRollback("database", List.of("ID:1", "ID:2"));
+        pipelineMetrics.recordRedelivery("ID:1");
+        pipelineMetrics.recordRedelivery("ID:2");
+        pipelineMetrics.recordRedelivery("ID:3");
+
+        assertEquals(1.0, meterRegistry.get("app.message.rollback").tag("cause", "database").counter().count());
+        assertEquals(2.0, meterRegistry.get("app.message.redelivery").tag("cause", "database").counter().count());
+        assertEquals(1.0, meterRegistry.get("app.message.redelivery").tag("cause", "unknown").counter().count());
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.atomikos.repository;
+
+import com.example.atomikos.repository.MessageDataQueryRepository.Keyset;
+import com.example.atomikos.repository.MessageDataQueryRepository.MessageKey;
+import com.example.atomikos.repository.MessageDataQueryRepository.MessageRow;
+import com.example.atomikos.entity.MessageData;
+import com.example.atomikos.service.ContentCompressor;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageDataQueryRepositoryTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 11, 6, 9, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private MessageDataQueryRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:query;MODE=Oracle;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS MESSAGE_DATA");
+        jdbcTemplate.execute("CREATE TABLE MESSAGE_DATA (ID NUMBER PRIMARY KEY, MESSAGE_ID VARCHAR2(255), " +
+                             "MESSAGE_CONTENT VARCHAR2(4000), MESSAGE_CONTENT_LOB CLOB, CONTENT_ENCODING VARCHAR2(16), " +
+                             "MESSAGE_CONTENT_COMPRESSED BLOB, CREATED_AT TIMESTAMP, " +
+                             "STATUS VARCHAR2(50))");
+        // Rows 1-3 share a timestamp, so paging has to break ties by ID
+        insert(1, "NEW", START, "one");
+        insert(2, "NEW", START, "two");
+        insert(3, "DONE", START, "three");
+        insert(4, "NEW", START.plusMinutes(1), "four");
+        insert(5, "NEW", START.plusMinutes(2), "five");
+        jdbcTemplate.update("UPDATE MESSAGE_DATA SET MESSAGE_CONTENT = NULL, MESSAGE_CONTENT_LOB = ? WHERE ID = 5",
+                            "large five");
+        repository = new MessageDataQueryRepository(jdbcTemplate);
+    }
+
+    @Test
+    void testFindsByMessageId() {
+        MessageRow row = repository.findByMessageId("MSG-2").orElseThrow();
+
+        assertEquals(2, row.id());
+        assertEquals("two", row.content());
+        assertFalse(row.largeContent());
+        assertTrue(repository.findByMessageId("MSG-9").isEmpty());
+        assertTrue(repository.findByMessageId("MSG-5").orElseThrow().largeContent());
+    }
+
+    @Test
+    void testPagesByKeysetWithinStatus() {
+        assertEquals(List.of(1L, 2L), page("NEW", null, 2));
+        assertEquals(List.of(4L, 5L), page("NEW", new Keyset(START, 2), 2));
+        assertEquals(List.of(), page("NEW", new Keyset(START.plusMinutes(2), 5), 2));
+    }
+
+    @Test
+    void testFiltersByCreatedAtRange() {
+        List<Long> ids = new ArrayList<>();
+        repository.streamPage(null, START, START.plusMinutes(2), null, 10, row -> ids.add(row.id()));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids);
+    }
+
+    @Test
+    void testDecompressesCompressedContent() throws Exception {
+        insert(6, "NEW", START.plusMinutes(3), null);
+        jdbcTemplate.update("UPDATE MESSAGE_DATA SET CONTENT_ENCODING = ?, MESSAGE_CONTENT_COMPRESSED = ? WHERE ID = 6",
+                            MessageData.DEFLATE, ContentCompressor.compress(new StringReader("compressed six"), 1));
+        StringWriter content = new StringWriter();
+
+        assertTrue(repository.copyContent("MSG-6", content));
+        assertEquals("compressed six", content.toString());
+        MessageRow row = repository.findByMessageId("MSG-6").orElseThrow();
+        assertNull(row.content());
+        assertTrue(row.largeContent());
+    }
+
+    @Test
+    void testStreamsKeysFromKeyset() {
+        List<MessageKey> keys = new ArrayList<>();
+        repository.streamKeys("NEW", null, null, new Keyset(START, 1), 2, 1000, keys::add);
+
+        assertEquals(List.of(new MessageKey(2, "MSG-2", START), new MessageKey(4, "MSG-4", START.plusMinutes(1))), keys);
+        assertEquals(new Keyset(START.plusMinutes(1), 4), keys.get(1).keyset());
+    }
+
+    @Test
+    void testCopiesInlineAndLobContent() {
+        StringWriter inline = new StringWriter();
+        StringWriter lob = new StringWriter();
+
+        assertTrue(repository.copyContent("MSG-1", inline));
+        assertTrue(repository.copyContent("MSG-5", lob));
+        assertFalse(repository.copyContent("MSG-9", new StringWriter()));
+        assertEquals("one", inline.toString());
+        assertEquals("large five", lob.toString());
+    }
+
+    private List<Long> page(String status, Keyset after, int limit) {
+        List<Long> ids = new ArrayList<>();
+        repository.streamPage(status, null, null, after, limit, row -> ids.add(row.id()));
+        return ids;
+    }
+
+    private void insert(long id, String status, LocalDateTime createdAt, String content) {
+        jdbcTemplate.update("INSERT INTO MESSAGE_DATA (ID, MESSAGE_ID, MESSAGE_CONTENT, CREATED_AT, STATUS) " +
+                            "VALUES (?, ?, ?, ?, ?)", id, "MSG-" + id, content, createdAt, status);
+    }
+}
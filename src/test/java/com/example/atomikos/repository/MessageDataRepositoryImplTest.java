@@ -0,0 +1,133 @@
+package com.example.atomikos.repository;
+
+import com.example.atomikos.entity.MessageData;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.dialect.H2Dialect;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageDataRepositoryImplTest {
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private Connection first;
+    private Connection second;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:merge;MODE=Oracle;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS MESSAGE_DATA");
+        jdbcTemplate.execute("CREATE TABLE MESSAGE_DATA (ID NUMBER PRIMARY KEY, MESSAGE_ID VARCHAR2(255) NOT NULL, " +
+                             "MESSAGE_CONTENT VARCHAR2(4000), MESSAGE_CONTENT_LOB CLOB, CONTENT_ENCODING VARCHAR2(16), " +
+                             "MESSAGE_CONTENT_COMPRESSED BLOB, CREATED_AT TIMESTAMP NOT NULL, STATUS VARCHAR2(50))");
+        jdbcTemplate.execute("CREATE UNIQUE INDEX UX_MESSAGE_DATA_MESSAGE_ID ON MESSAGE_DATA (MESSAGE_ID)");
+        first = dataSource.getConnection();
+        first.setAutoCommit(false);
+        second = dataSource.getConnection();
+        second.setAutoCommit(false);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void testMergeSkipsStoredMessageId() throws SQLException {
+        assertTrue(MessageDataRepositoryImpl.merge(first, 1, new MessageData("MSG-1", "{}", "RECEIVED")));
+        assertFalse(MessageDataRepositoryImpl.merge(first, 2, new MessageData("MSG-1", "{}", "RECEIVED")));
+        first.commit();
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM MESSAGE_DATA", Integer.class));
+    }
+
+    @Test
+    void testConcurrentInsertIsReportedAsDuplicate() throws Exception {
+        assertTrue(MessageDataRepositoryImpl.merge(first, 1, new MessageData("MSG-1", "{}", "RECEIVED")));
+
+        // The uncommitted row is invisible to the second MERGE, whose insert waits on the unique index
+        CompletableFuture<Boolean> concurrent = CompletableFuture.supplyAsync(() -> {
+            try {
+                return MessageDataRepositoryImpl.merge(second, 2, new MessageData("MSG-1", "{}", "RECEIVED"));
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(200);
+        first.commit();
+
+        assertFalse(concurrent.get(5, TimeUnit.SECONDS));
+        // The transaction survives the failed statement
+        assertTrue(MessageDataRepositoryImpl.merge(second, 3, new MessageData("MSG-2", "{}", "RECEIVED")));
+        second.commit();
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM MESSAGE_DATA", Integer.class));
+    }
+
+    @Test
+    void testOtherViolationsAreNotDuplicates() {
+        MessageData withoutMessageId = new MessageData(null, "{}", "RECEIVED");
+
+        assertThrows(SQLException.class, () -> MessageDataRepositoryImpl.merge(first, 1, withoutMessageId));
+    }
+
+    @Test
+    void testMergeTakesIdsFromPooledLoBlock() {
+        try (SessionFactory sessionFactory = new Configuration()
+                .addAnnotatedClass(MessageData.class)
+                .setProperty(AvailableSettings.URL, "jdbc:h2:mem:pooled;MODE=Oracle;DB_CLOSE_DELAY=-1")
+                .setProperty(AvailableSettings.USER, "sa")
+                .setProperty(AvailableSettings.DIALECT, H2Dialect.class.getName())
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .setProperty(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled-lo")
+                .buildSessionFactory();
+             Session session = sessionFactory.openSession()) {
+            MessageDataRepositoryImpl repository = new MessageDataRepositoryImpl(50);
+            ReflectionTestUtils.setField(repository, "entityManager", session);
+
+            session.beginTransaction();
+            assertTrue(repository.insertIfAbsent(new MessageData("MSG-1", "{}", "RECEIVED")));
+            assertFalse(repository.insertIfAbsent(new MessageData("MSG-1", "{}", "RECEIVED")));
+            assertTrue(repository.insertIfAbsent(new MessageData("MSG-2", "{}", "RECEIVED")));
+            session.getTransaction().commit();
+
+            // All from the first block of 50; the duplicate's ID is left unused
+            List<Long> ids = session.createNativeQuery("SELECT ID FROM MESSAGE_DATA ORDER BY ID").getResultList()
+                    .stream().map(id -> ((Number) id).longValue()).toList();
+            assertEquals(List.of(1L, 3L), ids);
+            assertEquals(51L, ((Number) session.createNativeQuery("SELECT MESSAGE_DATA_SEQ.NEXTVAL FROM DUAL")
+                    .getSingleResult()).longValue());
+        }
+    }
+
+    @Test
+    void testRecognizesOracleMessageIdViolation() {
+        SQLException messageId = new SQLException(
+                "ORA-00001: unique constraint (APP.UX_MESSAGE_DATA_MESSAGE_ID) violated", "23000", 1);
+        SQLException primaryKey = new SQLException(
+                "ORA-00001: unique constraint (APP.SYS_C008123) violated", "23000", 1);
+
+        assertTrue(MessageDataRepositoryImpl.isMessageIdViolation(
+                new DataIntegrityViolationException("could not execute statement", messageId)));
+        assertFalse(MessageDataRepositoryImpl.isMessageIdViolation(
+                new DataIntegrityViolationException("could not execute statement", primaryKey)));
+    }
+}
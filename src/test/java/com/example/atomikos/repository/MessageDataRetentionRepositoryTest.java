@@ -0,0 +1,79 @@
+package com.example.atomikos.repository;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageDataRetentionRepositoryTest {
+
+    private static final LocalDateTime CUTOFF = LocalDateTime.of(2025, 11, 6, 0, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private MessageDataRetentionRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:retention;MODE=Oracle;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS MESSAGE_DATA");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS MESSAGE_DATA_ARCHIVE");
+        jdbcTemplate.execute("CREATE TABLE MESSAGE_DATA (ID NUMBER PRIMARY KEY, MESSAGE_ID VARCHAR2(255), " +
+                             "CREATED_AT TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE MESSAGE_DATA_ARCHIVE (ID NUMBER PRIMARY KEY, MESSAGE_ID VARCHAR2(255), " +
+                             "CREATED_AT TIMESTAMP)");
+        for (int i = 1; i <= 5; i++) {
+            insert(i, CUTOFF.minusDays(1));
+        }
+        insert(6, CUTOFF);
+        insert(7, CUTOFF.plusDays(1));
+        repository = new MessageDataRetentionRepository(jdbcTemplate);
+    }
+
+    @Test
+    void testDeletesExpiredRowsInBoundedBatches() {
+        assertEquals(2, repository.purgeBatch(CUTOFF, 2, null));
+        assertEquals(2, repository.purgeBatch(CUTOFF, 2, null));
+        assertEquals(1, repository.purgeBatch(CUTOFF, 2, null));
+        assertEquals(0, repository.purgeBatch(CUTOFF, 2, null));
+
+        assertEquals(List.of(6L, 7L), ids("MESSAGE_DATA"));
+    }
+
+    @Test
+    void testArchivesRowsBeforeDeleting() {
+        assertEquals(5, repository.purgeBatch(CUTOFF, 10, "MESSAGE_DATA_ARCHIVE"));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids("MESSAGE_DATA_ARCHIVE"));
+        assertEquals(List.of(6L, 7L), ids("MESSAGE_DATA"));
+    }
+
+    @Test
+    void testTableWithoutDictionaryViewsIsNotPartitioned() {
+        assertFalse(repository.isPartitioned());
+    }
+
+    @Test
+    void testParsesPartitionHighValues() {
+        assertEquals(LocalDateTime.of(2025, 11, 7, 0, 0),
+                     MessageDataRetentionRepository.parseHighValue("TIMESTAMP' 2025-11-07 00:00:00'"));
+        assertEquals(LocalDateTime.of(2025, 11, 7, 0, 0), MessageDataRetentionRepository.parseHighValue(
+                "TO_DATE(' 2025-11-07 00:00:00', 'SYYYY-MM-DD HH24:MI:SS', 'NLS_CALENDAR=GREGORIAN')"));
+        assertNull(MessageDataRetentionRepository.parseHighValue("MAXVALUE"));
+    }
+
+    private List<Long> ids(String table) {
+        return jdbcTemplate.queryForList("SELECT ID FROM " + table + " ORDER BY ID", Long.class);
+    }
+
+    private void insert(long id, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO MESSAGE_DATA (ID, MESSAGE_ID, CREATED_AT) VALUES (?, ?, ?)",
+                            id, "MSG-" + id, createdAt);
+    }
+}
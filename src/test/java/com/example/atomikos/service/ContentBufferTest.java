@@ -0,0 +1,50 @@
+package com.example.atomikos.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentBufferTest {
+
+    @Test
+    void testReadsBackContentAcrossChunks() throws Exception {
+        String content = "0123456789".repeat(2000) + "end";
+        ContentBuffer buffer = new ContentBuffer();
+        buffer.write(content, 0, 5000);
+        buffer.write(content.toCharArray(), 5000, content.length() - 5000);
+
+        assertEquals(content.length(), buffer.length());
+        assertEquals(content, buffer.toString());
+        assertEquals(content, readAll(buffer.reader()));
+        assertEquals(content, readAll(buffer.reader()), "Each reader should start at the beginning");
+    }
+
+    @Test
+    void testTransfersFromReader() throws Exception {
+        String content = "x".repeat(8192) + "y";
+
+        ContentBuffer buffer = new ContentBuffer().transferFrom(new StringReader(content));
+
+        assertEquals(8193, buffer.length());
+        assertEquals(content, readAll(buffer.reader()));
+    }
+
+    @Test
+    void testEmptyBuffer() throws Exception {
+        ContentBuffer buffer = new ContentBuffer();
+
+        assertEquals(0, buffer.length());
+        assertEquals("", buffer.toString());
+        assertEquals(-1, buffer.reader().read(new char[16], 0, 16));
+    }
+
+    private static String readAll(Reader reader) throws Exception {
+        StringWriter writer = new StringWriter();
+        reader.transferTo(writer);
+        return writer.toString();
+    }
+}
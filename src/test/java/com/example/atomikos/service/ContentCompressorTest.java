@@ -0,0 +1,70 @@
+package com.example.atomikos.service;
+
+import com.example.atomikos.entity.MessageData;
+import com.example.atomikos.metrics.PipelineMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentCompressorTest {
+
+    private static final String CONTENT = "{\"orderId\":\"ORD-1\",\"note\":\"grüße\"}".repeat(100);
+
+    private final ContentCompressor compressor = new ContentCompressor(new PipelineMetrics(), true, 1024, 1);
+
+    @Test
+    void testCompressesInlineContentAboveThreshold() throws Exception {
+        MessageData messageData = compressor.compress(new MessageData("MSG-1", CONTENT, "NEW"));
+
+        assertTrue(messageData.isCompressed());
+        assertEquals(MessageData.DEFLATE, messageData.getContentEncoding());
+        assertNull(messageData.getMessageContent());
+        assertTrue(messageData.getCompressedContent().length() < CONTENT.getBytes(StandardCharsets.UTF_8).length / 4);
+        assertEquals(CONTENT, read(messageData));
+    }
+
+    @Test
+    void testCompressesLobContent() throws Exception {
+        MessageData messageData = new MessageData("MSG-2", null, "NEW");
+        messageData.setLargeContent(new StringReader(CONTENT), CONTENT.length());
+
+        compressor.compress(messageData);
+
+        assertTrue(messageData.isCompressed());
+        assertFalse(messageData.hasLargeContent());
+        assertEquals(CONTENT, read(messageData));
+    }
+
+    @Test
+    void testKeepsSmallContentAndDisabledModePlain() throws Exception {
+        MessageData small = compressor.compress(new MessageData("MSG-3", "short", "NEW"));
+        MessageData disabled = new ContentCompressor(new PipelineMetrics(), false, 1024, 1)
+                .compress(new MessageData("MSG-4", CONTENT, "NEW"));
+
+        assertFalse(small.isCompressed());
+        assertEquals("short", small.getMessageContent());
+        assertFalse(disabled.isCompressed());
+        assertEquals(CONTENT, disabled.getMessageContent());
+    }
+
+    @Test
+    void testRejectsInvalidLevel() {
+        assertThrows(IllegalArgumentException.class, () -> new ContentCompressor(new PipelineMetrics(), true, 1024, 0));
+    }
+
+    private static String read(MessageData messageData) throws Exception {
+        try (Reader reader = messageData.openContent()) {
+            StringBuilder content = new StringBuilder();
+            char[] buffer = new char[512];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                content.append(buffer, 0, read);
+            }
+            return content.toString();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.atomikos.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.SessionCallback;
+import org.springframework.jms.support.destination.DynamicDestinationResolver;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class JmsOutputPublisherTest {
+
+    private final Session session = mock(Session.class);
+    private final MessageProducer producer = mock(MessageProducer.class);
+    private final Queue queue = mock(Queue.class);
+    private JmsOutputPublisher publisher;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        JmsTemplate jmsTemplate = mock(JmsTemplate.class);
+        when(jmsTemplate.getDestinationResolver()).thenReturn(new DynamicDestinationResolver());
+        when(jmsTemplate.execute(any(SessionCallback.class), eq(false)))
+                .thenAnswer(invocation -> ((SessionCallback<Object>) invocation.getArgument(0)).doInJms(session));
+        when(session.createQueue("DEV.QUEUE.2")).thenReturn(queue);
+        when(session.createProducer(null)).thenReturn(producer);
+        when(session.createTextMessage(anyString())).thenReturn(mock(TextMessage.class));
+        publisher = new JmsOutputPublisher(jmsTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testReusesProducerWithinTransaction() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+
+        publisher.publish("DEV.QUEUE.2", "one");
+        publisher.publishAll("DEV.QUEUE.2", List.of("two", "three"));
+
+        verify(session, times(1)).createQueue("DEV.QUEUE.2");
+        verify(session, times(1)).createProducer(null);
+        verify(producer, times(3)).send(eq(queue), any(TextMessage.class));
+        verify(producer, never()).close();
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        verify(producer).close();
+    }
+
+    @Test
+    void testClosesProducerOutsideTransaction() throws Exception {
+        publisher.publish("DEV.QUEUE.2", "one");
+        publisher.publish("DEV.QUEUE.2", "two");
+
+        verify(session, times(1)).createQueue("DEV.QUEUE.2");
+        verify(session, times(2)).createProducer(null);
+        verify(producer, times(2)).close();
+    }
+}
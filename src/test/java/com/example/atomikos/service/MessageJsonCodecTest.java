@@ -0,0 +1,133 @@
+package com.example.atomikos.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageJsonCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MessageJsonCodec codec = new MessageJsonCodec(objectMapper);
+
+    @Test
+    void testExtractsKnownFields() throws Exception {
+        MessageJsonCodec.MessageFields fields = codec.extract(
+                "{\"messageId\":\"MSG-001\",\"content\":\"Test message content\",\"status\":\"NEW\"}");
+
+        assertEquals("MSG-001", fields.messageId());
+        assertEquals("Test message content", fields.content());
+        assertEquals("NEW", fields.status());
+    }
+
+    @Test
+    void testMissingFieldsAreNull() throws Exception {
+        MessageJsonCodec.MessageFields fields = codec.extract("{\"content\":\"only content\"}");
+
+        assertNull(fields.messageId());
+        assertEquals("only content", fields.content());
+        assertNull(fields.status());
+    }
+
+    @Test
+    void testSkipsUnknownFieldsIncludingNestedValues() throws Exception {
+        MessageJsonCodec.MessageFields fields = codec.extract(
+                "{\"header\":{\"messageId\":\"NESTED\",\"tags\":[1,{\"status\":\"X\"}]},"
+                        + "\"messageId\":\"MSG-002\",\"extra\":[\"a\",\"b\"],\"status\":\"NEW\",\"content\":\"c\"}");
+
+        assertEquals("MSG-002", fields.messageId());
+        assertEquals("c", fields.content());
+        assertEquals("NEW", fields.status());
+    }
+
+    @Test
+    void testConvertsValuesLikeJsonNodeAsText() throws Exception {
+        String json = "{\"messageId\":42,\"content\":{\"a\":1},\"status\":null}";
+        JsonNode tree = objectMapper.readTree(json);
+
+        MessageJsonCodec.MessageFields fields = codec.extract(json);
+
+        assertEquals(tree.get("messageId").asText(), fields.messageId());
+        assertEquals(tree.get("content").asText(), fields.content());
+        assertEquals(tree.get("status").asText(), fields.status());
+    }
+
+    @Test
+    void testNonObjectInputHasNoFields() throws Exception {
+        MessageJsonCodec.MessageFields fields = codec.extract("[\"messageId\"]");
+
+        assertNull(fields.messageId());
+        assertNull(fields.content());
+        assertNull(fields.status());
+    }
+
+    @Test
+    void testExtractsSingleTopLevelField() throws Exception {
+        String json = "{\"header\":{\"orderId\":\"NESTED\"},\"orderId\":7,\"messageId\":\"MSG-003\"}";
+
+        assertEquals("7", codec.extractField(json, "orderId"));
+        assertEquals("MSG-003", codec.extractField(json, "messageId"));
+        assertNull(codec.extractField(json, "status"));
+        assertNull(codec.extractField("[\"orderId\"]", "orderId"));
+    }
+
+    @Test
+    void testExtractsLargeContentIntoBuffer() throws Exception {
+        String content = "line \\\"quoted\\\" ".repeat(1000);
+        String json = "{\"content\":\"" + content + "\",\"messageId\":\"MSG-004\",\"status\":\"NEW\"}";
+        String expected = objectMapper.readTree(json).get("content").asText();
+
+        MessageJsonCodec.LargeMessageFields fields = codec.extractLarge(json);
+        MessageJsonCodec.LargeMessageFields fromStream = codec.extractLarge(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("MSG-004", fields.messageId());
+        assertEquals("NEW", fields.status());
+        assertEquals(expected, fields.content().toString());
+        assertEquals(expected.length(), fields.content().length());
+        assertEquals(expected, fromStream.content().toString());
+        assertNull(codec.extractLarge("{\"messageId\":\"MSG-005\"}").content());
+    }
+
+    @Test
+    void testRejectsMalformedJson() {
+        assertThrows(JsonProcessingException.class, () -> codec.extract("{\"messageId\":"));
+    }
+
+    @Test
+    void testWritesOutputMessage() throws Exception {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 11, 6, 9, 0, 0, 123000000);
+
+        String output = codec.writeOutput("MSG-001", "PROCESSED", timestamp);
+
+        assertEquals("{\"messageId\":\"MSG-001\",\"status\":\"PROCESSED\",\"timestamp\":\"2025-11-06T09:00:00.123\"}",
+                output);
+    }
+
+    @Test
+    void testEscapesMessageIdInOutput() throws Exception {
+        String messageId = "MSG \"quoted\" \\ back\nslash";
+
+        String output = codec.writeOutput(messageId, "PROCESSED", LocalDateTime.now());
+
+        assertEquals(messageId, objectMapper.readTree(output).get("messageId").asText());
+    }
+
+    @Test
+    void testReusedWritersProduceIndependentOutputs() throws Exception {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 11, 6, 9, 0);
+
+        String first = codec.writeOutput("MSG-001", "PROCESSED", timestamp);
+        String second = codec.writeOutput("MSG-002", "PROCESSED", timestamp);
+
+        assertEquals("MSG-001", objectMapper.readTree(first).get("messageId").asText());
+        assertEquals("{\"messageId\":\"MSG-002\",\"status\":\"PROCESSED\",\"timestamp\":\"2025-11-06T09:00\"}",
+                second);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.atomikos.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessedMessageCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void testContainsAddedMessageId() {
+        ProcessedMessageCache cache = new ProcessedMessageCache(10, Duration.ofMinutes(1), clock::get);
+
+        cache.add("MSG-001");
+
+        assertTrue(cache.contains("MSG-001"));
+        assertFalse(cache.contains("MSG-002"));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedEntry() {
+        ProcessedMessageCache cache = new ProcessedMessageCache(2, Duration.ofMinutes(1), clock::get);
+
+        cache.add("MSG-001");
+        cache.add("MSG-002");
+        cache.contains("MSG-001");
+        cache.add("MSG-003");
+
+        assertTrue(cache.contains("MSG-001"));
+        assertFalse(cache.contains("MSG-002"), "Least recently used entry should be evicted");
+        assertTrue(cache.contains("MSG-003"));
+    }
+
+    @Test
+    void testExpiresEntriesAfterTtl() {
+        ProcessedMessageCache cache = new ProcessedMessageCache(10, Duration.ofSeconds(5), clock::get);
+
+        cache.add("MSG-001");
+        clock.addAndGet(Duration.ofSeconds(6).toNanos());
+
+        assertFalse(cache.contains("MSG-001"), "Entry should expire after the TTL");
+    }
+
+    @Test
+    void testAddAfterCommitWithoutTransactionAddsImmediately() {
+        ProcessedMessageCache cache = new ProcessedMessageCache(10, Duration.ofMinutes(1), clock::get);
+
+        cache.addAfterCommit("MSG-001");
+
+        assertTrue(cache.contains("MSG-001"));
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.atomikos.service;
+
+import com.example.atomikos.entity.ReplayJob;
+import com.example.atomikos.metrics.PipelineMetrics;
+import com.example.atomikos.repository.MessageDataQueryRepository;
+import com.example.atomikos.repository.MessageDataQueryRepository.Keyset;
+import com.example.atomikos.repository.MessageDataQueryRepository.MessageKey;
+import com.example.atomikos.repository.ReplayJobRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.UncategorizedJmsException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReplayServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 11, 6, 9, 0);
+
+    private final MessageDataQueryRepository queryRepository = mock(MessageDataQueryRepository.class);
+    private final ReplayJobRepository replayJobRepository = mock(ReplayJobRepository.class);
+    private final OutputPublisher outputPublisher = mock(OutputPublisher.class);
+    private final Map<String, ReplayJob> jobs = new HashMap<>();
+    private final List<String> published = Collections.synchronizedList(new ArrayList<>());
+    private ReplayService replayService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // 25 messages, two per timestamp, so keyset pages have to break ties by ID
+        List<MessageKey> keys = new ArrayList<>();
+        for (int id = 1; id <= 25; id++) {
+            keys.add(new MessageKey(id, "MSG-" + id, START.plusSeconds(id / 2)));
+        }
+        doAnswer(invocation -> {
+            Keyset after = invocation.getArgument(3);
+            int limit = invocation.getArgument(4);
+            Consumer<MessageKey> consumer = invocation.getArgument(6);
+            keys.stream()
+                    .filter(key -> after == null || key.createdAt().isAfter(after.createdAt())
+                                   || key.createdAt().equals(after.createdAt()) && key.id() > after.id())
+                    .limit(limit)
+                    .forEach(consumer);
+            return null;
+        }).when(queryRepository).streamKeys(any(), any(), any(), any(), anyInt(), anyInt(), any(Consumer.class));
+
+        when(replayJobRepository.save(any())).thenAnswer(invocation -> {
+            ReplayJob job = invocation.getArgument(0);
+            jobs.put(job.getJobId(), job);
+            return job;
+        });
+        when(replayJobRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(jobs.get(invocation.<String>getArgument(0))));
+
+        doAnswer(invocation -> {
+            published.addAll(invocation.getArgument(1));
+            return null;
+        }).when(outputPublisher).publishAll(eq("DEV.QUEUE.2"), anyList());
+
+        MessageJsonCodec codec = new MessageJsonCodec(new ObjectMapper());
+        replayService = new ReplayService(queryRepository, replayJobRepository, outputPublisher, codec,
+                                          new PipelineMetrics(), mock(PlatformTransactionManager.class),
+                                          10, 3, 1000, 2, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        replayService.destroy();
+    }
+
+    @Test
+    void testPublishesAllMessagesAndCheckpointsEveryPage() {
+        replayJobRepository.save(new ReplayJob("job-1", null, null, null, "DEV.QUEUE.2"));
+
+        replayService.run("job-1");
+
+        ReplayJob job = jobs.get("job-1");
+        assertEquals(ReplayJob.State.COMPLETED, job.getState());
+        assertEquals(25, job.getPublished());
+        assertEquals(25L, job.getAfterId());
+        assertEquals(START.plusSeconds(12), job.getAfterCreatedAt());
+        assertEquals(25, published.size());
+        assertTrue(published.contains("{\"messageId\":\"MSG-7\",\"status\":\"PROCESSED\",\"timestamp\":\"" +
+                                      START.plusSeconds(3) + "\"}"));
+        // Pages of 10, 10 and 5 in batches of 3
+        verify(outputPublisher, times(10)).publishAll(eq("DEV.QUEUE.2"), anyList());
+    }
+
+    @Test
+    void testResumesFailedReplayFromLastCheckpoint() {
+        AtomicInteger batches = new AtomicInteger();
+        doAnswer(invocation -> {
+            // The second page of the first run fails
+            if (batches.incrementAndGet() == 5) {
+                throw new UncategorizedJmsException("MQ unavailable");
+            }
+            published.addAll(invocation.getArgument(1));
+            return null;
+        }).when(outputPublisher).publishAll(eq("DEV.QUEUE.2"), anyList());
+        replayJobRepository.save(new ReplayJob("job-2", null, null, null, "DEV.QUEUE.2"));
+
+        replayService.run("job-2");
+
+        ReplayJob failed = jobs.get("job-2");
+        assertEquals(ReplayJob.State.FAILED, failed.getState());
+        assertEquals(10, failed.getPublished());
+        assertEquals(10L, failed.getAfterId());
+        assertTrue(failed.getError().contains("MQ unavailable"));
+
+        published.clear();
+        failed.setState(ReplayJob.State.RUNNING);
+        replayService.run("job-2");
+
+        assertEquals(ReplayJob.State.COMPLETED, jobs.get("job-2").getState());
+        assertEquals(25, jobs.get("job-2").getPublished());
+        assertEquals(15, published.size());
+        assertFalse(published.stream().anyMatch(payload -> payload.contains("\"MSG-10\"")));
+    }
+
+    @Test
+    void testRateLimiterPacesPermits() {
+        ReplayService.RateLimiter rateLimiter = new ReplayService.RateLimiter(100);
+        long start = System.nanoTime();
+
+        rateLimiter.acquire(5);
+        rateLimiter.acquire(5);
+        rateLimiter.acquire(5);
+
+        // The first call is free, the next two wait 50 ms each
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 95);
+    }
+}